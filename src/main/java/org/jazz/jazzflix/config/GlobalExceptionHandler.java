@@ -59,6 +59,12 @@ public class GlobalExceptionHandler {
         return buildResponse(false, ex.getMessage(), null, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(InvalidDataException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public <T> ResponseEntity<Response<T>> handleInvalidDataException(InvalidDataException ex) {
+        return buildResponse(false, ex.getMessage(), null, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(VideoStorageException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public <T> ResponseEntity<Response<T>> handleVideoStorageException(VideoStorageException ex) {
@@ -0,0 +1,9 @@
+package org.jazz.jazzflix.config.delivery;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(DeliveryProperties.class)
+public class DeliveryConfig {
+}
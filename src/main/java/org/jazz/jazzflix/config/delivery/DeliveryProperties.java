@@ -0,0 +1,527 @@
+package org.jazz.jazzflix.config.delivery;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "app.delivery")
+public class DeliveryProperties {
+
+    public enum Mode {
+        // Every byte is proxied through the app, with its caches in front of MinIO
+        PROXY,
+        // Segments and downloads are answered with a 302 to a presigned MinIO URL, manifests stay on the app
+        REDIRECT
+    }
+
+    private Mode mode = Mode.PROXY;
+    // Copy buffer per streamed response
+    private int bufferSizeBytes = 64 * 1024;
+    // Buffers kept for reuse, bounds the heap held by idle buffers
+    private int bufferPoolSize = 256;
+    private Cache cache = new Cache();
+    private Disk disk = new Disk();
+    private Coalescing coalescing = new Coalescing();
+    private Prefetch prefetch = new Prefetch();
+    private Redirect redirect = new Redirect();
+    private Manifest manifest = new Manifest();
+    private Http http = new Http();
+    private Async async = new Async();
+    private Thumbnail thumbnail = new Thumbnail();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getBufferSizeBytes() {
+        return bufferSizeBytes;
+    }
+
+    public void setBufferSizeBytes(int bufferSizeBytes) {
+        this.bufferSizeBytes = bufferSizeBytes;
+    }
+
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    public void setBufferPoolSize(int bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Disk getDisk() {
+        return disk;
+    }
+
+    public void setDisk(Disk disk) {
+        this.disk = disk;
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(Coalescing coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public Prefetch getPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(Prefetch prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public Redirect getRedirect() {
+        return redirect;
+    }
+
+    public void setRedirect(Redirect redirect) {
+        this.redirect = redirect;
+    }
+
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    public void setManifest(Manifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public void setAsync(Async async) {
+        this.async = async;
+    }
+
+    public Thumbnail getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(Thumbnail thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
+    /**
+     * In-memory cache of hot DASH objects in front of MinIO.
+     */
+    public static class Cache {
+        private boolean enabled = true;
+        // Byte budget for media segments
+        private long segmentBudgetBytes = 256L * 1024 * 1024;
+        // Separate byte budget for init segments and manifests, so a burst of segments cannot evict them
+        private long initBudgetBytes = 32L * 1024 * 1024;
+        // Larger objects are streamed straight from MinIO
+        private long maxObjectBytes = 8L * 1024 * 1024;
+        // Manifests change while a rendition is still encoding
+        private long manifestTtlSeconds = 2;
+        // Segments of each representation loaded when a rendition completes
+        private int prewarmSegments = 5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getSegmentBudgetBytes() {
+            return segmentBudgetBytes;
+        }
+
+        public void setSegmentBudgetBytes(long segmentBudgetBytes) {
+            this.segmentBudgetBytes = segmentBudgetBytes;
+        }
+
+        public long getInitBudgetBytes() {
+            return initBudgetBytes;
+        }
+
+        public void setInitBudgetBytes(long initBudgetBytes) {
+            this.initBudgetBytes = initBudgetBytes;
+        }
+
+        public long getMaxObjectBytes() {
+            return maxObjectBytes;
+        }
+
+        public void setMaxObjectBytes(long maxObjectBytes) {
+            this.maxObjectBytes = maxObjectBytes;
+        }
+
+        public long getManifestTtlSeconds() {
+            return manifestTtlSeconds;
+        }
+
+        public void setManifestTtlSeconds(long manifestTtlSeconds) {
+            this.manifestTtlSeconds = manifestTtlSeconds;
+        }
+
+        public int getPrewarmSegments() {
+            return prewarmSegments;
+        }
+
+        public void setPrewarmSegments(int prewarmSegments) {
+            this.prewarmSegments = prewarmSegments;
+        }
+    }
+
+    /**
+     * Local disk tier below the in-memory cache, kept across restarts.
+     */
+    public static class Disk {
+        private boolean enabled = true;
+        private String path = System.getProperty("java.io.tmpdir") + "/jazzflix-segment-cache";
+        private long budgetBytes = 10L * 1024 * 1024 * 1024;
+        // Size of each append-only volume file, also the unit of eviction
+        private long volumeSizeBytes = 256L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public long getBudgetBytes() {
+            return budgetBytes;
+        }
+
+        public void setBudgetBytes(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        public long getVolumeSizeBytes() {
+            return volumeSizeBytes;
+        }
+
+        public void setVolumeSizeBytes(long volumeSizeBytes) {
+            this.volumeSizeBytes = volumeSizeBytes;
+        }
+    }
+
+    /**
+     * Concurrent cache misses on the same object share one MinIO GET.
+     */
+    public static class Coalescing {
+        private boolean enabled = true;
+        // Waiters fetch on their own if the shared GET has not answered by then
+        private long headerTimeoutMillis = 5_000;
+        // A shared GET that delivers no bytes for this long fails its waiters
+        private long stallTimeoutMillis = 15_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getHeaderTimeoutMillis() {
+            return headerTimeoutMillis;
+        }
+
+        public void setHeaderTimeoutMillis(long headerTimeoutMillis) {
+            this.headerTimeoutMillis = headerTimeoutMillis;
+        }
+
+        public long getStallTimeoutMillis() {
+            return stallTimeoutMillis;
+        }
+
+        public void setStallTimeoutMillis(long stallTimeoutMillis) {
+            this.stallTimeoutMillis = stallTimeoutMillis;
+        }
+    }
+
+    /**
+     * Fetching the next segments of active playback streams ahead of demand.
+     */
+    public static class Prefetch {
+        private boolean enabled = true;
+        private int segmentsAhead = 3;
+        // Global budget for prefetch traffic from MinIO, prefetches over it are skipped
+        private long bandwidthBytesPerSecond = 50L * 1024 * 1024;
+        // A stream without requests for this long is dropped and its pending prefetches cancelled
+        private long idleTimeoutSeconds = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSegmentsAhead() {
+            return segmentsAhead;
+        }
+
+        public void setSegmentsAhead(int segmentsAhead) {
+            this.segmentsAhead = segmentsAhead;
+        }
+
+        public long getBandwidthBytesPerSecond() {
+            return bandwidthBytesPerSecond;
+        }
+
+        public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+            this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+        }
+
+        public long getIdleTimeoutSeconds() {
+            return idleTimeoutSeconds;
+        }
+
+        public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+        }
+    }
+
+    /**
+     * Presigned URLs handed out in REDIRECT mode, signed for app.minio.public-endpoint when set.
+     */
+    public static class Redirect {
+        private long expirySeconds = 600;
+
+        public long getExpirySeconds() {
+            return expirySeconds;
+        }
+
+        public void setExpirySeconds(long expirySeconds) {
+            this.expirySeconds = expirySeconds;
+        }
+    }
+
+    /**
+     * Master manifests rendered from TBL_VIDEO_REPRESENTATION instead of read from MinIO.
+     */
+    public static class Manifest {
+        private boolean enabled = true;
+        // Rendered variants kept, one per video and representation selection
+        private long cacheSize = 20_000;
+        // Bounds how long another node's change to the representations goes unseen
+        private long ttlSeconds = 300;
+        // Smaller manifests are not worth a Content-Encoding
+        private int minCompressBytes = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(long cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public int getMinCompressBytes() {
+            return minCompressBytes;
+        }
+
+        public void setMinCompressBytes(int minCompressBytes) {
+            this.minCompressBytes = minCompressBytes;
+        }
+    }
+
+    /**
+     * Cache-Control and revalidation of delivered objects.
+     */
+    public static class Http {
+        // Segments and init files, rewritten under the same keys only when a rendition is re-transcoded,
+        // so caches keep them this long and revalidate against their ETag afterwards
+        private long segmentMaxAgeSeconds = 24L * 60 * 60;
+        // Thumbnails and downloads, revalidated against their ETag afterwards
+        private long objectMaxAgeSeconds = 3600;
+        // Known ETag, size and Last-Modified per object, so revalidations are answered without MinIO
+        private long validatorIndexSize = 100_000;
+        private long validatorTtlSeconds = 3600;
+
+        public long getSegmentMaxAgeSeconds() {
+            return segmentMaxAgeSeconds;
+        }
+
+        public void setSegmentMaxAgeSeconds(long segmentMaxAgeSeconds) {
+            this.segmentMaxAgeSeconds = segmentMaxAgeSeconds;
+        }
+
+        public long getObjectMaxAgeSeconds() {
+            return objectMaxAgeSeconds;
+        }
+
+        public void setObjectMaxAgeSeconds(long objectMaxAgeSeconds) {
+            this.objectMaxAgeSeconds = objectMaxAgeSeconds;
+        }
+
+        public long getValidatorIndexSize() {
+            return validatorIndexSize;
+        }
+
+        public void setValidatorIndexSize(long validatorIndexSize) {
+            this.validatorIndexSize = validatorIndexSize;
+        }
+
+        public long getValidatorTtlSeconds() {
+            return validatorTtlSeconds;
+        }
+
+        public void setValidatorTtlSeconds(long validatorTtlSeconds) {
+            this.validatorTtlSeconds = validatorTtlSeconds;
+        }
+    }
+
+    /**
+     * Segment delivery with servlet async I/O and the async MinIO client.
+     */
+    public static class Async {
+        private boolean enabled = true;
+        // Responses streaming at once, further requests get 503 with Retry-After
+        private int maxInFlight = 20_000;
+        // Upper bound for one response, a stalled client or upstream is cut off after this
+        private long timeoutMillis = 300_000;
+        // Threads reading upstream and disk streams ahead of the connections, their reads block
+        private int readerThreads = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public int getReaderThreads() {
+            return readerThreads;
+        }
+
+        public void setReaderThreads(int readerThreads) {
+            this.readerThreads = readerThreads;
+        }
+    }
+
+    /**
+     * Resized thumbnail variants for catalog tiles.
+     */
+    public static class Thumbnail {
+        private boolean enabled = true;
+        // Requested widths are rounded up to one of these, larger requests get the widest
+        private List<Integer> widths = List.of(160, 320, 640);
+        private float jpegQuality = 0.85f;
+        // Video id -> thumbnail object key, so a catalog page does not query once per tile
+        private long lookupCacheSize = 100_000;
+        private long lookupTtlSeconds = 3600;
+        private long budgetBytes = 64L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<Integer> getWidths() {
+            return widths;
+        }
+
+        public void setWidths(List<Integer> widths) {
+            this.widths = widths;
+        }
+
+        public float getJpegQuality() {
+            return jpegQuality;
+        }
+
+        public void setJpegQuality(float jpegQuality) {
+            this.jpegQuality = jpegQuality;
+        }
+
+        public long getLookupCacheSize() {
+            return lookupCacheSize;
+        }
+
+        public void setLookupCacheSize(long lookupCacheSize) {
+            this.lookupCacheSize = lookupCacheSize;
+        }
+
+        public long getLookupTtlSeconds() {
+            return lookupTtlSeconds;
+        }
+
+        public void setLookupTtlSeconds(long lookupTtlSeconds) {
+            this.lookupTtlSeconds = lookupTtlSeconds;
+        }
+
+        public long getBudgetBytes() {
+            return budgetBytes;
+        }
+
+        public void setBudgetBytes(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+    }
+}
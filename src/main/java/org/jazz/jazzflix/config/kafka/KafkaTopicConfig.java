@@ -0,0 +1,18 @@
+package org.jazz.jazzflix.config.kafka;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    // Enough partitions for every listener thread of the transcoding consumer group to get work
+    @Bean
+    public NewTopic videoTranscodingTopic(@Value("${app.kafka.topics.video-transcoding:video.transcoding}") String topic,
+                                          @Value("${app.kafka.transcoding.partitions:8}") int partitions) {
+        return TopicBuilder.name(topic).partitions(partitions).build();
+    }
+}
@@ -0,0 +1,45 @@
+package org.jazz.jazzflix.config.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.jazz.jazzflix.service.transcoding.TranscodingAcknowledger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.Properties;
+
+/**
+ * Listener containers of the transcoding consumer and its retry topics. Other listeners keep the
+ * Spring Boot defaults.
+ */
+@Configuration
+public class TranscodingListenerConfig {
+
+    public static final String CONTAINER_FACTORY = "transcodingListenerContainerFactory";
+
+    // The listener hands each record to the scheduler and returns; records are acknowledged in
+    // offset order once their jobs are done, see TranscodingAcknowledger
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> transcodingListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            TranscodingAcknowledger acknowledger,
+            @Value("${app.kafka.transcoding.max-poll-records:16}") int maxPollRecords) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+
+        ContainerProperties containerProperties = factory.getContainerProperties();
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setConsumerRebalanceListener(acknowledger);
+
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        containerProperties.setKafkaConsumerProperties(consumerProperties);
+        return factory;
+    }
+}
@@ -1,14 +1,19 @@
 package org.jazz.jazzflix.config.storage;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
+import io.minio.http.HttpUtils;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableConfigurationProperties(MinioProperties.class)
 public class MinioConfig {
@@ -38,6 +43,45 @@ public class MinioConfig {
         }
     }
 
+    /**
+     * Used by the non-blocking delivery path; requests complete on OkHttp's threads.
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient(MinioProperties properties) {
+        return MinioAsyncClient.builder()
+                .endpoint(properties.getEndpoint())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .build();
+    }
+
+    /**
+     * Used by resumable and direct uploads, whose parts arrive in separate requests, and by the
+     * parallel uploader. Has its own HTTP client: parts in flight all go to the one MinIO host, and
+     * OkHttp runs only 5 requests per host at a time by default.
+     */
+    @Bean
+    public MinioMultipartClient minioMultipartClient(MinioProperties properties) {
+        long timeoutMillis = TimeUnit.MINUTES.toMillis(5);
+        OkHttpClient httpClient = HttpUtils.newDefaultHttpClient(timeoutMillis, timeoutMillis, timeoutMillis);
+        httpClient.dispatcher().setMaxRequestsPerHost(httpClient.dispatcher().getMaxRequests());
+        MinioAsyncClient client = MinioAsyncClient.builder()
+                .endpoint(properties.getEndpoint())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .httpClient(httpClient)
+                .build();
+
+        if (properties.getPublicEndpoint() == null || properties.getPublicEndpoint().isBlank()) {
+            return new MinioMultipartClient(client, client);
+        }
+        // Signing is local, this client never connects
+        MinioAsyncClient publicSigner = MinioAsyncClient.builder()
+                .endpoint(properties.getPublicEndpoint())
+                .region(properties.getRegion())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .build();
+        return new MinioMultipartClient(client, publicSigner);
+    }
+
     private void ensureBucketExists(MinioClient client, String bucketName) throws Exception {
         if (bucketName == null || bucketName.isBlank()) {
             throw new IllegalArgumentException("MinIO bucket name must be provided");
@@ -0,0 +1,154 @@
+package org.jazz.jazzflix.config.storage;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+import io.minio.http.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The S3 multipart upload calls, which the MinIO SDK only uses internally for putObject. Lets an
+ * upload be assembled from parts that arrive separately, over several requests or app nodes.
+ */
+public class MinioMultipartClient {
+
+    private final Calls calls;
+    private final MinioAsyncClient publicSigner;
+
+    /**
+     * publicSigner signs the URLs handed out to clients, for the endpoint they reach MinIO on.
+     */
+    public MinioMultipartClient(MinioAsyncClient client, MinioAsyncClient publicSigner) {
+        this.calls = new Calls(client);
+        this.publicSigner = publicSigner;
+    }
+
+    /**
+     * Starts a multipart upload and returns its upload id.
+     */
+    public String startUpload(String bucket, String objectKey, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        return calls.create(bucket, objectKey, headers);
+    }
+
+    /**
+     * Presigned PUT of one part, partNumber is 1-based. The response's ETag identifies the part.
+     */
+    public String presignPart(String bucket, String objectKey, String uploadId, int partNumber, int expirySeconds) throws Exception {
+        return calls.getPresignedObjectUrl(partUrlArgs(bucket, objectKey, uploadId, partNumber, expirySeconds));
+    }
+
+    /**
+     * Same as presignPart, for a client that uploads the part to MinIO itself.
+     */
+    public String presignPublicPart(String bucket, String objectKey, String uploadId, int partNumber, int expirySeconds) throws Exception {
+        return publicSigner.getPresignedObjectUrl(partUrlArgs(bucket, objectKey, uploadId, partNumber, expirySeconds));
+    }
+
+    private static GetPresignedObjectUrlArgs partUrlArgs(String bucket, String objectKey, String uploadId, int partNumber, int expirySeconds) {
+        return GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucket)
+                .object(objectKey)
+                .expiry(expirySeconds, TimeUnit.SECONDS)
+                .extraQueryParams(Map.of("uploadId", uploadId, "partNumber", String.valueOf(partNumber)))
+                .build();
+    }
+
+    /**
+     * Uploads the first length bytes of data as one part, partNumber is 1-based. The array must
+     * not change until the returned future completes.
+     */
+    public CompletableFuture<Part> uploadPart(String bucket, String objectKey, String uploadId, int partNumber,
+                                              byte[] data, int length) throws Exception {
+        return calls.upload(bucket, objectKey, uploadId, partNumber, data, length);
+    }
+
+    /**
+     * Parts stored so far, in part number order.
+     */
+    public List<Part> listUploadedParts(String bucket, String objectKey, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        while (true) {
+            ListPartsResult result = calls.list(bucket, objectKey, uploadId, marker);
+            parts.addAll(result.partList());
+            if (!result.isTruncated()) {
+                return parts;
+            }
+            marker = result.nextPartNumberMarker();
+        }
+    }
+
+    public ObjectWriteResponse completeUpload(String bucket, String objectKey, String uploadId, List<Part> parts) throws Exception {
+        return calls.complete(bucket, objectKey, uploadId, parts.toArray(new Part[0]));
+    }
+
+    public void abortUpload(String bucket, String objectKey, String uploadId) throws Exception {
+        calls.abort(bucket, objectKey, uploadId);
+    }
+
+    // The multipart calls are protected on the SDK client
+    private static final class Calls extends MinioAsyncClient {
+        private Calls(MinioAsyncClient client) {
+            super(client);
+        }
+
+        private String create(String bucket, String objectKey, Multimap<String, String> headers) throws Exception {
+            return await(createMultipartUploadAsync(bucket, null, objectKey, headers, null)).result().uploadId();
+        }
+
+        private CompletableFuture<Part> upload(String bucket, String objectKey, String uploadId, int partNumber,
+                                               byte[] data, int length) throws Exception {
+            return uploadPartAsync(bucket, null, objectKey, data, length, uploadId, partNumber, null, null)
+                    .thenApply(response -> new Part(partNumber, response.etag()));
+        }
+
+        private ListPartsResult list(String bucket, String objectKey, String uploadId, Integer marker) throws Exception {
+            return await(listPartsAsync(bucket, null, objectKey, 1000, marker, uploadId, null, null)).result();
+        }
+
+        private ObjectWriteResponse complete(String bucket, String objectKey, String uploadId, Part[] parts) throws Exception {
+            return await(completeMultipartUploadAsync(bucket, null, objectKey, uploadId, parts, null, null));
+        }
+
+        private void abort(String bucket, String objectKey, String uploadId) throws Exception {
+            await(abortMultipartUploadAsync(bucket, null, objectKey, uploadId, null, null));
+        }
+
+        // The HTTP client belongs to the client this one was copied from
+        @Override
+        public void close() {
+        }
+
+        // Rethrows what the call failed with, as the SDK's blocking client does
+        private static <T> T await(CompletableFuture<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof Exception exception) {
+                    throw exception;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -9,6 +9,10 @@ public class MinioProperties {
     private String secretKey;
     private String bucket;
     private boolean ensureBucket = true;
+    // Endpoint clients reach MinIO on, for the upload and delivery URLs handed out to them; the endpoint above when empty
+    private String publicEndpoint;
+    // Region URLs for the public endpoint are signed for, it is not looked up from there
+    private String region = "us-east-1";
 
     public String getEndpoint() {
         return endpoint;
@@ -49,4 +53,20 @@ public class MinioProperties {
     public void setEnsureBucket(boolean ensureBucket) {
         this.ensureBucket = ensureBucket;
     }
+
+    public String getPublicEndpoint() {
+        return publicEndpoint;
+    }
+
+    public void setPublicEndpoint(String publicEndpoint) {
+        this.publicEndpoint = publicEndpoint;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
 }
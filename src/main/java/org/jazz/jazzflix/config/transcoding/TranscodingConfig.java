@@ -0,0 +1,9 @@
+package org.jazz.jazzflix.config.transcoding;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(TranscodingProperties.class)
+public class TranscodingConfig {
+}
@@ -0,0 +1,300 @@
+package org.jazz.jazzflix.config.transcoding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.transcoding")
+public class TranscodingProperties {
+
+    public enum Mode {
+        // One Kafka job per rendition, each job decodes the source on its own
+        PER_QUALITY,
+        // One Kafka job per upload, a single ffmpeg graph encodes every rendition plus a shared audio track
+        LADDER
+    }
+
+    public enum InputMode {
+        // Download the whole original to a temp file before ffmpeg starts
+        TEMP_FILE,
+        // Hand ffmpeg a presigned GET URL, it reads (and seeks) with HTTP range requests
+        PRESIGNED_URL,
+        // Pipe the GetObject stream into ffmpeg's stdin, falls back to TEMP_FILE for MP4s with moov at the end
+        PIPE
+    }
+
+    private Mode mode = Mode.PER_QUALITY;
+    private InputMode inputMode = InputMode.PRESIGNED_URL;
+    // Validity of presigned source URLs handed to ffmpeg / ffprobe
+    private int sourceUrlExpiryMinutes = 180;
+    // Upload segments and a dynamic manifest while ffmpeg is still encoding instead of after it exits
+    private boolean incrementalPublish = true;
+    private Chunked chunked = new Chunked();
+    private Upload upload = new Upload();
+    private Scheduler scheduler = new Scheduler();
+    private Ledger ledger = new Ledger();
+    private Reconciler reconciler = new Reconciler();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public InputMode getInputMode() {
+        return inputMode;
+    }
+
+    public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+    }
+
+    public int getSourceUrlExpiryMinutes() {
+        return sourceUrlExpiryMinutes;
+    }
+
+    public void setSourceUrlExpiryMinutes(int sourceUrlExpiryMinutes) {
+        this.sourceUrlExpiryMinutes = sourceUrlExpiryMinutes;
+    }
+
+    public boolean isIncrementalPublish() {
+        return incrementalPublish;
+    }
+
+    public void setIncrementalPublish(boolean incrementalPublish) {
+        this.incrementalPublish = incrementalPublish;
+    }
+
+    public Chunked getChunked() {
+        return chunked;
+    }
+
+    public void setChunked(Chunked chunked) {
+        this.chunked = chunked;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public void setUpload(Upload upload) {
+        this.upload = upload;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public void setLedger(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    public Reconciler getReconciler() {
+        return reconciler;
+    }
+
+    public void setReconciler(Reconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    /**
+     * Startup and periodic re-enqueueing of jobs lost to crashes or redeploys.
+     */
+    public static class Reconciler {
+        private boolean enabled = true;
+        private long intervalMs = 300_000;
+        // PENDING jobs and renditions untouched for this long are considered lost
+        private long staleMinutes = 120;
+        // Upper bound of jobs re-enqueued per run
+        private int batchSize = 50;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public long getStaleMinutes() {
+            return staleMinutes;
+        }
+
+        public void setStaleMinutes(long staleMinutes) {
+            this.staleMinutes = staleMinutes;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Job ledger leases. A running job renews its lease every third of this, so a crashed
+     * worker's job can be claimed again once the lease ran out.
+     */
+    public static class Ledger {
+        private long leaseMinutes = 10;
+
+        public long getLeaseMinutes() {
+            return leaseMinutes;
+        }
+
+        public void setLeaseMinutes(long leaseMinutes) {
+            this.leaseMinutes = leaseMinutes;
+        }
+    }
+
+    /**
+     * Concurrency budget of the transcoding scheduler, in rendition weight units (1080p = 4, 720p = 2, 480p/360p = 1).
+     */
+    public static class Scheduler {
+        // 0 = one unit per available core
+        private int budget = 0;
+        // On shutdown, how long running jobs may take to finish before they are interrupted
+        private long drainTimeoutSeconds = 120;
+        // How long a video's job history is kept after its last job started, and for how many videos
+        private long historyTtlMinutes = 360;
+        private int historySize = 10_000;
+
+        public int getBudget() {
+            return budget;
+        }
+
+        public void setBudget(int budget) {
+            this.budget = budget;
+        }
+
+        public long getDrainTimeoutSeconds() {
+            return drainTimeoutSeconds;
+        }
+
+        public void setDrainTimeoutSeconds(long drainTimeoutSeconds) {
+            this.drainTimeoutSeconds = drainTimeoutSeconds;
+        }
+
+        public long getHistoryTtlMinutes() {
+            return historyTtlMinutes;
+        }
+
+        public void setHistoryTtlMinutes(long historyTtlMinutes) {
+            this.historyTtlMinutes = historyTtlMinutes;
+        }
+
+        public int getHistorySize() {
+            return historySize;
+        }
+
+        public void setHistorySize(int historySize) {
+            this.historySize = historySize;
+        }
+    }
+
+    /**
+     * Upload of DASH output to MinIO.
+     */
+    public static class Upload {
+        // Concurrent segment uploads, shared by every transcoding job on this instance
+        private int parallelism = 8;
+        private int maxAttempts = 3;
+        // Doubled after every failed attempt
+        private long retryBackoffMillis = 500;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryBackoffMillis() {
+            return retryBackoffMillis;
+        }
+
+        public void setRetryBackoffMillis(long retryBackoffMillis) {
+            this.retryBackoffMillis = retryBackoffMillis;
+        }
+    }
+
+    /**
+     * Split/encode/stitch pipeline for long sources in PER_QUALITY mode.
+     */
+    public static class Chunked {
+        private boolean enabled = false;
+        // Sources shorter than this are transcoded as whole renditions
+        private int minDurationSeconds = 600;
+        // Target length of one chunk, actual cuts snap to the nearest source keyframe
+        private int chunkDurationSeconds = 120;
+        private long chunkTimeoutMinutes = 20;
+        private long audioTimeoutMinutes = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinDurationSeconds() {
+            return minDurationSeconds;
+        }
+
+        public void setMinDurationSeconds(int minDurationSeconds) {
+            this.minDurationSeconds = minDurationSeconds;
+        }
+
+        public int getChunkDurationSeconds() {
+            return chunkDurationSeconds;
+        }
+
+        public void setChunkDurationSeconds(int chunkDurationSeconds) {
+            this.chunkDurationSeconds = chunkDurationSeconds;
+        }
+
+        public long getChunkTimeoutMinutes() {
+            return chunkTimeoutMinutes;
+        }
+
+        public void setChunkTimeoutMinutes(long chunkTimeoutMinutes) {
+            this.chunkTimeoutMinutes = chunkTimeoutMinutes;
+        }
+
+        public long getAudioTimeoutMinutes() {
+            return audioTimeoutMinutes;
+        }
+
+        public void setAudioTimeoutMinutes(long audioTimeoutMinutes) {
+            this.audioTimeoutMinutes = audioTimeoutMinutes;
+        }
+    }
+}
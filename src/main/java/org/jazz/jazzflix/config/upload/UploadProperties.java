@@ -0,0 +1,296 @@
+package org.jazz.jazzflix.config.upload;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.upload")
+public class UploadProperties {
+
+    private Session session = new Session();
+    private Stream stream = new Stream();
+    private Direct direct = new Direct();
+    private Parallel parallel = new Parallel();
+    private Pipeline pipeline = new Pipeline();
+
+    public Session getSession() {
+        return session;
+    }
+
+    public void setSession(Session session) {
+        this.session = session;
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    public void setStream(Stream stream) {
+        this.stream = stream;
+    }
+
+    public Direct getDirect() {
+        return direct;
+    }
+
+    public void setDirect(Direct direct) {
+        this.direct = direct;
+    }
+
+    public Parallel getParallel() {
+        return parallel;
+    }
+
+    public void setParallel(Parallel parallel) {
+        this.parallel = parallel;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Resumable upload sessions, each backed by one MinIO multipart upload.
+     */
+    public static class Session {
+        // Raised for huge files so the upload fits in 10000 parts; S3 needs at least 5 MB
+        private long partSizeBytes = 16L * 1024 * 1024;
+        private long maxSizeBytes = 100L * 1024 * 1024 * 1024;
+        // Sessions not finalized within this are aborted and their parts dropped
+        private long expiryHours = 24;
+        // Validity of the presigned part URL a received part is forwarded to
+        private int partUrlExpirySeconds = 900;
+        // A finalization not done within this is taken over by the next complete call or the sweep
+        private long finalizeLeaseMinutes = 15;
+
+        public long getPartSizeBytes() {
+            return partSizeBytes;
+        }
+
+        public void setPartSizeBytes(long partSizeBytes) {
+            this.partSizeBytes = partSizeBytes;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public long getExpiryHours() {
+            return expiryHours;
+        }
+
+        public void setExpiryHours(long expiryHours) {
+            this.expiryHours = expiryHours;
+        }
+
+        public int getPartUrlExpirySeconds() {
+            return partUrlExpirySeconds;
+        }
+
+        public void setPartUrlExpirySeconds(int partUrlExpirySeconds) {
+            this.partUrlExpirySeconds = partUrlExpirySeconds;
+        }
+
+        public long getFinalizeLeaseMinutes() {
+            return finalizeLeaseMinutes;
+        }
+
+        public void setFinalizeLeaseMinutes(long finalizeLeaseMinutes) {
+            this.finalizeLeaseMinutes = finalizeLeaseMinutes;
+        }
+    }
+
+    /**
+     * Raw-body uploads, stored to MinIO as they are read.
+     */
+    public static class Stream {
+        private long maxSizeBytes = 100L * 1024 * 1024 * 1024;
+        // Leading bytes kept in memory for the thumbnail, enough for moov and the first seconds of a faststart MP4
+        private int headBytes = 16 * 1024 * 1024;
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public int getHeadBytes() {
+            return headBytes;
+        }
+
+        public void setHeadBytes(int headBytes) {
+            this.headBytes = headBytes;
+        }
+    }
+
+    /**
+     * Uploads sent by the client straight to MinIO, on an upload session's presigned part URLs.
+     * Part size, size limit and expiry are the session settings.
+     */
+    public static class Direct {
+        // Validity of the part URLs handed out; expired ones can be fetched again
+        private int partUrlExpirySeconds = 3600;
+        // Part URLs returned per request, a huge upload fetches the rest as it goes
+        private int partUrlBatchSize = 500;
+
+        public int getPartUrlExpirySeconds() {
+            return partUrlExpirySeconds;
+        }
+
+        public void setPartUrlExpirySeconds(int partUrlExpirySeconds) {
+            this.partUrlExpirySeconds = partUrlExpirySeconds;
+        }
+
+        public int getPartUrlBatchSize() {
+            return partUrlBatchSize;
+        }
+
+        public void setPartUrlBatchSize(int partUrlBatchSize) {
+            this.partUrlBatchSize = partUrlBatchSize;
+        }
+    }
+
+    /**
+     * Originals the app node stores itself, sent to MinIO as multipart uploads with several parts in flight.
+     */
+    public static class Parallel {
+        // Off stores with a plain putObject, one part after another
+        private boolean enabled = true;
+        // Bodies up to one part are stored with a single PUT; at least 5 MB
+        private int partSizeBytes = 16 * 1024 * 1024;
+        private int maxInFlightParts = 4;
+        // Part buffers shared by all uploads on the node, so they hold at most this many parts in memory
+        private int bufferPoolSize = 8;
+        // Attempts per part before the upload is aborted, with exponential backoff between them
+        private int maxAttempts = 3;
+        private long retryBackoffMs = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPartSizeBytes() {
+            return partSizeBytes;
+        }
+
+        public void setPartSizeBytes(int partSizeBytes) {
+            this.partSizeBytes = partSizeBytes;
+        }
+
+        public int getMaxInFlightParts() {
+            return maxInFlightParts;
+        }
+
+        public void setMaxInFlightParts(int maxInFlightParts) {
+            this.maxInFlightParts = maxInFlightParts;
+        }
+
+        public int getBufferPoolSize() {
+            return bufferPoolSize;
+        }
+
+        public void setBufferPoolSize(int bufferPoolSize) {
+            this.bufferPoolSize = bufferPoolSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryBackoffMs() {
+            return retryBackoffMs;
+        }
+
+        public void setRetryBackoffMs(long retryBackoffMs) {
+            this.retryBackoffMs = retryBackoffMs;
+        }
+    }
+
+    /**
+     * Background processing of stored uploads: probe, thumbnail and transcoding fan-out, each stage
+     * with its own threads and bounded queue. A full queue holds back the stage feeding it.
+     */
+    public static class Pipeline {
+        private int probeThreads = 2;
+        private int probeQueueCapacity = 200;
+        // Thumbnails run ffmpeg, keep them from competing with transcoding for the CPU
+        private int thumbnailThreads = 2;
+        private int thumbnailQueueCapacity = 200;
+        private int fanOutThreads = 1;
+        private int fanOutQueueCapacity = 500;
+        // Videos still UPLOADED this long after they were stored are processed again, e.g. after a crash
+        private long recoveryAfterMinutes = 30;
+
+        public int getProbeThreads() {
+            return probeThreads;
+        }
+
+        public void setProbeThreads(int probeThreads) {
+            this.probeThreads = probeThreads;
+        }
+
+        public int getProbeQueueCapacity() {
+            return probeQueueCapacity;
+        }
+
+        public void setProbeQueueCapacity(int probeQueueCapacity) {
+            this.probeQueueCapacity = probeQueueCapacity;
+        }
+
+        public int getThumbnailThreads() {
+            return thumbnailThreads;
+        }
+
+        public void setThumbnailThreads(int thumbnailThreads) {
+            this.thumbnailThreads = thumbnailThreads;
+        }
+
+        public int getThumbnailQueueCapacity() {
+            return thumbnailQueueCapacity;
+        }
+
+        public void setThumbnailQueueCapacity(int thumbnailQueueCapacity) {
+            this.thumbnailQueueCapacity = thumbnailQueueCapacity;
+        }
+
+        public int getFanOutThreads() {
+            return fanOutThreads;
+        }
+
+        public void setFanOutThreads(int fanOutThreads) {
+            this.fanOutThreads = fanOutThreads;
+        }
+
+        public int getFanOutQueueCapacity() {
+            return fanOutQueueCapacity;
+        }
+
+        public void setFanOutQueueCapacity(int fanOutQueueCapacity) {
+            this.fanOutQueueCapacity = fanOutQueueCapacity;
+        }
+
+        public long getRecoveryAfterMinutes() {
+            return recoveryAfterMinutes;
+        }
+
+        public void setRecoveryAfterMinutes(long recoveryAfterMinutes) {
+            this.recoveryAfterMinutes = recoveryAfterMinutes;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.jazz.jazzflix.controller.delivery;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.jazz.jazzflix.dto.Response;
+import org.jazz.jazzflix.service.delivery.DiskSegmentStore;
+import org.jazz.jazzflix.service.delivery.ManifestRenderer;
+import org.jazz.jazzflix.service.delivery.NonBlockingStreamer;
+import org.jazz.jazzflix.service.delivery.RequestCoalescer;
+import org.jazz.jazzflix.service.delivery.SegmentCache;
+import org.jazz.jazzflix.service.delivery.SegmentPrefetcher;
+import org.jazz.jazzflix.service.delivery.ThumbnailService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+@RestController
+@RequestMapping("/api/admin/delivery")
+public class DeliveryAdminController {
+
+    private final SegmentCache segmentCache;
+    private final DiskSegmentStore diskStore;
+    private final RequestCoalescer coalescer;
+    private final SegmentPrefetcher segmentPrefetcher;
+    private final ManifestRenderer manifestRenderer;
+    private final NonBlockingStreamer nonBlockingStreamer;
+    private final ThumbnailService thumbnailService;
+
+    public DeliveryAdminController(SegmentCache segmentCache,
+                                   DiskSegmentStore diskStore,
+                                   RequestCoalescer coalescer,
+                                   SegmentPrefetcher segmentPrefetcher,
+                                   ManifestRenderer manifestRenderer,
+                                   NonBlockingStreamer nonBlockingStreamer,
+                                   ThumbnailService thumbnailService) {
+        this.segmentCache = segmentCache;
+        this.diskStore = diskStore;
+        this.coalescer = coalescer;
+        this.segmentPrefetcher = segmentPrefetcher;
+        this.manifestRenderer = manifestRenderer;
+        this.nonBlockingStreamer = nonBlockingStreamer;
+        this.thumbnailService = thumbnailService;
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<Response<SegmentCache.SegmentCacheStats>> getCacheStats(HttpServletRequest httpRequest) {
+        return ok("Segment cache stats", segmentCache.stats(), httpRequest);
+    }
+
+    @GetMapping("/disk-cache")
+    public ResponseEntity<Response<DiskSegmentStore.DiskCacheStats>> getDiskCacheStats(HttpServletRequest httpRequest) {
+        return ok("Disk segment cache stats", diskStore.stats(), httpRequest);
+    }
+
+    @GetMapping("/coalescer")
+    public ResponseEntity<Response<RequestCoalescer.CoalescerStats>> getCoalescerStats(HttpServletRequest httpRequest) {
+        return ok("Request coalescing stats", coalescer.stats(), httpRequest);
+    }
+
+    @GetMapping("/prefetch")
+    public ResponseEntity<Response<SegmentPrefetcher.PrefetchStats>> getPrefetchStats(HttpServletRequest httpRequest) {
+        return ok("Segment prefetch stats", segmentPrefetcher.stats(), httpRequest);
+    }
+
+    @GetMapping("/manifests")
+    public ResponseEntity<Response<ManifestRenderer.ManifestStats>> getManifestStats(HttpServletRequest httpRequest) {
+        return ok("Rendered manifest stats", manifestRenderer.stats(), httpRequest);
+    }
+
+    @GetMapping("/async")
+    public ResponseEntity<Response<NonBlockingStreamer.AsyncStats>> getAsyncStats(HttpServletRequest httpRequest) {
+        return ok("Non-blocking delivery stats", nonBlockingStreamer.stats(), httpRequest);
+    }
+
+    @GetMapping("/thumbnails")
+    public ResponseEntity<Response<ThumbnailService.ThumbnailStats>> getThumbnailStats(HttpServletRequest httpRequest) {
+        return ok("Thumbnail variant stats", thumbnailService.stats(), httpRequest);
+    }
+
+    private <T> ResponseEntity<Response<T>> ok(String message, T data, HttpServletRequest httpRequest) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        Response<T> response = new Response<>(true, message, data, HttpStatus.OK.value(), httpRequest.getRequestURI(), timestamp);
+        return ResponseEntity.ok(response);
+    }
+}
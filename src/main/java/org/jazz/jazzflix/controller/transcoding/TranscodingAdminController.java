@@ -0,0 +1,57 @@
+package org.jazz.jazzflix.controller.transcoding;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.jazz.jazzflix.dto.Response;
+import org.jazz.jazzflix.dto.video.DeadLetterJob;
+import org.jazz.jazzflix.service.transcoding.TranscodingDeadLetterService;
+import org.jazz.jazzflix.service.transcoding.TranscodingScheduler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/transcoding")
+public class TranscodingAdminController {
+
+    private final TranscodingScheduler scheduler;
+    private final TranscodingDeadLetterService deadLetterService;
+
+    public TranscodingAdminController(TranscodingScheduler scheduler,
+                                      TranscodingDeadLetterService deadLetterService) {
+        this.scheduler = scheduler;
+        this.deadLetterService = deadLetterService;
+    }
+
+    @GetMapping("/scheduler")
+    public ResponseEntity<Response<TranscodingScheduler.SchedulerStats>> getSchedulerStats(HttpServletRequest httpRequest) {
+        return ok("Transcoding scheduler stats", scheduler.stats(), httpRequest);
+    }
+
+    @GetMapping("/dlt")
+    public ResponseEntity<Response<List<DeadLetterJob>>> getDeadLetters(@RequestParam(defaultValue = "50") int limit,
+                                                                        HttpServletRequest httpRequest) {
+        return ok("Dead-lettered transcoding jobs", deadLetterService.list(limit), httpRequest);
+    }
+
+    @PostMapping("/dlt/{partition}/{offset}/replay")
+    public ResponseEntity<Response<DeadLetterJob>> replayDeadLetter(@PathVariable int partition,
+                                                                    @PathVariable long offset,
+                                                                    HttpServletRequest httpRequest) {
+        return ok("Transcoding job replayed", deadLetterService.replay(partition, offset), httpRequest);
+    }
+
+    private <T> ResponseEntity<Response<T>> ok(String message, T data, HttpServletRequest httpRequest) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        Response<T> response = new Response<>(true, message, data, HttpStatus.OK.value(), httpRequest.getRequestURI(), timestamp);
+        return ResponseEntity.ok(response);
+    }
+}
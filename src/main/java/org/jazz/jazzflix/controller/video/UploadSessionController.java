@@ -0,0 +1,103 @@
+package org.jazz.jazzflix.controller.video;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.jazz.jazzflix.dto.Response;
+import org.jazz.jazzflix.dto.VideoUploadResponse;
+import org.jazz.jazzflix.dto.video.DirectUploadTicket;
+import org.jazz.jazzflix.dto.video.UploadSessionRequest;
+import org.jazz.jazzflix.dto.video.UploadSessionStatus;
+import org.jazz.jazzflix.dto.video.UploadedPart;
+import org.jazz.jazzflix.service.video.UploadSessionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: create a session, PUT the parts (raw bodies with Content-Length) by number or
+ * offset in any order, GET the session to see what arrived, then POST complete.
+ *
+ * Direct uploads: POST /direct instead and PUT the parts to the returned MinIO URLs, then POST
+ * complete with the ETag of each part. The bucket's CORS rules must expose ETag to browsers.
+ */
+@RestController
+@RequestMapping("/video/api/uploads")
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Response<UploadSessionStatus>> createSession(@RequestBody UploadSessionRequest request,
+                                                                       HttpServletRequest httpRequest) {
+        return respond(HttpStatus.CREATED, "Upload session created.", uploadSessionService.create(request), httpRequest);
+    }
+
+    @PostMapping("/direct")
+    public ResponseEntity<Response<DirectUploadTicket>> createDirectSession(@RequestBody UploadSessionRequest request,
+                                                                            HttpServletRequest httpRequest) {
+        return respond(HttpStatus.CREATED, "Direct upload session created. PUT the parts to their URLs.",
+                uploadSessionService.createDirect(request), httpRequest);
+    }
+
+    @GetMapping("/{sessionId}/part-urls")
+    public ResponseEntity<Response<List<DirectUploadTicket.PartUrl>>> getPartUrls(@PathVariable UUID sessionId,
+                                                                                  @RequestParam(value = "from", defaultValue = "1") int firstPart,
+                                                                                  @RequestParam(value = "count", required = false) Integer count,
+                                                                                  HttpServletRequest httpRequest) {
+        return respond(HttpStatus.OK, "Part URLs.", uploadSessionService.partUrls(sessionId, firstPart, count), httpRequest);
+    }
+
+    @PutMapping("/{sessionId}/parts/{partNumber}")
+    public ResponseEntity<Response<UploadedPart>> putPart(@PathVariable UUID sessionId,
+                                                          @PathVariable int partNumber,
+                                                          HttpServletRequest httpRequest) throws IOException {
+        UploadedPart part = uploadSessionService.putPart(sessionId, partNumber, httpRequest.getInputStream(),
+                httpRequest.getContentLengthLong());
+        return respond(HttpStatus.OK, "Part stored.", part, httpRequest);
+    }
+
+    @PutMapping("/{sessionId}")
+    public ResponseEntity<Response<UploadedPart>> putPartAt(@PathVariable UUID sessionId,
+                                                            @RequestParam("offset") long offset,
+                                                            HttpServletRequest httpRequest) throws IOException {
+        UploadedPart part = uploadSessionService.putPartAt(sessionId, offset, httpRequest.getInputStream(),
+                httpRequest.getContentLengthLong());
+        return respond(HttpStatus.OK, "Part stored.", part, httpRequest);
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<Response<UploadSessionStatus>> getSession(@PathVariable UUID sessionId,
+                                                                    HttpServletRequest httpRequest) {
+        return respond(HttpStatus.OK, "Upload session status.", uploadSessionService.status(sessionId), httpRequest);
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<Response<VideoUploadResponse>> completeSession(@PathVariable UUID sessionId,
+                                                                         @RequestBody(required = false) List<UploadedPart> parts,
+                                                                         HttpServletRequest httpRequest) {
+        return respond(HttpStatus.OK, "Video upload completed. Use the uploadId to track progress.",
+                uploadSessionService.complete(sessionId, parts), httpRequest);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Response<Void>> abortSession(@PathVariable UUID sessionId,
+                                                       HttpServletRequest httpRequest) {
+        uploadSessionService.abort(sessionId);
+        return respond(HttpStatus.OK, "Upload session aborted.", null, httpRequest);
+    }
+
+    private <T> ResponseEntity<Response<T>> respond(HttpStatus status, String message, T data, HttpServletRequest httpRequest) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        Response<T> response = new Response<>(true, message, data, status.value(), httpRequest.getRequestURI(), timestamp);
+        return ResponseEntity.status(status).body(response);
+    }
+}
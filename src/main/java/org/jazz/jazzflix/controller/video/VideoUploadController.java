@@ -1,24 +1,27 @@
 package org.jazz.jazzflix.controller.video;
 
-import io.minio.GetObjectArgs;
-import io.minio.MinioClient;
-import org.jazz.jazzflix.config.storage.MinioProperties;
 import org.jazz.jazzflix.dto.ProgressInfo;
 import org.jazz.jazzflix.dto.Response;
 import org.jazz.jazzflix.dto.VideoUploadResponse;
-import org.jazz.jazzflix.entity.video.TblVideoAssest;
 import org.jazz.jazzflix.exception.DataNotFoundException;
-import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
 import org.jazz.jazzflix.service.ProgressService;
 import org.jazz.jazzflix.service.VideoTranscodingService;
+import org.jazz.jazzflix.service.delivery.ManifestRenderer;
+import org.jazz.jazzflix.service.delivery.NonBlockingStreamer;
+import org.jazz.jazzflix.service.delivery.ObjectStreamer;
+import org.jazz.jazzflix.service.delivery.PresignedRedirects;
+import org.jazz.jazzflix.service.delivery.SegmentPrefetcher;
+import org.jazz.jazzflix.service.delivery.ThumbnailService;
+import org.jazz.jazzflix.service.transcoding.DashOutputUploader;
 import org.jazz.jazzflix.service.video.VideoUploadService;
 import org.jazz.jazzflix.dto.VideoQualityDto;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -28,22 +31,31 @@ import java.util.List;
 @RequestMapping("/video")
 public class VideoUploadController {
     private final VideoUploadService videoUploadService;
-    private final TblVideoAssestRepository videoAssestRepository;
-    private final MinioClient minioClient;
-    private final MinioProperties minioProperties;
+    private final ThumbnailService thumbnailService;
+    private final ObjectStreamer objectStreamer;
+    private final ManifestRenderer manifestRenderer;
+    private final NonBlockingStreamer nonBlockingStreamer;
+    private final SegmentPrefetcher segmentPrefetcher;
+    private final PresignedRedirects presignedRedirects;
     private final ProgressService progressService;
     private final VideoTranscodingService transcodingService;
 
     public VideoUploadController(VideoUploadService videoUploadService,
-                                 TblVideoAssestRepository videoAssestRepository,
-                                 MinioClient minioClient,
-                                 MinioProperties minioProperties,
+                                 ThumbnailService thumbnailService,
+                                 ObjectStreamer objectStreamer,
+                                 ManifestRenderer manifestRenderer,
+                                 NonBlockingStreamer nonBlockingStreamer,
+                                 SegmentPrefetcher segmentPrefetcher,
+                                 PresignedRedirects presignedRedirects,
                                  ProgressService progressService,
                                  VideoTranscodingService transcodingService) {
         this.videoUploadService = videoUploadService;
-        this.videoAssestRepository = videoAssestRepository;
-        this.minioClient = minioClient;
-        this.minioProperties = minioProperties;
+        this.thumbnailService = thumbnailService;
+        this.objectStreamer = objectStreamer;
+        this.manifestRenderer = manifestRenderer;
+        this.nonBlockingStreamer = nonBlockingStreamer;
+        this.segmentPrefetcher = segmentPrefetcher;
+        this.presignedRedirects = presignedRedirects;
         this.progressService = progressService;
         this.transcodingService = transcodingService;
     }
@@ -61,31 +73,28 @@ public class VideoUploadController {
         return ResponseEntity.status(HttpStatus.OK).body(response);
     }
 
-    @GetMapping(value = "/api/thumbnail/{videoId}", produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> getThumbnail(@PathVariable UUID videoId) {
-        try {
-            TblVideoAssest video = videoAssestRepository.findById(videoId)
-                    .orElseThrow(() -> new DataNotFoundException("Video not found with ID: " + videoId));
-
-            if (video.getThumbnailObjectKey() == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(video.getThumbnailObjectKey())
-                    .build();
-
-            byte[] thumbnailData = minioClient.getObject(getArgs).readAllBytes();
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_JPEG)
-                    .body(thumbnailData);
+    /**
+     * Takes the video as the raw request body, e.g. {@code curl -T movie.mp4 -H "X-File-Name: movie.mp4"},
+     * and stores it to MinIO as it arrives instead of spooling a multipart form to disk first.
+     */
+    @PostMapping(value = "/api/upload/stream", consumes = "!multipart/form-data")
+    public ResponseEntity<Response<VideoUploadResponse>> uploadVideoStream(@RequestHeader(value = "X-File-Name", required = false) String fileName,
+                                                                           HttpServletRequest httpRequest) throws IOException {
+        VideoUploadResponse uploadResponse = videoUploadService.handleStreamUpload(httpRequest.getInputStream(),
+                httpRequest.getContentLengthLong(), fileName, httpRequest.getContentType());
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        Response<VideoUploadResponse> response = new Response<>(true, "Video upload initiated. Use the uploadId to track progress.",
+                uploadResponse, HttpStatus.OK.value(), httpRequest.getRequestURI(), timestamp);
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
 
-        } catch (DataNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    @GetMapping("/api/thumbnail/{videoId}")
+    public void getThumbnail(@PathVariable UUID videoId,
+                             @RequestParam(value = "w", required = false) Integer width,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws Exception {
+        // ?w= picks a resized variant, catalog tiles should always pass it
+        thumbnailService.serve(videoId, width, request, response);
     }
 
     @GetMapping("/api/progress/{uploadId}")
@@ -120,89 +129,69 @@ public class VideoUploadController {
     }
 
     @GetMapping("/api/download/{videoId}/{quality}")
-    public ResponseEntity<byte[]> downloadVideo(@PathVariable UUID videoId, @PathVariable String quality) {
-        try {
-            // Find the video quality record
-            List<VideoQualityDto> qualities = transcodingService.getVideoQualities(videoId);
-            VideoQualityDto selectedQuality = qualities.stream()
-                    .filter(q -> q.getQuality().equalsIgnoreCase(quality))
-                    .findFirst()
-                    .orElseThrow(() -> new DataNotFoundException("Quality not found: " + quality));
-
-            if (!"COMPLETED".equals(selectedQuality.getStatus())) {
-                return ResponseEntity.status(HttpStatus.PROCESSING)
-                        .header("X-Processing-Status", selectedQuality.getStatus())
-                        .build();
-            }
-
-            // Get the object key for this quality
-            String objectKey = "videos/qualities/" + quality.toLowerCase() + "/" +
-                    videoId + "_" + quality.toLowerCase() + ".mp4";
-
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(objectKey)
-                    .build();
-
-            byte[] videoData = minioClient.getObject(getArgs).readAllBytes();
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("video/mp4"))
-                    .header("Content-Disposition", "attachment; filename=\"" + videoId + "_" + quality + ".mp4\"")
-                    .body(videoData);
-
-        } catch (DataNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public void downloadVideo(@PathVariable UUID videoId,
+                              @PathVariable String quality,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws Exception {
+        // Find the video quality record
+        List<VideoQualityDto> qualities = transcodingService.getVideoQualities(videoId);
+        VideoQualityDto selectedQuality = qualities.stream()
+                .filter(q -> q.getQuality().equalsIgnoreCase(quality))
+                .findFirst()
+                .orElseThrow(() -> new DataNotFoundException("Quality not found: " + quality));
+
+        if (!"COMPLETED".equals(selectedQuality.getStatus())) {
+            response.setStatus(HttpStatus.PROCESSING.value());
+            response.setHeader("X-Processing-Status", selectedQuality.getStatus());
+            return;
         }
-    }
 
-    @GetMapping("/api/dash/{videoId}/manifest.mpd")
-    public ResponseEntity<byte[]> getDashManifest(@PathVariable UUID videoId) {
-        try {
-            String objectKey = "videos/" + videoId + "/dash/manifest.mpd";
-
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(objectKey)
-                    .build();
+        // Get the object key for this quality
+        String objectKey = "videos/qualities/" + quality.toLowerCase() + "/" +
+                videoId + "_" + quality.toLowerCase() + ".mp4";
 
-            byte[] manifestData = minioClient.getObject(getArgs).readAllBytes();
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("application/dash+xml"))
-                    .body(manifestData);
+        String fileName = videoId + "_" + quality + ".mp4";
+        if (presignedRedirects.applies(objectKey)) {
+            presignedRedirects.redirect(objectKey, fileName, response);
+            return;
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        objectStreamer.stream(objectKey, "video/mp4", request, response);
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/api/dash/{videoId}/manifest.mpd")
+    public void getDashManifest(@PathVariable UUID videoId,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws Exception {
+        if (manifestRenderer.isEnabled()) {
+            // Rendered from the recorded representations, ?maxHeight= and ?maxBandwidth= narrow the ladder
+            manifestRenderer.serve(videoId, request, response);
+            return;
         }
+        String objectKey = "videos/" + videoId + "/dash/manifest.mpd";
+        objectStreamer.stream(objectKey, "application/dash+xml", request, response);
     }
 
     @GetMapping("/api/dash/{videoId}/**")
-    public ResponseEntity<byte[]> getDashSegment(@PathVariable UUID videoId, HttpServletRequest request) {
-        try {
-            // Extract the segment path from the request URI
-            String requestUri = request.getRequestURI();
-            String segmentPath = requestUri.substring(requestUri.indexOf("/api/dash/" + videoId + "/") + ("/api/dash/" + videoId + "/").length());
-
-            String objectKey = "videos/" + videoId + "/dash/" + segmentPath;
-
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(objectKey)
-                    .build();
-
-            byte[] segmentData = minioClient.getObject(getArgs).readAllBytes();
+    public void getDashSegment(@PathVariable UUID videoId,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws Exception {
+        // Extract the segment path from the request URI
+        String requestUri = request.getRequestURI();
+        String segmentPath = requestUri.substring(requestUri.indexOf("/api/dash/" + videoId + "/") + ("/api/dash/" + videoId + "/").length());
 
-            String contentType = segmentPath.endsWith(".m4s") ? "video/iso.segment" : "application/octet-stream";
+        String objectKey = "videos/" + videoId + "/dash/" + segmentPath;
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(segmentData);
+        // Rendition manifests are served here too, e.g. {quality}/manifest.mpd while the rendition is still encoding
+        String contentType = DashOutputUploader.contentType(segmentPath);
 
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+        if (presignedRedirects.applies(objectKey)) {
+            presignedRedirects.redirect(objectKey, null, response);
+            return;
         }
+
+        // The player will ask for the following segments next, start fetching them now
+        segmentPrefetcher.onSegmentRequested(objectKey, request);
+        nonBlockingStreamer.stream(objectKey, contentType, request, response);
     }
 }
@@ -0,0 +1,26 @@
+package org.jazz.jazzflix.dto.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyframe-aligned split of a source video, stored next to its DASH output as plan.json.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkPlan {
+    private UUID videoId;
+    private double durationSeconds;
+    // chunkCount + 1 cut points in source seconds, first is 0 and last is the duration
+    private List<Double> boundaries;
+    private List<String> qualities;
+
+    public int chunkCount() {
+        return boundaries.size() - 1;
+    }
+}
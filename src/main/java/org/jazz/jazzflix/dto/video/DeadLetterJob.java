@@ -0,0 +1,22 @@
+package org.jazz.jazzflix.dto.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A transcoding job parked in the dead-letter topic after its last retry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterJob {
+    private int partition;
+    private long offset;
+    private long timestamp;
+    private String key;
+    private VideoTranscodingEvent event;
+    // Taken from the headers DeadLetterPublishingRecoverer adds
+    private String exceptionClass;
+    private String exceptionMessage;
+}
@@ -0,0 +1,29 @@
+package org.jazz.jazzflix.dto.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Where a client uploads a video itself: a PUT of each part's bytes to its URL, whose response
+ * ETag is sent back on completion. Part n (1-based) covers bytes [offset, offset + sizeBytes).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadTicket {
+    private UUID sessionId;
+    private UUID videoId;
+    private long sizeBytes;
+    private long partSizeBytes;
+    private int partCount;
+    private int urlExpirySeconds;
+    // A batch of the part URLs when there are many, the rest are fetched from the session
+    private List<PartUrl> partUrls;
+
+    public record PartUrl(int partNumber, long offset, long sizeBytes, String url) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.jazz.jazzflix.dto.video;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One S entry of a DASH SegmentTimeline: start time t (first entry only), duration d and repeat
+ * count r, in the representation's timescale.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TimelineSegment(Long t, long d, Long r) {
+}
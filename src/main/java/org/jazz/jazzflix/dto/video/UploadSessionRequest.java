@@ -0,0 +1,16 @@
+package org.jazz.jazzflix.dto.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequest {
+    private String fileName;
+    private String contentType;
+    private long sizeBytes;
+    // Optional, the server default is used when absent and raised when too small
+    private Long partSizeBytes;
+}
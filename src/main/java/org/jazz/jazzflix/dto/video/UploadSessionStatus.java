@@ -0,0 +1,32 @@
+package org.jazz.jazzflix.dto.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What a resumable upload session has received. Part n (1-based) covers bytes
+ * [(n - 1) * partSizeBytes, min(n * partSizeBytes, sizeBytes)).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionStatus {
+    private UUID sessionId;
+    private String status;
+    private String fileName;
+    private long sizeBytes;
+    private long partSizeBytes;
+    private int partCount;
+    private long receivedBytes;
+    private List<ReceivedRange> receivedRanges;
+    private List<Integer> missingParts;
+    private UUID videoId;
+
+    // Inclusive byte range, as in Content-Range
+    public record ReceivedRange(long start, long end) {
+    }
+}
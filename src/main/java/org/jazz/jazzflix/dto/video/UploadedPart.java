@@ -0,0 +1,4 @@
+package org.jazz.jazzflix.dto.video;
+
+public record UploadedPart(int partNumber, long sizeBytes, String etag) {
+}
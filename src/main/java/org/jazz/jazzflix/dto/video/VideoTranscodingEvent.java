@@ -10,10 +10,40 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 public class VideoTranscodingEvent {
+
+    public enum JobType {
+        QUALITY, // transcode the single rendition named by quality
+        LADDER,  // transcode every rendition from one decode, quality is ignored
+        PLAN,    // split a long source at keyframes and fan out CHUNK and AUDIO jobs
+        CHUNK,   // transcode one time range of one rendition
+        AUDIO    // transcode the audio track once for a chunked video
+    }
+
     private UUID videoId;
     private String originalObjectKey;
     private String contentType;
     private String quality;
+    private JobType jobType;
+    // Size of the original, used by the scheduler to run small sources first
+    private Long sourceSizeBytes;
+
+    // CHUNK jobs only
+    private Integer chunkIndex;
+    private Integer chunkCount;
+    private Double startSeconds;
+    private Double endSeconds;
+
+    public VideoTranscodingEvent(UUID videoId, String originalObjectKey, String contentType, String quality) {
+        this(videoId, originalObjectKey, contentType, quality, JobType.QUALITY);
+    }
+
+    public VideoTranscodingEvent(UUID videoId, String originalObjectKey, String contentType, String quality, JobType jobType) {
+        this.videoId = videoId;
+        this.originalObjectKey = originalObjectKey;
+        this.contentType = contentType;
+        this.quality = quality;
+        this.jobType = jobType;
+    }
 
     public String getOriginalObjectKey() {
         return originalObjectKey;
@@ -26,4 +56,4 @@ public class VideoTranscodingEvent {
     public String getQuality() {
         return quality;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package org.jazz.jazzflix.entity.video;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Ledger row of one transcoding job. Claims and state changes go through the conditional
+ * native updates in TblTranscodingJobRepository, never through save().
+ */
+@Entity
+@Table(name = "TBL_TRANSCODING_JOB",
+        uniqueConstraints = @UniqueConstraint(name = "uk_transcoding_job_video_job_key", columnNames = {"video_id", "job_key"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TblTranscodingJob {
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    private UUID id;
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    @Column(name = "job_key", nullable = false, length = 50)
+    private String jobKey; // "720p", "720p#3", "ladder", "plan", "audio"
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status; // "PENDING", "PROCESSING", "COMPLETED", "FAILED", "DEAD" (retries used up)
+
+    @Column(name = "lease_owner", length = 150)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private Timestamp leaseExpiresAt;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Timestamp updatedAt;
+}
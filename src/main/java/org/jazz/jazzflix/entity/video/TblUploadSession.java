@@ -0,0 +1,67 @@
+package org.jazz.jazzflix.entity.video;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * A resumable upload. The parts themselves live only in the MinIO multipart upload, which is
+ * asked for what was received; this row holds what is needed to address and finalize it.
+ * Status changes go through the conditional updates in TblUploadSessionRepository.
+ */
+@Entity
+@Table(name = "TBL_UPLOAD_SESSION")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TblUploadSession {
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    private UUID id;
+
+    @Column(name = "object_key", nullable = false, unique = true, length = 255)
+    private String objectKey;
+
+    @Column(name = "original_file_name", nullable = false, length = 255)
+    private String originalFileName;
+
+    @Column(name = "content_type", length = 150)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "part_size_bytes", nullable = false)
+    private long partSizeBytes;
+
+    @Column(name = "multipart_upload_id", nullable = false, length = 255)
+    private String multipartUploadId;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status; // "OPEN", "COMPLETING", "STORED", "REGISTERING", "COMPLETED", "ABORTED"
+
+    @Column(name = "video_id")
+    private UUID videoId;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Timestamp updatedAt;
+
+    public int partCount() {
+        return (int) ((sizeBytes + partSizeBytes - 1) / partSizeBytes);
+    }
+
+    /**
+     * Length of the 1-based part, only the last one may be shorter.
+     */
+    public long partLength(int partNumber) {
+        return Math.min(partSizeBytes, sizeBytes - (partNumber - 1) * partSizeBytes);
+    }
+}
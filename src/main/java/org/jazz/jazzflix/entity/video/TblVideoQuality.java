@@ -10,7 +10,8 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "TBL_VIDEO_QUALITY")
+@Table(name = "TBL_VIDEO_QUALITY",
+        uniqueConstraints = @UniqueConstraint(name = "uk_video_quality_video_quality", columnNames = {"video_id", "quality"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
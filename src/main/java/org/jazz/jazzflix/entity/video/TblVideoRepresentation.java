@@ -0,0 +1,91 @@
+package org.jazz.jazzflix.entity.video;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One Representation of a video's DASH manifest. The manifest served to players is rendered
+ * from these rows, so they are replaced as a whole whenever the video's manifest changes.
+ */
+@Entity
+@Table(name = "TBL_VIDEO_REPRESENTATION",
+        uniqueConstraints = @UniqueConstraint(name = "uk_video_representation_video_representation", columnNames = {"video_id", "representation_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TblVideoRepresentation {
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    private UUID id;
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    @Column(name = "representation_id", nullable = false, length = 50)
+    private String representationId; // "720p", or "0", "1", ... for ladder jobs
+
+    @Column(name = "content_type", nullable = false, length = 10)
+    private String contentType; // "video", "audio"
+
+    @Column(name = "mime_type", nullable = false, length = 50)
+    private String mimeType;
+
+    @Column(name = "codecs", length = 100)
+    private String codecs;
+
+    @Column(name = "bandwidth", nullable = false)
+    private long bandwidth;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "frame_rate", length = 20)
+    private String frameRate;
+
+    @Column(name = "sample_rate")
+    private Integer sampleRate;
+
+    @Column(name = "audio_channels")
+    private Integer audioChannels;
+
+    @Column(name = "lang", length = 20)
+    private String lang;
+
+    @Column(name = "timescale", nullable = false)
+    private long timescale;
+
+    @Column(name = "start_number", nullable = false)
+    private long startNumber;
+
+    @Column(name = "initialization", nullable = false, length = 255)
+    private String initialization;
+
+    @Column(name = "media", nullable = false, length = 255)
+    private String media;
+
+    @Column(name = "segment_timeline", nullable = false, columnDefinition = "TEXT")
+    private String segmentTimeline;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
+    private Timestamp createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (id == null) {
+            id = UUID.randomUUID();
+        }
+        if (createdAt == null) {
+            createdAt = Timestamp.from(Instant.now());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.jazz.jazzflix.repository.video;
+
+import org.jazz.jazzflix.entity.video.TblTranscodingJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * All state changes are single conditional statements, so two workers racing for the same job
+ * cannot both win. Lease times use the database clock.
+ */
+@Repository
+public interface TblTranscodingJobRepository extends JpaRepository<TblTranscodingJob, UUID> {
+
+    Optional<TblTranscodingJob> findByVideoIdAndJobKey(UUID videoId, String jobKey);
+
+    List<TblTranscodingJob> findByVideoId(UUID videoId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO TBL_TRANSCODING_JOB (id, video_id, job_key, status, attempts, payload, created_at, updated_at) "
+            + "VALUES (:id, :videoId, :jobKey, 'PENDING', 0, :payload, now(), now()) "
+            + "ON CONFLICT (video_id, job_key) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("videoId") UUID videoId,
+                       @Param("jobKey") String jobKey,
+                       @Param("payload") String payload);
+
+    /**
+     * PENDING, FAILED or DEAD (a replayed dead letter) -> PROCESSING, or take over a PROCESSING job
+     * whose owner's lease ran out.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_TRANSCODING_JOB SET status = 'PROCESSING', lease_owner = :owner, "
+            + "lease_expires_at = now() + (:leaseSeconds * interval '1 second'), attempts = attempts + 1, updated_at = now() "
+            + "WHERE video_id = :videoId AND job_key = :jobKey "
+            + "AND (status IN ('PENDING', 'FAILED', 'DEAD') OR (status = 'PROCESSING' AND lease_expires_at < now()))", nativeQuery = true)
+    int claim(@Param("videoId") UUID videoId,
+              @Param("jobKey") String jobKey,
+              @Param("owner") String owner,
+              @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_TRANSCODING_JOB SET lease_expires_at = now() + (:leaseSeconds * interval '1 second'), updated_at = now() "
+            + "WHERE video_id = :videoId AND job_key = :jobKey AND status = 'PROCESSING' AND lease_owner = :owner", nativeQuery = true)
+    int renewLease(@Param("videoId") UUID videoId,
+                   @Param("jobKey") String jobKey,
+                   @Param("owner") String owner,
+                   @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * PROCESSING -> COMPLETED or FAILED, only by the worker still holding the lease.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_TRANSCODING_JOB SET status = :status, lease_owner = NULL, lease_expires_at = NULL, updated_at = now() "
+            + "WHERE video_id = :videoId AND job_key = :jobKey AND status = 'PROCESSING' AND lease_owner = :owner", nativeQuery = true)
+    int release(@Param("videoId") UUID videoId,
+                @Param("jobKey") String jobKey,
+                @Param("owner") String owner,
+                @Param("status") String status);
+
+    /**
+     * PENDING or FAILED -> DEAD once the job used up its retries and was parked in the dead-letter topic.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_TRANSCODING_JOB SET status = 'DEAD', lease_owner = NULL, lease_expires_at = NULL, updated_at = now() "
+            + "WHERE video_id = :videoId AND job_key = :jobKey AND status IN ('PENDING', 'FAILED')", nativeQuery = true)
+    int markDead(@Param("videoId") UUID videoId, @Param("jobKey") String jobKey);
+
+    @Query(value = "SELECT count(*) FROM TBL_TRANSCODING_JOB WHERE video_id = :videoId AND job_key LIKE :jobKeyPattern "
+            + "AND status = 'DEAD'", nativeQuery = true)
+    long countDead(@Param("videoId") UUID videoId, @Param("jobKeyPattern") String jobKeyPattern);
+
+    /**
+     * Jobs whose worker died (lease ran out) or that were published but never picked up.
+     */
+    @Query(value = "SELECT * FROM TBL_TRANSCODING_JOB "
+            + "WHERE (status = 'PROCESSING' AND lease_expires_at < now()) "
+            + "OR (status = 'PENDING' AND updated_at < now() - (:staleMinutes * interval '1 minute')) "
+            + "ORDER BY updated_at LIMIT :limit", nativeQuery = true)
+    List<TblTranscodingJob> findStale(@Param("staleMinutes") long staleMinutes, @Param("limit") int limit);
+
+    /**
+     * Puts a stale job back to PENDING. Only one reconciler wins, and only while the job is still stale.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_TRANSCODING_JOB SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, updated_at = now() "
+            + "WHERE id = :id AND ((status = 'PROCESSING' AND lease_expires_at < now()) "
+            + "OR (status = 'PENDING' AND updated_at < now() - (:staleMinutes * interval '1 minute')))", nativeQuery = true)
+    int requeue(@Param("id") UUID id, @Param("staleMinutes") long staleMinutes);
+}
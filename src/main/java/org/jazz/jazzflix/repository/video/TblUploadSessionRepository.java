@@ -0,0 +1,56 @@
+package org.jazz.jazzflix.repository.video;
+
+import org.jazz.jazzflix.entity.video.TblUploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Status changes are single conditional statements, so two finalize calls for the same session,
+ * on the same node or not, cannot both proceed. updated_at of a COMPLETING or REGISTERING session
+ * is the lease of whoever finalizes it.
+ */
+@Repository
+public interface TblUploadSessionRepository extends JpaRepository<TblUploadSession, UUID> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_UPLOAD_SESSION SET status = :to, updated_at = now() "
+            + "WHERE id = :id AND status = :from", nativeQuery = true)
+    int transition(@Param("id") UUID id, @Param("from") String from, @Param("to") String to);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_UPLOAD_SESSION SET status = 'COMPLETED', video_id = :videoId, updated_at = now() "
+            + "WHERE id = :id AND status = 'REGISTERING'", nativeQuery = true)
+    int markCompleted(@Param("id") UUID id, @Param("videoId") UUID videoId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_UPLOAD_SESSION SET updated_at = now() WHERE id = :id AND status = 'OPEN'", nativeQuery = true)
+    int touch(@Param("id") UUID id);
+
+    // Takes over a finalization whose lease ran out, e.g. after a crash
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_UPLOAD_SESSION SET updated_at = now() WHERE id = :id AND status = :status "
+            + "AND updated_at < now() - (:leaseMinutes * interval '1 minute')", nativeQuery = true)
+    int reclaim(@Param("id") UUID id, @Param("status") String status, @Param("leaseMinutes") long leaseMinutes);
+
+    @Query(value = "SELECT * FROM TBL_UPLOAD_SESSION "
+            + "WHERE status IN ('COMPLETING', 'STORED', 'REGISTERING') "
+            + "AND updated_at < now() - (:leaseMinutes * interval '1 minute') "
+            + "ORDER BY updated_at LIMIT :limit", nativeQuery = true)
+    List<TblUploadSession> findStalled(@Param("leaseMinutes") long leaseMinutes, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM TBL_UPLOAD_SESSION "
+            + "WHERE status = 'OPEN' AND updated_at < now() - (:expiryHours * interval '1 hour') "
+            + "ORDER BY updated_at LIMIT :limit", nativeQuery = true)
+    List<TblUploadSession> findExpired(@Param("expiryHours") long expiryHours, @Param("limit") int limit);
+}
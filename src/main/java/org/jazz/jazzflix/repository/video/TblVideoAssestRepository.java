@@ -2,8 +2,32 @@ package org.jazz.jazzflix.repository.video;
 
 import org.jazz.jazzflix.entity.video.TblVideoAssest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface TblVideoAssestRepository extends JpaRepository<TblVideoAssest, UUID> {
+
+    Optional<TblVideoAssest> findByObjectKey(String objectKey);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_VIDEO SET status = :to WHERE id = :id AND status = :from", nativeQuery = true)
+    int transitionStatus(@Param("id") UUID id, @Param("from") String from, @Param("to") String to);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE TBL_VIDEO SET thumbnail_object_key = :thumbnailObjectKey WHERE id = :id", nativeQuery = true)
+    int updateThumbnailObjectKey(@Param("id") UUID id, @Param("thumbnailObjectKey") String thumbnailObjectKey);
+
+    // Stored videos the post-upload pipeline has not finished
+    @Query(value = "SELECT * FROM TBL_VIDEO WHERE status = 'UPLOADED' "
+            + "AND created_at < now() - (:minutes * interval '1 minute') "
+            + "ORDER BY created_at LIMIT :limit", nativeQuery = true)
+    List<TblVideoAssest> findUnprocessed(@Param("minutes") long minutes, @Param("limit") int limit);
 }
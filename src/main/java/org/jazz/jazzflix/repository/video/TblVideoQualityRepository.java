@@ -2,9 +2,12 @@ package org.jazz.jazzflix.repository.video;
 
 import org.jazz.jazzflix.entity.video.TblVideoQuality;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -12,7 +15,32 @@ public interface TblVideoQualityRepository extends JpaRepository<TblVideoQuality
 
     List<TblVideoQuality> findByVideoId(UUID videoId);
 
+    Optional<TblVideoQuality> findFirstByVideoIdAndQuality(UUID videoId, String quality);
+
     List<TblVideoQuality> findByVideoIdAndStatus(UUID videoId, String status);
 
     List<TblVideoQuality> findByStatus(String status);
-}
\ No newline at end of file
+
+    // Row-locks the rendition until the caller's transaction ends
+    @Query(value = "SELECT * FROM TBL_VIDEO_QUALITY WHERE video_id = :videoId AND quality = :quality FOR UPDATE", nativeQuery = true)
+    List<TblVideoQuality> lockByVideoIdAndQuality(@Param("videoId") UUID videoId, @Param("quality") String quality);
+
+    /**
+     * Processed videos with an expected rendition that is not COMPLETED (no row, PENDING, PROCESSING
+     * or FAILED) and that no ledger job covers, i.e. its job was lost before it reached the ledger.
+     * A rendition is covered by its own job, one of its chunk jobs, or the video's ladder or plan job.
+     */
+    @Query(value = "SELECT DISTINCT v.id FROM TBL_VIDEO v "
+            + "CROSS JOIN unnest(ARRAY[:qualities]) AS e(quality) "
+            + "LEFT JOIN TBL_VIDEO_QUALITY q ON q.video_id = v.id AND q.quality = e.quality "
+            + "LEFT JOIN TBL_TRANSCODING_JOB j ON j.video_id = v.id "
+            + "AND (j.job_key = e.quality OR j.job_key LIKE e.quality || '#%' OR j.job_key IN ('ladder', 'plan')) "
+            + "WHERE v.status = 'PROCESSED' "
+            + "AND (q.id IS NULL OR q.status <> 'COMPLETED') "
+            + "AND j.id IS NULL "
+            + "AND COALESCE(q.created_at, v.created_at) < now() - (:staleMinutes * interval '1 minute') "
+            + "LIMIT :limit", nativeQuery = true)
+    List<UUID> findOrphanedVideoIds(@Param("qualities") List<String> qualities,
+                                    @Param("staleMinutes") long staleMinutes,
+                                    @Param("limit") int limit);
+}
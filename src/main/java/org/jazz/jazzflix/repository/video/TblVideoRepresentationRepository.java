@@ -0,0 +1,21 @@
+package org.jazz.jazzflix.repository.video;
+
+import org.jazz.jazzflix.entity.video.TblVideoRepresentation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TblVideoRepresentationRepository extends JpaRepository<TblVideoRepresentation, UUID> {
+
+    List<TblVideoRepresentation> findByVideoId(UUID videoId);
+
+    @Modifying
+    @Query(value = "DELETE FROM TBL_VIDEO_REPRESENTATION WHERE video_id = :videoId", nativeQuery = true)
+    int deleteByVideoId(@Param("videoId") UUID videoId);
+}
@@ -1,5 +1,6 @@
 package org.jazz.jazzflix.service;
 
+import jakarta.annotation.PreDestroy;
 import org.jazz.jazzflix.dto.ProgressInfo;
 import org.springframework.stereotype.Service;
 
@@ -75,6 +76,7 @@ public class ProgressService {
         });
     }
 
+    @PreDestroy
     public void shutdown() {
         cleanupExecutor.shutdown();
         try {
@@ -2,13 +2,17 @@ package org.jazz.jazzflix.service;
 
 import lombok.RequiredArgsConstructor;
 import org.jazz.jazzflix.entity.video.TblVideoQuality;
+import org.jazz.jazzflix.entity.video.TblVideoRepresentation;
+import org.jazz.jazzflix.repository.video.TblTranscodingJobRepository;
 import org.jazz.jazzflix.repository.video.TblVideoQualityRepository;
+import org.jazz.jazzflix.repository.video.TblVideoRepresentationRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -17,6 +21,8 @@ public class VideoQualityPersistenceService {
     private static final Logger log = LoggerFactory.getLogger(VideoQualityPersistenceService.class);
 
     private final TblVideoQualityRepository qualityRepository;
+    private final TblVideoRepresentationRepository representationRepository;
+    private final TblTranscodingJobRepository jobRepository;
 
     /**
      * Save a single quality record with simple retry logic.
@@ -48,8 +54,53 @@ public class VideoQualityPersistenceService {
         return quality; // unreachable
     }
 
+    /**
+     * Derive the status of a chunked rendition from its chunk jobs in the ledger: FAILED while one
+     * of them is DEAD, PROCESSING otherwise, until the stitch marks it COMPLETED. The rendition row
+     * is locked while the ledger is read, so a chunk that reads no dead sibling cannot commit after
+     * the sibling's dead-letter handling and hide it.
+     */
+    @Transactional
+    public void deriveChunkedStatus(UUID videoId, String quality) {
+        for (TblVideoQuality existing : qualityRepository.lockByVideoIdAndQuality(videoId, quality)) {
+            if ("COMPLETED".equals(existing.getStatus())) {
+                continue;
+            }
+            String status = jobRepository.countDead(videoId, quality + "#%") > 0 ? "FAILED" : "PROCESSING";
+            if (!status.equals(existing.getStatus())) {
+                existing.setStatus(status);
+                qualityRepository.save(existing);
+                log.info("Marked TblVideoQuality {} for video {} as {} from its chunk jobs", quality, videoId, status);
+            }
+        }
+    }
+
+    /**
+     * Update the status of an existing quality record, if there is one.
+     */
+    @Transactional
+    public void markStatus(UUID videoId, String quality, String status) {
+        qualityRepository.findFirstByVideoIdAndQuality(videoId, quality).ifPresent(existing -> {
+            existing.setStatus(status);
+            qualityRepository.save(existing);
+            log.info("Marked TblVideoQuality {} for video {} as {}", quality, videoId, status);
+        });
+    }
+
     @Transactional
     public List<TblVideoQuality> saveAll(List<TblVideoQuality> qualities) {
         return qualityRepository.saveAll(qualities);
     }
+
+    /**
+     * Replace all representation rows of a video in one transaction, so readers see either the old
+     * or the new manifest but never a mix.
+     */
+    @Transactional
+    public List<TblVideoRepresentation> replaceRepresentations(UUID videoId, List<TblVideoRepresentation> representations) {
+        representationRepository.deleteByVideoId(videoId);
+        List<TblVideoRepresentation> saved = representationRepository.saveAll(representations);
+        log.info("Recorded {} DASH representations for video {}", saved.size(), videoId);
+        return saved;
+    }
 }
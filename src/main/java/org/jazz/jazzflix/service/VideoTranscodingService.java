@@ -1,114 +1,151 @@
 package org.jazz.jazzflix.service;
 
-import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
 import org.jazz.jazzflix.dto.VideoQualityDto;
 import org.jazz.jazzflix.entity.video.TblVideoQuality;
 import org.jazz.jazzflix.repository.video.TblVideoQualityRepository;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.GetObjectArgs;
+import org.jazz.jazzflix.service.transcoding.DashCommands;
+import org.jazz.jazzflix.service.transcoding.DashManifestAssembler;
+import org.jazz.jazzflix.service.transcoding.DashObjectKeys;
+import org.jazz.jazzflix.service.transcoding.DashOutputUploader;
+import org.jazz.jazzflix.service.transcoding.FFmpegRunner;
+import org.jazz.jazzflix.service.transcoding.IncrementalDashPublisher;
+import org.jazz.jazzflix.service.transcoding.RenditionCompletedEvent;
+import org.jazz.jazzflix.service.transcoding.TranscodeInput;
+import org.jazz.jazzflix.service.transcoding.TranscodeInputResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.FileOutputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.concurrent.TimeUnit;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VideoTranscodingService {
 
-    private final MinioClient minioClient;
-    private final MinioProperties minioProperties;
     private final TblVideoQualityRepository qualityRepository;
     private final VideoQualityPersistenceService qualityPersistenceService;
+    private final DashManifestAssembler manifestAssembler;
+    private final FFmpegRunner ffmpegRunner;
+    private final DashOutputUploader dashOutputUploader;
+    private final TranscodeInputResolver inputResolver;
+    private final IncrementalDashPublisher incrementalPublisher;
+    private final TranscodingProperties transcodingProperties;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Define quality configurations
     public enum VideoQuality {
-        ORIGINAL("ORIGINAL", null, null, null),
-        Q_1080P("1080p", "1920x1080", "5000k", "1920x1080"),
-        Q_720P("720p", "1280x720", "3000k", "1280x720"),
-        Q_480P("480p", "854x480", "1500k", "854x480"),
-        Q_360P("360p", "640x360", "800k", "640x360");
+        ORIGINAL("ORIGINAL", null, null, null, 0),
+        Q_1080P("1080p", "1920x1080", "5000k", "1920x1080", 4),
+        Q_720P("720p", "1280x720", "3000k", "1280x720", 2),
+        Q_480P("480p", "854x480", "1500k", "854x480", 1),
+        Q_360P("360p", "640x360", "800k", "640x360", 1);
 
         public final String name;
         public final String resolution;
         public final String bitrate;
         public final String scale;
+        // Relative CPU cost of encoding this rendition, used by the transcoding scheduler
+        public final int weight;
 
-        VideoQuality(String name, String resolution, String bitrate, String scale) {
+        VideoQuality(String name, String resolution, String bitrate, String scale, int weight) {
             this.name = name;
             this.resolution = resolution;
             this.bitrate = bitrate;
             this.scale = scale;
+            this.weight = weight;
+        }
+
+        /**
+         * Transcoded renditions from highest to lowest, ORIGINAL excluded.
+         */
+        public static List<VideoQuality> ladder() {
+            return Arrays.asList(Q_1080P, Q_720P, Q_480P, Q_360P);
         }
     }
 
-    @Async
-    @Transactional
-    public void transcodeVideoAsync(UUID videoId, String originalObjectKey, String originalContentType) {
-        log.info("Starting async DASH transcoding for video {} with object key {}", videoId, originalObjectKey);
+    /**
+     * Runs the ladder job. Failures put the renditions back to PENDING and are rethrown, so the
+     * Kafka listener can retry the job; they are marked FAILED once its retries are used up.
+     */
+    public void transcodeVideo(UUID videoId, String originalObjectKey, String originalContentType) throws Exception {
+        log.info("Starting DASH transcoding for video {} with object key {}", videoId, originalObjectKey);
 
         try {
+            markLadderStatus(videoId, "PROCESSING");
             createDashManifest(videoId, originalObjectKey, originalContentType);
         } catch (Exception e) {
             log.error("Failed to create DASH manifest for video {}", videoId, e);
+            markLadderStatus(videoId, "PENDING");
+            throw e;
         }
     }
 
-    @Async
-    @Transactional
-    public void transcodeVideoQualityAsync(UUID videoId, String originalObjectKey, String originalContentType, String quality) {
-        log.info("Starting async transcoding for video {} quality {} with object key {}", videoId, quality, originalObjectKey);
+    public void transcodeVideoQuality(UUID videoId, String originalObjectKey, String originalContentType, String quality) throws Exception {
+        log.info("Starting transcoding for video {} quality {} with object key {}", videoId, quality, originalObjectKey);
 
         try {
+            qualityPersistenceService.markStatus(videoId, quality, "PROCESSING");
             createDashForQuality(videoId, originalObjectKey, originalContentType, quality);
         } catch (Exception e) {
             log.error("Failed to transcode video {} for quality {}", videoId, quality, e);
+            // Waits for its retry, the manifest assembler keeps waiting for it too
+            qualityPersistenceService.markStatus(videoId, quality, "PENDING");
+            throw e;
+        }
+    }
+
+    /**
+     * Marks a rendition FAILED once its job used up its retries, and publishes the master manifest
+     * from the other renditions if this was the last one outstanding. A replay that completes the
+     * rendition assembles the manifest again with it.
+     */
+    public void qualityFailed(UUID videoId, String quality) {
+        qualityPersistenceService.markStatus(videoId, quality, "FAILED");
+        try {
+            manifestAssembler.assembleIfComplete(videoId);
+        } catch (Exception e) {
+            log.warn("Failed to assemble the DASH manifest of video {} without quality {}: {}", videoId, quality, e.getMessage());
+        }
+    }
+
+    /**
+     * Marks every rendition FAILED once the ladder job used up its retries.
+     */
+    public void ladderFailed(UUID videoId) {
+        markLadderStatus(videoId, "FAILED");
+    }
+
+    private void markLadderStatus(UUID videoId, String status) {
+        for (VideoQuality quality : VideoQuality.ladder()) {
+            qualityPersistenceService.markStatus(videoId, quality.name, status);
         }
     }
 
     private void createDashManifest(UUID videoId, String originalObjectKey, String contentType) throws Exception {
         log.info("Creating DASH manifest for video {}", videoId);
-        Path tempInputPath = null;
+        TranscodeInput input = null;
         Path tempOutputDir = null;
 
         try {
-            // Download original video
-            log.info("Downloading original video from MinIO: {}", originalObjectKey);
-            tempInputPath = Files.createTempFile("input-", ".mp4");
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(originalObjectKey)
-                    .build();
-
-            try (InputStream inputStream = minioClient.getObject(getArgs);
-                 FileOutputStream outputStream = new FileOutputStream(tempInputPath.toFile())) {
-                inputStream.transferTo(outputStream);
-            }
-            log.info("Downloaded video to temp file: {}", tempInputPath);
+            // Read the original straight from MinIO where possible instead of staging a full copy
+            input = inputResolver.open(originalObjectKey);
 
             // Create temp directory for DASH output
             tempOutputDir = Files.createTempDirectory("dash-output-");
             log.info("Created temp output directory: {}", tempOutputDir);
 
-            // Run FFmpeg to create DASH manifest and segments
-            createDashWithFFmpeg(tempInputPath, tempOutputDir);
-
-            // Upload DASH files to MinIO
-            uploadDashFiles(videoId, tempOutputDir);
+            // Run FFmpeg to create DASH manifest and segments and upload them to MinIO
+            encodeAndUpload(videoId, DashObjectKeys.dashPrefix(videoId), input, tempOutputDir, this::createDashWithFFmpeg);
 
             // Create database records for DASH qualities
             createDashQualityRecords(videoId, tempOutputDir);
@@ -117,8 +154,8 @@ public class VideoTranscodingService {
 
         } finally {
             // Cleanup temp files
-            if (tempInputPath != null && Files.exists(tempInputPath)) {
-                Files.delete(tempInputPath);
+            if (input != null) {
+                input.close();
             }
             if (tempOutputDir != null && Files.exists(tempOutputDir)) {
                 // Log contents before deletion to help debug file locks
@@ -143,226 +180,134 @@ public class VideoTranscodingService {
         }
     }
 
-    private void createDashWithFFmpeg(Path inputFile, Path outputDir) throws Exception {
+    private void createDashWithFFmpeg(TranscodeInput input, Path outputDir) throws Exception {
         log.info("Running FFmpeg to create DASH manifest");
 
-        // FFmpeg command for multi-bitrate DASH
-        // This creates multiple representations in one command
-        List<String> command = Arrays.asList(
+        List<VideoQuality> ladder = VideoQuality.ladder();
+
+        // Decode once and split the decoded video into one scaled branch per rendition,
+        // so the source is read, decoded and its audio encoded a single time for the whole ladder
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(ladder.size());
+        for (int i = 0; i < ladder.size(); i++) {
+            filter.append("[v").append(i).append(']');
+        }
+        for (int i = 0; i < ladder.size(); i++) {
+            filter.append(";[v").append(i).append("]scale=")
+                    .append(ladder.get(i).scale.replace('x', ':'))
+                    .append("[v").append(i).append("out]");
+        }
+
+        List<String> command = new ArrayList<>(Arrays.asList(
             "ffmpeg",
-            "-i", inputFile.toString(),
-            // Video representations
-            "-map", "0:v",
-            "-c:v", "libx264",
-            "-b:v:0", "5000k", "-s:v:0", "1920x1080", // 1080p
-            "-b:v:1", "3000k", "-s:v:1", "1280x720",  // 720p
-            "-b:v:2", "1500k", "-s:v:2", "854x480",   // 480p
-            "-b:v:3", "800k",  "-s:v:3", "640x360",   // 360p
-            // Audio representation
+            "-i", input.ffmpegInput(),
+            "-filter_complex", filter.toString()
+        ));
+        // Video representations
+        for (int i = 0; i < ladder.size(); i++) {
+            command.addAll(Arrays.asList("-map", "[v" + i + "out]"));
+        }
+        command.addAll(Arrays.asList("-c:v", "libx264"));
+        for (int i = 0; i < ladder.size(); i++) {
+            command.addAll(Arrays.asList("-b:v:" + i, ladder.get(i).bitrate));
+        }
+        command.addAll(DashCommands.keyframeAlignment());
+        // Single audio representation shared by every video representation
+        command.addAll(Arrays.asList(
             "-map", "0:a",
             "-c:a", "aac",
-            "-b:a", "128k",
-            // DASH options
-            "-f", "dash",
-            "-seg_duration", "10",
-            "-use_template", "1",
-            "-use_timeline", "1",
-            "-init_seg_name", "init-$RepresentationID$.m4s",
-            "-media_seg_name", "chunk-$RepresentationID$-$Number$.m4s",
-            "-adaptation_sets", "id=0,streams=v id=1,streams=a",
-            outputDir.resolve("manifest.mpd").toString()
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        // Consume process output to avoid buffer deadlock
-        Thread outputReader = new Thread(() -> {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    log.info("ffmpeg: {}", line);
-                }
-            } catch (Exception e) {
-                log.warn("Error reading ffmpeg output", e);
-            }
-        }, "ffmpeg-output-reader");
-        outputReader.setDaemon(true);
-        outputReader.start();
-
-        try {
-            // Wait for completion with timeout to prevent indefinite hang
-            boolean finished = process.waitFor(30, TimeUnit.MINUTES);
-            if (!finished) {
-                process.destroyForcibly();
-                throw new RuntimeException("FFmpeg timed out and was killed");
-            }
-
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                throw new RuntimeException("FFmpeg failed with exit code: " + exitCode);
-            }
+            "-b:a", "128k"
+        ));
+        command.addAll(DashCommands.dashOutput(outputDir, DashCommands.VIDEO_AND_AUDIO_SETS));
 
-            log.info("FFmpeg DASH creation completed successfully");
-        } finally {
-            // Ensure reader thread finishes and process streams are closed
-            try {
-                outputReader.join(5000);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-            try {
-                process.getInputStream().close();
-            } catch (Exception ignored) {}
-            try {
-                process.getErrorStream().close();
-            } catch (Exception ignored) {}
-            try {
-                process.getOutputStream().close();
-            } catch (Exception ignored) {}
-        }
+        ffmpegRunner.run(command, "ladder", 30, input.onStart());
     }
 
-    private void createDashWithFFmpegForQuality(Path inputFile, Path outputDir, String quality) throws Exception {
+    private void createDashWithFFmpegForQuality(TranscodeInput input, Path outputDir, String quality) throws Exception {
         log.info("Running FFmpeg to create DASH for quality {}", quality);
 
         VideoQuality videoQuality = VideoQuality.valueOf("Q_" + quality.toUpperCase());
 
         // FFmpeg command for single bitrate DASH
-        List<String> command = Arrays.asList(
+        List<String> command = new ArrayList<>(Arrays.asList(
             "ffmpeg",
-            "-i", inputFile.toString(),
+            "-i", input.ffmpegInput(),
             // Video representation
             "-map", "0:v",
             "-c:v", "libx264",
-            "-b:v", videoQuality.bitrate, "-s:v", videoQuality.scale,
-            // Audio representation
+            "-b:v", videoQuality.bitrate, "-s:v", videoQuality.scale
+        ));
+        command.addAll(DashCommands.keyframeAlignment());
+        // Audio representation; every rendition carries it, so any completed one can supply the master's
+        command.addAll(Arrays.asList(
             "-map", "0:a",
             "-c:a", "aac",
-            "-b:a", "128k",
-            // DASH options
-            "-f", "dash",
-            "-seg_duration", "10",
-            "-use_template", "1",
-            "-use_timeline", "1",
-            "-init_seg_name", "init-$RepresentationID$.m4s",
-            "-media_seg_name", "chunk-$RepresentationID$-$Number$.m4s",
-            "-adaptation_sets", "id=0,streams=v id=1,streams=a",
-            outputDir.resolve("manifest.mpd").toString()
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        Thread outputReader = new Thread(() -> {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    log.info("ffmpeg[{}]: {}", quality, line);
-                }
-            } catch (Exception e) {
-                log.warn("Error reading ffmpeg output for quality {}", quality, e);
-            }
-        }, "ffmpeg-output-reader-" + quality);
-        outputReader.setDaemon(true);
-        outputReader.start();
-
-        try {
-            boolean finished = process.waitFor(20, TimeUnit.MINUTES);
-            if (!finished) {
-                process.destroyForcibly();
-                throw new RuntimeException("FFmpeg timed out for quality " + quality + " and was killed");
-            }
+            "-b:a", "128k"
+        ));
+        command.addAll(DashCommands.dashOutput(outputDir, DashCommands.VIDEO_AND_AUDIO_SETS));
 
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                throw new RuntimeException("FFmpeg failed for quality " + quality + " with exit code: " + exitCode);
-            }
+        ffmpegRunner.run(command, quality, 20, input.onStart());
+    }
 
-            log.info("FFmpeg DASH creation for quality {} completed successfully", quality);
-        } finally {
-            try {
-                outputReader.join(5000);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-            try {
-                process.getInputStream().close();
-            } catch (Exception ignored) {}
-            try {
-                process.getErrorStream().close();
-            } catch (Exception ignored) {}
-            try {
-                process.getOutputStream().close();
-            } catch (Exception ignored) {}
+    /**
+     * Runs the encode and gets its output into MinIO, either segment by segment while ffmpeg
+     * is still writing (viewers can start before the encode ends) or in one pass afterwards.
+     */
+    private void encodeAndUpload(UUID videoId, String basePath, TranscodeInput input, Path outputDir,
+                                 FFmpegStep ffmpeg) throws Exception {
+        if (!transcodingProperties.isIncrementalPublish()) {
+            ffmpeg.run(input, outputDir);
+            uploadDashFiles(videoId, basePath, outputDir);
+            return;
+        }
+        log.info("Publishing DASH files for video {} under {} while encoding", videoId, basePath);
+        try (IncrementalDashPublisher.Publication publication = incrementalPublisher.start(basePath, outputDir)) {
+            ffmpeg.run(input, outputDir);
+            publication.finish();
         }
     }
 
-    private void uploadDashFiles(UUID videoId, Path outputDir) throws Exception {
-        log.info("Uploading DASH files to MinIO for video {}", videoId);
+    private interface FFmpegStep {
+        void run(TranscodeInput input, Path outputDir) throws Exception;
+    }
 
-        String basePath = "videos/" + videoId + "/dash/";
-        Files.walk(outputDir)
-            .filter(Files::isRegularFile)
-            .forEach(filePath -> {
-                String fileName = filePath.getFileName().toString();
-                String objectKey = basePath + fileName;
-                try {
-                    long size = Files.size(filePath);
-                    try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
-                        PutObjectArgs putArgs = PutObjectArgs.builder()
-                                .bucket(minioProperties.getBucket())
-                                .object(objectKey)
-                                .stream(fis, size, -1)
-                                .contentType(getContentType(fileName))
-                                .build();
-
-                        minioClient.putObject(putArgs);
-                        log.info("Uploaded DASH file: {}", objectKey);
-                    }
-                } catch (Exception e) {
-                    log.error("Failed to upload DASH file: {}", filePath, e);
-                }
-            });
+    private void uploadDashFiles(UUID videoId, String basePath, Path outputDir) throws Exception {
+        log.info("Uploading DASH files to MinIO for video {} under {}", videoId, basePath);
+        dashOutputUploader.upload(basePath, outputDir);
     }
 
-    private String getContentType(String fileName) {
-        if (fileName.endsWith(".mpd")) {
-            return "application/dash+xml";
-        } else if (fileName.endsWith(".m4s")) {
-            return "video/iso.segment";
+    /**
+     * Register the renditions a video is expected to get, so the manifest assembler knows
+     * when all of them are done.
+     */
+    public void registerPendingQualities(UUID videoId, List<String> qualities) {
+        for (String qualityName : qualities) {
+            VideoQuality quality = VideoQuality.valueOf("Q_" + qualityName.toUpperCase());
+            TblVideoQuality videoQuality = qualityRepository.findFirstByVideoIdAndQuality(videoId, quality.name)
+                    .orElseGet(TblVideoQuality::new);
+            videoQuality.setVideoId(videoId);
+            videoQuality.setQuality(quality.name);
+            videoQuality.setResolution(quality.resolution);
+            videoQuality.setBitrate(quality.bitrate);
+            videoQuality.setObjectKey(DashObjectKeys.renditionManifestKey(videoId, quality.name));
+            videoQuality.setSizeBytes(0L);
+            videoQuality.setContentType("application/dash+xml");
+            videoQuality.setStatus("PENDING");
+
+            qualityPersistenceService.saveQuality(videoQuality);
         }
-        return "application/octet-stream";
     }
 
     @Transactional
     protected void createDashQualityRecords(UUID videoId, Path outputDir) throws Exception {
         log.info("Creating DASH quality records for video {}", videoId);
 
-        String manifestKey = "videos/" + videoId + "/dash/manifest.mpd";
+        String manifestKey = DashObjectKeys.masterManifestKey(videoId);
+        long outputBytes = directorySize(outputDir);
 
         // Create records for each quality representation
-        List<VideoQuality> qualities = Arrays.asList(
-            VideoQuality.Q_1080P,
-            VideoQuality.Q_720P,
-            VideoQuality.Q_480P,
-            VideoQuality.Q_360P
-        );
-
-        for (VideoQuality quality : qualities) {
-            TblVideoQuality videoQuality = new TblVideoQuality();
-            videoQuality.setVideoId(videoId);
-            videoQuality.setQuality(quality.name);
-            videoQuality.setResolution(quality.resolution);
-            videoQuality.setBitrate(quality.bitrate);
-            videoQuality.setObjectKey(manifestKey); // All qualities point to the same manifest
-            videoQuality.setSizeBytes(0L); // Size not applicable for manifest
-            videoQuality.setContentType("application/dash+xml");
-            videoQuality.setStatus("COMPLETED");
-
-            qualityPersistenceService.saveQuality(videoQuality);
+        for (VideoQuality quality : VideoQuality.ladder()) {
+            // All qualities point to the same manifest, size is the whole ladder output
+            saveCompletedQuality(videoId, quality, manifestKey, outputBytes);
             log.info("Created DASH quality record: {} for video {}", quality.name, videoId);
         }
     }
@@ -371,63 +316,76 @@ public class VideoTranscodingService {
     protected void createDashQualityRecord(UUID videoId, Path outputDir, String qualityName) throws Exception {
         log.info("Creating DASH quality record for video {} quality {}", videoId, qualityName);
 
-        String manifestKey = "videos/" + videoId + "/dash/manifest.mpd";
+        VideoQuality quality = VideoQuality.valueOf("Q_" + qualityName.toUpperCase());
+
+        String manifestKey = DashObjectKeys.renditionManifestKey(videoId, quality.name);
+        saveCompletedQuality(videoId, quality, manifestKey, directorySize(outputDir));
+        log.info("Created DASH quality record: {} for video {}", quality.name, videoId);
+    }
 
+    /**
+     * Mark a rendition produced outside the regular per-quality path (e.g. stitched chunks) as COMPLETED.
+     */
+    public void markQualityCompleted(UUID videoId, String qualityName, String manifestKey, long sizeBytes) {
         VideoQuality quality = VideoQuality.valueOf("Q_" + qualityName.toUpperCase());
+        saveCompletedQuality(videoId, quality, manifestKey, sizeBytes);
+    }
 
-        TblVideoQuality videoQuality = new TblVideoQuality();
+    private void saveCompletedQuality(UUID videoId, VideoQuality quality, String manifestKey, long sizeBytes) {
+        // Reuse the PENDING record created at upload time if there is one
+        TblVideoQuality videoQuality = qualityRepository.findFirstByVideoIdAndQuality(videoId, quality.name)
+                .orElseGet(TblVideoQuality::new);
         videoQuality.setVideoId(videoId);
         videoQuality.setQuality(quality.name);
         videoQuality.setResolution(quality.resolution);
         videoQuality.setBitrate(quality.bitrate);
-        videoQuality.setObjectKey(manifestKey); // All qualities point to the same manifest
-        videoQuality.setSizeBytes(0L); // Size not applicable for manifest
+        videoQuality.setObjectKey(manifestKey);
+        videoQuality.setSizeBytes(sizeBytes);
         videoQuality.setContentType("application/dash+xml");
         videoQuality.setStatus("COMPLETED");
 
         qualityPersistenceService.saveQuality(videoQuality);
-        log.info("Created DASH quality record: {} for video {}", quality.name, videoId);
+        eventPublisher.publishEvent(new RenditionCompletedEvent(videoId, quality.name, manifestKey));
+    }
+
+    private long directorySize(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(path -> path.toFile().length())
+                    .sum();
+        }
     }
 
     private void createDashForQuality(UUID videoId, String originalObjectKey, String contentType, String quality) throws Exception {
         log.info("Creating DASH for video {} quality {}", videoId, quality);
-        Path tempInputPath = null;
+        TranscodeInput input = null;
         Path tempOutputDir = null;
 
         try {
-            // Download original video
-            log.info("Downloading original video from MinIO: {}", originalObjectKey);
-            tempInputPath = Files.createTempFile("input-", ".mp4");
-            GetObjectArgs getArgs = GetObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(originalObjectKey)
-                    .build();
-
-            try (InputStream inputStream = minioClient.getObject(getArgs);
-                 FileOutputStream outputStream = new FileOutputStream(tempInputPath.toFile())) {
-                inputStream.transferTo(outputStream);
-            }
-            log.info("Downloaded video to temp file: {}", tempInputPath);
+            // Read the original straight from MinIO where possible instead of staging a full copy
+            input = inputResolver.open(originalObjectKey);
 
             // Create temp directory for DASH output
             tempOutputDir = Files.createTempDirectory("dash-quality-");
             log.info("Created temp output directory: {}", tempOutputDir);
 
-            // Run FFmpeg to create DASH for this quality
-            createDashWithFFmpegForQuality(tempInputPath, tempOutputDir, quality);
-
-            // Upload DASH files to MinIO
-            uploadDashFiles(videoId, tempOutputDir);
+            // Run FFmpeg to create DASH for this quality, uploading under this rendition's own prefix
+            // so parallel jobs never overwrite each other
+            encodeAndUpload(videoId, DashObjectKeys.renditionPrefix(videoId, quality), input, tempOutputDir,
+                    (source, outputDir) -> createDashWithFFmpegForQuality(source, outputDir, quality));
 
             // Create database record for this quality
             createDashQualityRecord(videoId, tempOutputDir, quality);
 
+            // Publish the multi-bitrate manifest once this was the last rendition to finish
+            manifestAssembler.assembleIfComplete(videoId);
+
             log.info("Successfully created DASH for video {} quality {}", videoId, quality);
 
         } finally {
             // Cleanup temp files
-            if (tempInputPath != null && Files.exists(tempInputPath)) {
-                Files.delete(tempInputPath);
+            if (input != null) {
+                input.close();
             }
             if (tempOutputDir != null && Files.exists(tempOutputDir)) {
                 // Log contents before deletion to help debug file locks
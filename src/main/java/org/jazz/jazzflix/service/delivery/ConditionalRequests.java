@@ -0,0 +1,84 @@
+package org.jazz.jazzflix.service.delivery;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Evaluation of If-None-Match, If-Modified-Since and If-Range (RFC 9110 section 13) for the delivery endpoints.
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Whether the client's copy with the given validators is still current, i.e. the request is
+     * answered with 304. If-Modified-Since is only looked at without If-None-Match.
+     */
+    static boolean notModified(HttpServletRequest request, String etag, long lastModifiedMillis) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, etag);
+        }
+        if (lastModifiedMillis <= 0) {
+            return false;
+        }
+        long since;
+        try {
+            since = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have whole seconds
+        return since >= 0 && lastModifiedMillis / 1000 <= since / 1000;
+    }
+
+    /**
+     * Whether a Range request is served as one: without If-Range, or when If-Range names the
+     * object's current ETag (strong comparison) or its Last-Modified date exactly.
+     */
+    static boolean ifRangeMatches(String ifRange, String etag, long lastModifiedMillis) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Strong comparison, a weak validator never matches
+            return ifRange.equals(etag);
+        }
+        if (lastModifiedMillis <= 0) {
+            return false;
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toInstant().equals(Instant.ofEpochMilli(lastModifiedMillis).truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Weak comparison against a list of entity tags, as If-None-Match uses.
+     */
+    static boolean matchesAny(String header, String etag) {
+        if ("*".equals(header.trim())) {
+            return true;
+        }
+        String opaque = withoutWeakPrefix(etag);
+        for (String candidate : header.split(",")) {
+            if (withoutWeakPrefix(candidate.trim()).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
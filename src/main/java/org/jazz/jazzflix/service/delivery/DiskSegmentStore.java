@@ -0,0 +1,444 @@
+package org.jazz.jazzflix.service.delivery;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.jazz.jazzflix.service.transcoding.RenditionCompletedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Second cache tier for DASH init and media segments on local disk, below the
+ * heap {@link SegmentCache}.
+ *
+ * Objects are appended to fixed-size memory-mapped volume files ({@code volume-N.dat}). Each entry
+ * is {@code [magic][key][etag][lastModified][length][data]}; the magic is written last, so an entry
+ * torn by a crash is simply the end of its volume. The in-memory index is rebuilt by scanning the
+ * volumes in order on startup, so the tier survives restarts and redeploys. A length of -1 is a
+ * tombstone for a key whose object was replaced.
+ *
+ * Hits are sent with Tomcat's sendfile when the connector supports it, and with
+ * {@link FileChannel#transferTo} otherwise. When the volumes exceed the budget, the oldest volume is
+ * reclaimed: segments read since they were written are copied forward into the active volume,
+ * the rest are dropped, and the file is deleted after a grace period for in-flight responses.
+ */
+@Slf4j
+@Service
+public class DiskSegmentStore {
+
+    private static final int MAGIC = 0x4a5a5347;
+    private static final int TOMBSTONE = -1;
+    private static final String VOLUME_PREFIX = "volume-";
+    private static final String VOLUME_SUFFIX = ".dat";
+    private static final long DELETE_GRACE_SECONDS = 60;
+
+    private final DeliveryProperties.Disk settings;
+    private final Path directory;
+    private final int volumeSize;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    // Volume id -> file, oldest first
+    private final ConcurrentSkipListMap<Integer, Path> volumes = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-disk-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile boolean enabled;
+    // Guarded by this
+    private int activeId;
+    private MappedByteBuffer active;
+
+    public record DiskCacheStats(boolean enabled,
+                                 long budgetBytes,
+                                 long usedBytes,
+                                 int volumes,
+                                 long entries,
+                                 long hits,
+                                 long misses,
+                                 double hitRatio) {
+    }
+
+    private static final class Location {
+        private final int volumeId;
+        private final long dataOffset;
+        private final int length;
+        private final String etag;
+        private final long lastModifiedMillis;
+        private volatile boolean accessed;
+
+        private Location(int volumeId, long dataOffset, int length, String etag, long lastModifiedMillis) {
+            this.volumeId = volumeId;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.etag = etag;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+    }
+
+    /**
+     * A disk hit, written to the response by {@link #transfer}.
+     */
+    public static final class Entry {
+        private final Path file;
+        private final Location location;
+
+        private Entry(Path file, Location location) {
+            this.file = file;
+            this.location = location;
+        }
+
+        public long size() {
+            return location.length;
+        }
+
+        public String etag() {
+            return location.etag;
+        }
+
+        public long lastModifiedMillis() {
+            return location.lastModifiedMillis;
+        }
+    }
+
+    public DiskSegmentStore(DeliveryProperties deliveryProperties) {
+        this.settings = deliveryProperties.getDisk();
+        this.directory = Paths.get(settings.getPath());
+        this.volumeSize = (int) Math.min(Integer.MAX_VALUE, settings.getVolumeSizeBytes());
+        this.enabled = settings.isEnabled();
+        if (enabled) {
+            try {
+                open();
+            } catch (IOException e) {
+                log.warn("Disk segment cache disabled, could not open {}: {}", directory, e.getMessage());
+                enabled = false;
+            }
+        }
+    }
+
+    /**
+     * Only init and media segments are stored, never manifests.
+     */
+    public boolean admits(String objectKey, long size) {
+        return enabled && objectKey.contains("/dash/") && objectKey.endsWith(".m4s") && size < volumeSize / 4;
+    }
+
+    public Entry get(String objectKey) {
+        if (!enabled) {
+            return null;
+        }
+        Location location = index.get(objectKey);
+        if (location == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Path file = volumes.get(location.volumeId);
+        if (file == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        location.accessed = true;
+        hits.incrementAndGet();
+        return new Entry(file, location);
+    }
+
+    public boolean contains(String objectKey) {
+        return enabled && index.containsKey(objectKey);
+    }
+
+    /**
+     * Stores the object in the background, the caller already has the bytes in hand.
+     */
+    public void putAsync(String objectKey, CachedObject object) {
+        if (!admits(objectKey, object.data().length) || index.containsKey(objectKey)) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                if (!index.containsKey(objectKey)) {
+                    append(objectKey, object.etag(), object.lastModifiedMillis(), object.data());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to write {} to the disk segment cache: {}", objectKey, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes [offset, offset + length) of the entry to the response.
+     */
+    public void transfer(Entry entry, long offset, long length,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long position = entry.location.dataOffset + offset;
+        if (sendsFile(request)) {
+            // The connector sends the file region from the kernel once the handler returns
+            request.setAttribute("org.apache.tomcat.sendfile.filename", entry.file.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", position);
+            request.setAttribute("org.apache.tomcat.sendfile.end", position + length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long end = position + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #transfer} hands the file region to the connector instead of copying it.
+     */
+    public boolean sendsFile(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"));
+    }
+
+    /**
+     * The entry's bytes from offset on, for callers that copy them themselves.
+     */
+    public InputStream open(Entry entry, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ);
+        channel.position(entry.location.dataOffset + offset);
+        return Channels.newInputStream(channel);
+    }
+
+    @EventListener
+    public void onRenditionCompleted(RenditionCompletedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        // A re-transcoded rendition rewrites segments under the same keys
+        String prefix = event.manifestKey().substring(0, event.manifestKey().lastIndexOf('/') + 1);
+        writer.execute(() -> {
+            List<String> stale = new ArrayList<>();
+            for (String key : index.keySet()) {
+                if (key.startsWith(prefix) && key.indexOf('/', prefix.length()) < 0) {
+                    stale.add(key);
+                }
+            }
+            for (String key : stale) {
+                try {
+                    append(key, "", 0, null);
+                } catch (IOException e) {
+                    log.warn("Failed to drop {} from the disk segment cache: {}", key, e.getMessage());
+                }
+            }
+        });
+    }
+
+    public DiskCacheStats stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        return new DiskCacheStats(enabled,
+                settings.getBudgetBytes(),
+                (long) volumes.size() * volumeSize,
+                volumes.size(),
+                index.size(),
+                hitCount,
+                missCount,
+                requests == 0 ? 0 : (double) hitCount / requests);
+    }
+
+    private synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(VOLUME_PREFIX) && name.endsWith(VOLUME_SUFFIX)) {
+                    int id = Integer.parseInt(name.substring(VOLUME_PREFIX.length(), name.length() - VOLUME_SUFFIX.length()));
+                    volumes.put(id, file);
+                }
+            });
+        }
+
+        int end = 0;
+        for (Map.Entry<Integer, Path> volume : volumes.entrySet()) {
+            end = scan(volume.getKey(), volume.getValue());
+        }
+        if (volumes.isEmpty()) {
+            activeId = 0;
+            active = map(activeId);
+        } else {
+            activeId = volumes.lastKey();
+            active = map(activeId);
+            active.position(end);
+        }
+        enforceBudget();
+        log.info("Disk segment cache at {}: {} volumes, {} entries", directory, volumes.size(), index.size());
+    }
+
+    /**
+     * Adds the volume's entries to the index and returns the position after its last complete entry.
+     */
+    private int scan(int volumeId, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (position + 8 <= size) {
+                header.clear();
+                channel.read(header, position);
+                header.flip();
+                if (header.getInt() != MAGIC) {
+                    break;
+                }
+                int keyLength = header.getInt();
+                ByteBuffer rest = ByteBuffer.allocate(keyLength + 4);
+                channel.read(rest, position + 8);
+                rest.flip();
+                byte[] key = new byte[keyLength];
+                rest.get(key);
+                int etagLength = rest.getInt();
+                ByteBuffer meta = ByteBuffer.allocate(etagLength + 12);
+                channel.read(meta, position + 12 + keyLength);
+                meta.flip();
+                byte[] etag = new byte[etagLength];
+                meta.get(etag);
+                long lastModified = meta.getLong();
+                int length = meta.getInt();
+                long dataOffset = position + 24 + keyLength + etagLength;
+
+                String objectKey = new String(key, StandardCharsets.UTF_8);
+                if (length == TOMBSTONE) {
+                    index.remove(objectKey);
+                    position = dataOffset;
+                } else {
+                    index.put(objectKey, new Location(volumeId, dataOffset, length,
+                            new String(etag, StandardCharsets.UTF_8), lastModified));
+                    position = dataOffset + length;
+                }
+            }
+            return (int) position;
+        }
+    }
+
+    private synchronized void append(String objectKey, String etag, long lastModifiedMillis, byte[] data) throws IOException {
+        byte[] key = objectKey.getBytes(StandardCharsets.UTF_8);
+        byte[] etagBytes = etag.getBytes(StandardCharsets.UTF_8);
+        int length = data != null ? data.length : TOMBSTONE;
+        int entrySize = 24 + key.length + etagBytes.length + Math.max(0, length);
+        if (entrySize > active.remaining()) {
+            rollOver();
+        }
+
+        int start = active.position();
+        active.position(start + 4);
+        active.putInt(key.length).put(key);
+        active.putInt(etagBytes.length).put(etagBytes);
+        active.putLong(lastModifiedMillis);
+        active.putInt(length);
+        long dataOffset = active.position();
+        if (data != null) {
+            active.put(data);
+        }
+        // Written last: until the magic is in place the entry does not exist for a rebuild
+        active.putInt(start, MAGIC);
+
+        if (data != null) {
+            index.put(objectKey, new Location(activeId, dataOffset, length, etag, lastModifiedMillis));
+        } else {
+            index.remove(objectKey);
+        }
+    }
+
+    private void rollOver() throws IOException {
+        active.force();
+        activeId++;
+        active = map(activeId);
+        enforceBudget();
+    }
+
+    private void enforceBudget() throws IOException {
+        while ((long) volumes.size() * volumeSize > settings.getBudgetBytes() && volumes.size() > 1) {
+            reclaim(volumes.firstKey());
+        }
+    }
+
+    /**
+     * Drops the oldest volume. Segments that were read since they were written get a second chance
+     * in the active volume, using at most half of its free space.
+     */
+    private void reclaim(int volumeId) throws IOException {
+        Path file = volumes.remove(volumeId);
+        int kept = 0;
+        int dropped = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int copyBudget = active.remaining() / 2;
+            for (Map.Entry<String, Location> entry : new ArrayList<>(index.entrySet())) {
+                Location location = entry.getValue();
+                if (location.volumeId != volumeId) {
+                    continue;
+                }
+                if (location.accessed && location.length + 1024 < copyBudget) {
+                    ByteBuffer data = ByteBuffer.allocate(location.length);
+                    channel.read(data, location.dataOffset);
+                    append(entry.getKey(), location.etag, location.lastModifiedMillis, data.array());
+                    copyBudget -= location.length + 1024;
+                    kept++;
+                } else {
+                    index.remove(entry.getKey(), location);
+                    dropped++;
+                }
+            }
+        }
+        writer.schedule(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete disk cache volume {}: {}", file, e.getMessage());
+            }
+        }, DELETE_GRACE_SECONDS, TimeUnit.SECONDS);
+        log.info("Reclaimed disk cache volume {}: {} segments kept, {} dropped", volumeId, kept, dropped);
+    }
+
+    private MappedByteBuffer map(int volumeId) throws IOException {
+        Path file = directory.resolve(VOLUME_PREFIX + volumeId + VOLUME_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, volumeSize);
+            volumes.put(volumeId, file);
+            return buffer;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        writer.shutdown();
+        if (active != null) {
+            active.force();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.dto.video.TimelineSegment;
+import org.jazz.jazzflix.entity.video.TblVideoRepresentation;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.repository.video.TblVideoRepresentationRepository;
+import org.jazz.jazzflix.service.transcoding.ManifestChangedEvent;
+import org.jazz.jazzflix.service.transcoding.MpdDocuments;
+import org.jazz.jazzflix.service.transcoding.RepresentationCatalog;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves master manifests rendered from TBL_VIDEO_REPRESENTATION instead of reading manifest.mpd
+ * from MinIO, so the ladder a player sees can change without rewriting any object.
+ *
+ * Players can narrow the ladder with {@code ?maxHeight=} and {@code ?maxBandwidth=} (or the
+ * X-Max-Height and X-Max-Bandwidth headers); the lowest video representation is always kept. A
+ * manifest is rendered once per video and selection and kept serialized, gzipped and with a strong
+ * ETag over its content, so a cached fetch is a lookup and a write. Players revalidate on every
+ * fetch (no-cache) and get a 304 while their copy is current.
+ */
+@Slf4j
+@Service
+public class ManifestRenderer {
+
+    private static final String MPD_NAMESPACE = "urn:mpeg:dash:schema:mpd:2011";
+    private static final String CONTENT_TYPE = "application/dash+xml";
+    private static final String MAX_HEIGHT_HEADER = "X-Max-Height";
+    private static final String MAX_BANDWIDTH_HEADER = "X-Max-Bandwidth";
+    private static final String VARY = HttpHeaders.ACCEPT_ENCODING + ", " + MAX_HEIGHT_HEADER + ", " + MAX_BANDWIDTH_HEADER;
+
+    public record RenderedManifest(byte[] body, byte[] gzipped, String etag) {
+    }
+
+    public record ManifestStats(boolean enabled, long videos, long variants, long renders, double hitRate) {
+    }
+
+    private final TblVideoRepresentationRepository representationRepository;
+    private final RepresentationCatalog representationCatalog;
+    private final DeliveryProperties.Manifest settings;
+    private final Cache<UUID, List<TblVideoRepresentation>> representations;
+    // Video id and selected representation ids -> rendered manifest
+    private final Cache<String, RenderedManifest> rendered;
+    private final AtomicLong renders = new AtomicLong();
+
+    public ManifestRenderer(TblVideoRepresentationRepository representationRepository,
+                            RepresentationCatalog representationCatalog,
+                            DeliveryProperties deliveryProperties) {
+        this.representationRepository = representationRepository;
+        this.representationCatalog = representationCatalog;
+        this.settings = deliveryProperties.getManifest();
+        this.representations = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(settings.getTtlSeconds()))
+                .build();
+        this.rendered = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(settings.getTtlSeconds()))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Writes the video's master manifest, narrowed by the request's hints and gzipped if the
+     * client accepts it. Throws DataNotFoundException if the video has no complete manifest yet.
+     */
+    public void serve(UUID videoId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        RenderedManifest manifest = render(videoId,
+                hint(request, "maxHeight", MAX_HEIGHT_HEADER),
+                hint(request, "maxBandwidth", MAX_BANDWIDTH_HEADER));
+
+        boolean gzip = manifest.gzipped() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        byte[] body = gzip ? manifest.gzipped() : manifest.body();
+
+        // The gzipped bytes are a different representation and need a validator of their own
+        String etag = "\"" + manifest.etag() + (gzip ? "-gz" : "") + "\"";
+        response.setHeader(HttpHeaders.VARY, VARY);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.ETAG, etag);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ConditionalRequests.matchesAny(ifNoneMatch, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(CONTENT_TYPE);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException e) {
+            log.debug("Client disconnected while sending the manifest of video {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    /**
+     * The manifest with the video representations of at most maxHeight lines and maxBandwidth
+     * bits per second, 0 meaning no limit.
+     */
+    public RenderedManifest render(UUID videoId, long maxHeight, long maxBandwidth) {
+        List<TblVideoRepresentation> selected = select(representations(videoId), maxHeight, maxBandwidth);
+        String key = videoId + "|" + selected.stream()
+                .map(TblVideoRepresentation::getRepresentationId)
+                .collect(Collectors.joining(","));
+        return rendered.get(key, k -> build(videoId, selected));
+    }
+
+    @EventListener
+    public void onManifestChanged(ManifestChangedEvent event) {
+        representations.invalidate(event.videoId());
+        String prefix = event.videoId() + "|";
+        rendered.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public ManifestStats stats() {
+        return new ManifestStats(settings.isEnabled(), representations.estimatedSize(), rendered.estimatedSize(),
+                renders.get(), rendered.stats().hitRate());
+    }
+
+    private List<TblVideoRepresentation> representations(UUID videoId) {
+        // An empty result is not cached, the loader returning null leaves the key absent
+        List<TblVideoRepresentation> rows = representations.get(videoId, id -> {
+            List<TblVideoRepresentation> found = representationRepository.findByVideoId(id);
+            return found.isEmpty() ? null : found;
+        });
+        // Indexing publishes ManifestChangedEvent, which invalidates this cache, so it must not run in the loader
+        return rows != null ? rows : backfill(videoId);
+    }
+
+    /**
+     * Indexes a video whose manifest was written before representations were recorded. The rows
+     * are cached by the next request.
+     */
+    private List<TblVideoRepresentation> backfill(UUID videoId) {
+        try {
+            return representationCatalog.indexFromStorage(videoId);
+        } catch (DataNotFoundException e) {
+            throw new DataNotFoundException("No DASH manifest for video " + videoId);
+        } catch (DataIntegrityViolationException e) {
+            // Another node indexed it at the same time
+            return representationRepository.findByVideoId(videoId);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to index the DASH manifest of video " + videoId, e);
+        }
+    }
+
+    private static List<TblVideoRepresentation> select(List<TblVideoRepresentation> all, long maxHeight, long maxBandwidth) {
+        Comparator<TblVideoRepresentation> byBandwidth = Comparator.comparingLong(TblVideoRepresentation::getBandwidth).reversed();
+        List<TblVideoRepresentation> video = all.stream()
+                .filter(r -> "video".equals(r.getContentType()))
+                .sorted(byBandwidth)
+                .toList();
+        if (video.isEmpty()) {
+            throw new DataNotFoundException("No video representations recorded");
+        }
+
+        List<TblVideoRepresentation> selected = new ArrayList<>(video.stream()
+                .filter(r -> maxHeight <= 0 || (r.getHeight() != null && r.getHeight() <= maxHeight))
+                .filter(r -> maxBandwidth <= 0 || r.getBandwidth() <= maxBandwidth)
+                .toList());
+        if (selected.isEmpty()) {
+            selected.add(video.get(video.size() - 1));
+        }
+        all.stream()
+                .filter(r -> "audio".equals(r.getContentType()))
+                .sorted(byBandwidth)
+                .forEach(selected::add);
+        return selected;
+    }
+
+    private RenderedManifest build(UUID videoId, List<TblVideoRepresentation> selected) {
+        try {
+            Document document = MpdDocuments.create();
+            Element mpd = document.createElementNS(MPD_NAMESPACE, "MPD");
+            document.appendChild(mpd);
+            mpd.setAttribute("profiles", "urn:mpeg:dash:profile:isoff-live:2011");
+            mpd.setAttribute("type", "static");
+
+            Element period = MpdDocuments.createElement(mpd, "Period");
+            period.setAttribute("id", "0");
+            period.setAttribute("start", "PT0.0S");
+            mpd.appendChild(period);
+
+            double durationSeconds = 0;
+            double maxSegmentSeconds = 0;
+            List<TblVideoRepresentation> video = new ArrayList<>();
+            Map<String, List<TblVideoRepresentation>> audioByLang = new LinkedHashMap<>();
+            for (TblVideoRepresentation representation : selected) {
+                if ("video".equals(representation.getContentType())) {
+                    video.add(representation);
+                } else {
+                    audioByLang.computeIfAbsent(representation.getLang() != null ? representation.getLang() : "",
+                            lang -> new ArrayList<>()).add(representation);
+                }
+            }
+
+            Element videoSet = adaptationSet(period, 0, "video");
+            videoSet.setAttribute("maxWidth", String.valueOf(video.stream().mapToInt(r -> r.getWidth() != null ? r.getWidth() : 0).max().orElse(0)));
+            videoSet.setAttribute("maxHeight", String.valueOf(video.stream().mapToInt(r -> r.getHeight() != null ? r.getHeight() : 0).max().orElse(0)));
+            for (TblVideoRepresentation representation : video) {
+                double[] timing = appendRepresentation(videoSet, representation);
+                durationSeconds = Math.max(durationSeconds, timing[0]);
+                maxSegmentSeconds = Math.max(maxSegmentSeconds, timing[1]);
+            }
+
+            int setId = 1;
+            for (Map.Entry<String, List<TblVideoRepresentation>> entry : audioByLang.entrySet()) {
+                Element audioSet = adaptationSet(period, setId++, "audio");
+                if (!entry.getKey().isEmpty()) {
+                    audioSet.setAttribute("lang", entry.getKey());
+                }
+                for (TblVideoRepresentation representation : entry.getValue()) {
+                    double[] timing = appendRepresentation(audioSet, representation);
+                    durationSeconds = Math.max(durationSeconds, timing[0]);
+                    maxSegmentSeconds = Math.max(maxSegmentSeconds, timing[1]);
+                }
+            }
+
+            mpd.setAttribute("mediaPresentationDuration", MpdDocuments.formatDuration(durationSeconds));
+            mpd.setAttribute("maxSegmentDuration", MpdDocuments.formatDuration(maxSegmentSeconds));
+            mpd.setAttribute("minBufferTime", MpdDocuments.formatDuration(maxSegmentSeconds));
+
+            byte[] body = MpdDocuments.serialize(document);
+            byte[] gzipped = body.length >= settings.getMinCompressBytes() ? gzip(body) : null;
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            renders.incrementAndGet();
+            return new RenderedManifest(body, gzipped, HexFormat.of().formatHex(Arrays.copyOf(digest, 16)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to render the DASH manifest of video " + videoId, e);
+        }
+    }
+
+    private static Element adaptationSet(Element period, int id, String contentType) {
+        Element adaptationSet = MpdDocuments.createElement(period, "AdaptationSet");
+        adaptationSet.setAttribute("id", String.valueOf(id));
+        adaptationSet.setAttribute("contentType", contentType);
+        adaptationSet.setAttribute("segmentAlignment", "true");
+        adaptationSet.setAttribute("startWithSAP", "1");
+        period.appendChild(adaptationSet);
+        return adaptationSet;
+    }
+
+    /**
+     * Appends the representation with its SegmentTemplate and returns its duration and longest
+     * segment in seconds.
+     */
+    private double[] appendRepresentation(Element adaptationSet, TblVideoRepresentation row) {
+        Element representation = MpdDocuments.createElement(adaptationSet, "Representation");
+        representation.setAttribute("id", row.getRepresentationId());
+        representation.setAttribute("mimeType", row.getMimeType());
+        if (row.getCodecs() != null) {
+            representation.setAttribute("codecs", row.getCodecs());
+        }
+        representation.setAttribute("bandwidth", String.valueOf(row.getBandwidth()));
+        if (row.getWidth() != null && row.getHeight() != null) {
+            representation.setAttribute("width", String.valueOf(row.getWidth()));
+            representation.setAttribute("height", String.valueOf(row.getHeight()));
+        }
+        if (row.getFrameRate() != null) {
+            representation.setAttribute("frameRate", row.getFrameRate());
+        }
+        if (row.getSampleRate() != null) {
+            representation.setAttribute("audioSamplingRate", String.valueOf(row.getSampleRate()));
+        }
+        adaptationSet.appendChild(representation);
+
+        if (row.getAudioChannels() != null) {
+            Element channels = MpdDocuments.createElement(representation, "AudioChannelConfiguration");
+            channels.setAttribute("schemeIdUri", "urn:mpeg:dash:23003:3:audio_channel_configuration:2011");
+            channels.setAttribute("value", String.valueOf(row.getAudioChannels()));
+            representation.appendChild(channels);
+        }
+
+        Element template = MpdDocuments.createElement(representation, "SegmentTemplate");
+        template.setAttribute("timescale", String.valueOf(row.getTimescale()));
+        template.setAttribute("initialization", row.getInitialization());
+        template.setAttribute("media", row.getMedia());
+        template.setAttribute("startNumber", String.valueOf(row.getStartNumber()));
+        representation.appendChild(template);
+
+        Element timeline = MpdDocuments.createElement(template, "SegmentTimeline");
+        template.appendChild(timeline);
+        long totalUnits = 0;
+        long longestUnits = 0;
+        for (TimelineSegment segment : representationCatalog.timeline(row)) {
+            Element s = MpdDocuments.createElement(timeline, "S");
+            if (segment.t() != null) {
+                s.setAttribute("t", String.valueOf(segment.t()));
+            }
+            s.setAttribute("d", String.valueOf(segment.d()));
+            if (segment.r() != null) {
+                s.setAttribute("r", String.valueOf(segment.r()));
+            }
+            timeline.appendChild(s);
+            totalUnits += segment.d() * (1 + (segment.r() != null ? segment.r() : 0));
+            longestUnits = Math.max(longestUnits, segment.d());
+        }
+        double timescale = Math.max(1, row.getTimescale());
+        return new double[]{totalUnits / timescale, longestUnits / timescale};
+    }
+
+    private static long hint(HttpServletRequest request, String parameter, String header) {
+        String value = request.getParameter(parameter);
+        if (value == null) {
+            value = request.getHeader(header);
+        }
+        return MpdDocuments.parseLong(value != null ? value.trim() : null, 0);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            return !refused;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,235 @@
+package org.jazz.jazzflix.service.delivery;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous counterpart of {@link ObjectStreamer} for DASH segments. The request thread only
+ * looks up the object and starts the response; the body is written by {@link ResponsePump} as the
+ * client drains it, and MinIO is reached through {@link MinioAsyncClient}, so waiting on a slow
+ * viewer or on MinIO does not hold a thread.
+ *
+ * Lookup order, headers, ranges and revalidation are those of ObjectStreamer. Disk hits still go
+ * through sendfile when the connector supports it, which needs no thread either. At most
+ * maxInFlight responses stream at once; beyond that requests get 503 with Retry-After.
+ */
+@Slf4j
+@Service
+public class NonBlockingStreamer {
+
+    public record AsyncStats(boolean enabled, int inFlight, int maxInFlight, long completed, long rejected, long failovers) {
+    }
+
+    private interface SourceFactory {
+        ResponsePump.Source open(long offset, long length) throws Exception;
+    }
+
+    private final ObjectStreamer objectStreamer;
+    private final MinioAsyncClient minioAsyncClient;
+    private final MinioProperties minioProperties;
+    private final SegmentCache segmentCache;
+    private final DiskSegmentStore diskStore;
+    private final RequestCoalescer coalescer;
+    private final DeliveryProperties.Async settings;
+    private final long headerTimeoutMillis;
+    private final BufferPool bufferPool;
+    private final Semaphore permits;
+    private final ExecutorService readers;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    public NonBlockingStreamer(ObjectStreamer objectStreamer,
+                               MinioAsyncClient minioAsyncClient,
+                               MinioProperties minioProperties,
+                               SegmentCache segmentCache,
+                               DiskSegmentStore diskStore,
+                               RequestCoalescer coalescer,
+                               DeliveryProperties deliveryProperties) {
+        this.objectStreamer = objectStreamer;
+        this.minioAsyncClient = minioAsyncClient;
+        this.minioProperties = minioProperties;
+        this.segmentCache = segmentCache;
+        this.diskStore = diskStore;
+        this.coalescer = coalescer;
+        this.settings = deliveryProperties.getAsync();
+        this.headerTimeoutMillis = deliveryProperties.getCoalescing().getHeaderTimeoutMillis();
+        this.bufferPool = new BufferPool(deliveryProperties.getBufferSizeBytes(), deliveryProperties.getBufferPoolSize());
+        this.permits = new Semaphore(Math.max(1, settings.getMaxInFlight()));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(Math.max(1, settings.getReaderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "stream-reader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts writing the object, or the requested range of it, and returns. Falls back to the
+     * blocking ObjectStreamer when disabled or when the request does not support async.
+     */
+    public void stream(String objectKey, String contentType,
+                       HttpServletRequest request, HttpServletResponse response) throws Exception {
+        if (!settings.isEnabled() || !request.isAsyncSupported()) {
+            objectStreamer.stream(objectKey, contentType, request, response);
+            return;
+        }
+
+        CachedObject cached = segmentCache.getIfPresent(objectKey);
+        DiskSegmentStore.Entry onDisk = cached == null ? diskStore.get(objectKey) : null;
+        if (onDisk != null && diskStore.sendsFile(request)) {
+            // The connector sends the file region itself once the handler returns
+            objectStreamer.write(objectKey, contentType, onDisk.size(), onDisk.etag(), onDisk.lastModifiedMillis(), request, response,
+                    (offset, length) -> diskStore.transfer(onDisk, offset, length, request, response));
+            return;
+        }
+        if (cached == null && onDisk == null && objectStreamer.answeredFromIndex(objectKey, request, response)) {
+            return;
+        }
+
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+        ResponsePump pump;
+        try {
+            pump = ResponsePump.start(request, response, objectKey, settings.getTimeoutMillis(),
+                    bufferPool.getBufferSize(), this::finished);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        if (cached != null) {
+            respond(pump, objectKey, contentType, cached.data().length, cached.etag(), cached.lastModifiedMillis(), request, response,
+                    (offset, length) -> new ResponsePump.BytesSource(cached.data(), offset));
+        } else if (onDisk != null) {
+            respond(pump, objectKey, contentType, onDisk.size(), onDisk.etag(), onDisk.lastModifiedMillis(), request, response,
+                    (offset, length) -> new ResponsePump.StreamSource(
+                            CompletableFuture.completedFuture(diskStore.open(onDisk, offset)), bufferPool, readers));
+        } else if (coalescer.applies(objectKey)) {
+            viaSharedFetch(pump, objectKey, contentType, request, response);
+        } else {
+            viaMinio(pump, objectKey, contentType, request, response);
+        }
+    }
+
+    private void finished() {
+        permits.release();
+        completed.incrementAndGet();
+    }
+
+    /**
+     * Sets status and headers, then hands the body to the pump, or ends the response if there is
+     * no body to send (HEAD, 304, 416).
+     */
+    private void respond(ResponsePump pump, String objectKey, String contentType, long size, String etag, long lastModifiedMillis,
+                         HttpServletRequest request, HttpServletResponse response, SourceFactory sources) {
+        boolean[] sending = {false};
+        try {
+            objectStreamer.write(objectKey, contentType, size, etag, lastModifiedMillis, request, response,
+                    (offset, length) -> {
+                        sending[0] = true;
+                        pump.send(sources.open(offset, length), length);
+                    });
+        } catch (Exception e) {
+            pump.fail(e);
+            return;
+        }
+        if (!sending[0]) {
+            pump.complete();
+        }
+    }
+
+    private void viaSharedFetch(ResponsePump pump, String objectKey, String contentType,
+                                HttpServletRequest request, HttpServletResponse response) {
+        RequestCoalescer.Flight flight = coalescer.share(objectKey);
+        flight.headers()
+                .orTimeout(headerTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, error) -> pump.dispatch(() -> {
+                    if (error == null) {
+                        respond(pump, objectKey, contentType, flight.size(), flight.etag(), flight.lastModifiedMillis(), request, response,
+                                (offset, length) -> new ResponsePump.FlightSource(flight, offset));
+                    } else if (ResponsePump.unwrap(error) instanceof DataNotFoundException) {
+                        pump.fail(error);
+                    } else {
+                        // Timed out, failed upstream or too large to share: fetch on our own
+                        failovers.incrementAndGet();
+                        viaMinio(pump, objectKey, contentType, request, response);
+                    }
+                }));
+    }
+
+    private void viaMinio(ResponsePump pump, String objectKey, String contentType,
+                          HttpServletRequest request, HttpServletResponse response) {
+        try {
+            minioAsyncClient.statObject(StatObjectArgs.builder()
+                            .bucket(minioProperties.getBucket())
+                            .object(objectKey)
+                            .build())
+                    .whenComplete((stat, error) -> pump.dispatch(() -> {
+                        if (error != null) {
+                            pump.fail(notFound(error, objectKey));
+                            return;
+                        }
+                        long lastModified = objectStreamer.remember(objectKey, stat);
+                        respond(pump, objectKey, contentType, stat.size(), stat.etag(), lastModified, request, response,
+                                (offset, length) -> {
+                                    GetObjectArgs.Builder getArgs = GetObjectArgs.builder()
+                                            .bucket(minioProperties.getBucket())
+                                            .object(objectKey);
+                                    if (length != stat.size()) {
+                                        getArgs.offset(offset).length(length);
+                                    }
+                                    return new ResponsePump.StreamSource(minioAsyncClient.getObject(getArgs.build()), bufferPool, readers);
+                                });
+                    }));
+        } catch (Exception e) {
+            pump.fail(e);
+        }
+    }
+
+    private static Throwable notFound(Throwable error, String objectKey) {
+        Throwable cause = ResponsePump.unwrap(error);
+        if (cause instanceof ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                return new DataNotFoundException("Object not found: " + objectKey);
+            }
+        }
+        return cause;
+    }
+
+    public AsyncStats stats() {
+        int maxInFlight = Math.max(1, settings.getMaxInFlight());
+        return new AsyncStats(settings.isEnabled(), maxInFlight - permits.availablePermits(), maxInFlight,
+                completed.get(), rejected.get(), failovers.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.shutdownNow();
+    }
+}
@@ -0,0 +1,330 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.jazz.jazzflix.service.transcoding.DashObjectKeys;
+import org.jazz.jazzflix.service.transcoding.RenditionCompletedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+
+/**
+ * Streams MinIO objects to HTTP responses through a pooled fixed-size buffer, so the heap used per
+ * request does not depend on the object size.
+ *
+ * A single {@code Range: bytes=...} is answered with 206 and forwarded to MinIO as a ranged GET.
+ * {@code If-Range} is honored against the object's ETag and Last-Modified. Multi-range and malformed
+ * headers are ignored and the whole object is sent, as RFC 9110 allows. Small DASH objects are
+ * served from {@link SegmentCache}, then {@link DiskSegmentStore}, and concurrent misses on them
+ * share one MinIO GET through {@link RequestCoalescer}.
+ *
+ * Segments and init files are sent with a max-age but not as immutable, since a re-transcoded
+ * rendition rewrites them under the same keys; manifests go out as no-cache and other objects with a
+ * short max-age. Revalidations are answered with 304 from the validators of the cached copy or
+ * from an index of validators seen on earlier requests, without asking MinIO.
+ */
+@Slf4j
+@Service
+public class ObjectStreamer {
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final SegmentCache segmentCache;
+    private final DiskSegmentStore diskStore;
+    private final RequestCoalescer coalescer;
+    private final BufferPool bufferPool;
+    private final DeliveryProperties.Http http;
+    // Object key -> validators from its last stat, for objects outside the segment caches
+    private final Cache<String, Validators> validators;
+
+    private record Validators(String etag, long lastModifiedMillis) {
+    }
+
+    public ObjectStreamer(MinioClient minioClient,
+                          MinioProperties minioProperties,
+                          SegmentCache segmentCache,
+                          DiskSegmentStore diskStore,
+                          RequestCoalescer coalescer,
+                          DeliveryProperties deliveryProperties) {
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.segmentCache = segmentCache;
+        this.diskStore = diskStore;
+        this.coalescer = coalescer;
+        this.bufferPool = new BufferPool(deliveryProperties.getBufferSizeBytes(), deliveryProperties.getBufferPoolSize());
+        this.http = deliveryProperties.getHttp();
+        this.validators = Caffeine.newBuilder()
+                .maximumSize(http.getValidatorIndexSize())
+                .expireAfterWrite(Duration.ofSeconds(http.getValidatorTtlSeconds()))
+                .build();
+    }
+
+    /**
+     * Writes the object, or the requested range of it, to the response. Throws
+     * DataNotFoundException if the object does not exist; nothing is written in that case.
+     */
+    public void stream(String objectKey, String contentType,
+                       HttpServletRequest request, HttpServletResponse response) throws Exception {
+        CachedObject cached = segmentCache.getIfPresent(objectKey);
+        if (cached != null) {
+            write(objectKey, contentType, cached.data().length, cached.etag(), cached.lastModifiedMillis(), request, response,
+                    (offset, length) -> writeBytes(cached, offset, length, response, objectKey));
+            return;
+        }
+
+        DiskSegmentStore.Entry onDisk = diskStore.get(objectKey);
+        if (onDisk != null) {
+            write(objectKey, contentType, onDisk.size(), onDisk.etag(), onDisk.lastModifiedMillis(), request, response,
+                    (offset, length) -> diskStore.transfer(onDisk, offset, length, request, response));
+            return;
+        }
+
+        if (answeredFromIndex(objectKey, request, response)) {
+            return;
+        }
+
+        if (coalescer.applies(objectKey)) {
+            RequestCoalescer.Flight flight = coalescer.join(objectKey);
+            if (flight != null) {
+                write(objectKey, contentType, flight.size(), flight.etag(), flight.lastModifiedMillis(), request, response,
+                        (offset, length) -> flight.copyTo(response.getOutputStream(), offset, length));
+                return;
+            }
+        }
+
+        StatObjectResponse stat = stat(objectKey);
+        long lastModified = remember(objectKey, stat);
+        if (segmentCache.admits(objectKey, stat.size())) {
+            CachedObject loaded = segmentCache.get(objectKey, () -> segmentCache.fetch(objectKey));
+            diskStore.putAsync(objectKey, loaded);
+            write(objectKey, contentType, loaded.data().length, loaded.etag(), loaded.lastModifiedMillis(), request, response,
+                    (offset, length) -> writeBytes(loaded, offset, length, response, objectKey));
+            return;
+        }
+        write(objectKey, contentType, stat.size(), stat.etag(), lastModified, request, response,
+                (offset, length) -> {
+                    GetObjectArgs.Builder getArgs = GetObjectArgs.builder()
+                            .bucket(minioProperties.getBucket())
+                            .object(objectKey);
+                    if (length != stat.size()) {
+                        getArgs.offset(offset).length(length);
+                    }
+                    copy(minioClient.getObject(getArgs.build()), response, objectKey);
+                });
+    }
+
+    /**
+     * Answers a revalidation with 304 if the object's validators are in the index.
+     */
+    boolean answeredFromIndex(String objectKey, HttpServletRequest request, HttpServletResponse response) {
+        Validators known = validators.getIfPresent(objectKey);
+        if (known == null || !ConditionalRequests.notModified(request, "\"" + known.etag() + "\"", known.lastModifiedMillis())) {
+            return false;
+        }
+        sendNotModified(objectKey, "\"" + known.etag() + "\"", known.lastModifiedMillis(), response);
+        return true;
+    }
+
+    /**
+     * Records the validators of a stat in the index and returns its Last-Modified in millis.
+     */
+    long remember(String objectKey, StatObjectResponse stat) {
+        long lastModified = stat.lastModified() != null ? stat.lastModified().toInstant().toEpochMilli() : 0;
+        if (!objectKey.endsWith(".mpd")) {
+            // Manifests change while a rendition is encoding, their validators come from the segment cache
+            validators.put(objectKey, new Validators(stat.etag(), lastModified));
+        }
+        return lastModified;
+    }
+
+    @EventListener
+    public void onRenditionCompleted(RenditionCompletedEvent event) {
+        // A transcoded again rendition has new objects under the same keys
+        String prefix = event.manifestKey().substring(0, event.manifestKey().lastIndexOf('/') + 1);
+        validators.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        // The master manifest is assembled again with it
+        validators.invalidate(DashObjectKeys.masterManifestKey(event.videoId()));
+    }
+
+    interface Body {
+        void write(long offset, long length) throws Exception;
+    }
+
+    /**
+     * Sends status and headers, then the selected bytes of the body unless it is a HEAD request.
+     */
+    void write(String objectKey, String contentType, long size, String rawEtag, long lastModifiedMillis,
+              HttpServletRequest request, HttpServletResponse response, Body body) throws Exception {
+        String etag = "\"" + rawEtag + "\"";
+        if (ConditionalRequests.notModified(request, etag, lastModifiedMillis)) {
+            sendNotModified(objectKey, etag, lastModifiedMillis, response);
+            return;
+        }
+
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        setValidators(objectKey, etag, lastModifiedMillis, response);
+
+        ByteRange range = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ConditionalRequests.ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModifiedMillis)) {
+            range = ByteRange.parse(rangeHeader, size);
+        }
+
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setContentLengthLong(0);
+            return;
+        }
+
+        long offset = 0;
+        long length = size;
+        if (range != null) {
+            offset = range.start();
+            length = range.length();
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentLengthLong(length);
+
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        body.write(offset, length);
+    }
+
+    private void sendNotModified(String objectKey, String etag, long lastModifiedMillis, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        setValidators(objectKey, etag, lastModifiedMillis, response);
+    }
+
+    private void setValidators(String objectKey, String etag, long lastModifiedMillis, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(objectKey));
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (lastModifiedMillis > 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModifiedMillis);
+        }
+    }
+
+    private String cacheControl(String objectKey) {
+        if (objectKey.endsWith(".mpd")) {
+            return "no-cache";
+        }
+        if (objectKey.contains("/dash/") && objectKey.endsWith(".m4s")) {
+            return "public, max-age=" + http.getSegmentMaxAgeSeconds();
+        }
+        return "public, max-age=" + http.getObjectMaxAgeSeconds();
+    }
+
+    private void writeBytes(CachedObject cached, long offset, long length, HttpServletResponse response, String objectKey) {
+        try {
+            response.getOutputStream().write(cached.data(), (int) offset, (int) length);
+        } catch (IOException e) {
+            log.debug("Client disconnected while streaming {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    private StatObjectResponse stat(String objectKey) throws Exception {
+        try {
+            return minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioProperties.getBucket())
+                    .object(objectKey)
+                    .build());
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                throw new DataNotFoundException("Object not found: " + objectKey);
+            }
+            throw e;
+        }
+    }
+
+    private void copy(InputStream source, HttpServletResponse response, String objectKey) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try (InputStream in = source) {
+            OutputStream out = response.getOutputStream();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                try {
+                    out.write(buffer, 0, read);
+                } catch (IOException e) {
+                    // Viewer seeked away or closed the player, closing the source aborts the MinIO read
+                    log.debug("Client disconnected while streaming {}: {}", objectKey, e.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Inclusive byte range of an object.
+     */
+    record ByteRange(long start, long end) {
+
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Null when the header should be ignored and the whole object sent, UNSATISFIABLE when no
+         * byte of the object is in the requested range.
+         */
+        static ByteRange parse(String header, long size) {
+            if (!header.startsWith("bytes=") || header.indexOf(',') >= 0 || size == 0) {
+                return null;
+            }
+            String spec = header.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // Suffix range: the last n bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new ByteRange(Math.max(0, size - suffix), size - 1);
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start >= size) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(start, Math.min(end, size - 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
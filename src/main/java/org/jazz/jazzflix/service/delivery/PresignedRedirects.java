@@ -0,0 +1,91 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.http.Method;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REDIRECT delivery mode: segment and download requests get a 302 to a presigned MinIO URL, so the
+ * bytes go from the object store to the player and the app only serves manifests and metadata.
+ *
+ * Signed URLs are cached for half their validity, so a handed-out URL always has at least that
+ * much time left and a hot segment is signed about once per half expiry instead of per request.
+ * Browsers may cache the redirect itself for the same time.
+ */
+@Service
+public class PresignedRedirects {
+
+    private final MinioProperties minioProperties;
+    private final DeliveryProperties deliveryProperties;
+    private final MinioClient signer;
+    private final long expirySeconds;
+    private final Cache<String, String> signedUrls;
+
+    public PresignedRedirects(MinioClient minioClient,
+                              MinioProperties minioProperties,
+                              DeliveryProperties deliveryProperties) {
+        this.minioProperties = minioProperties;
+        this.deliveryProperties = deliveryProperties;
+        this.expirySeconds = deliveryProperties.getRedirect().getExpirySeconds();
+        if (minioProperties.getPublicEndpoint() != null && !minioProperties.getPublicEndpoint().isBlank()) {
+            // The host is part of the signature, so sign with a client for the endpoint players see
+            this.signer = MinioClient.builder()
+                    .endpoint(minioProperties.getPublicEndpoint())
+                    .credentials(minioProperties.getAccessKey(), minioProperties.getSecretKey())
+                    .region(minioProperties.getRegion())
+                    .build();
+        } else {
+            this.signer = minioClient;
+        }
+        this.signedUrls = Caffeine.newBuilder()
+                .maximumSize(200_000)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, expirySeconds / 2)))
+                .build();
+    }
+
+    /**
+     * Whether the object is handed off to MinIO. Manifests are always served by the app, they carry
+     * the relative segment URLs that lead back here.
+     */
+    public boolean applies(String objectKey) {
+        return deliveryProperties.getMode() == DeliveryProperties.Mode.REDIRECT && !objectKey.endsWith(".mpd");
+    }
+
+    /**
+     * Sends a 302 to a presigned GET for the object. With a download name the object is served as
+     * an attachment under that name.
+     */
+    public void redirect(String objectKey, String downloadName, HttpServletResponse response) throws Exception {
+        String url = signedUrls.get(objectKey + "|" + downloadName, key -> sign(objectKey, downloadName));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + Math.max(0, expirySeconds / 2));
+        response.setStatus(HttpServletResponse.SC_FOUND);
+        response.setHeader(HttpHeaders.LOCATION, url);
+    }
+
+    private String sign(String objectKey, String downloadName) {
+        GetPresignedObjectUrlArgs.Builder args = GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .expiry((int) expirySeconds, TimeUnit.SECONDS);
+        if (downloadName != null) {
+            args.extraQueryParams(Map.of("response-content-disposition", "attachment; filename=\"" + downloadName + "\""));
+        }
+        try {
+            return signer.getPresignedObjectUrl(args.build());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to presign " + objectKey, e);
+        }
+    }
+}
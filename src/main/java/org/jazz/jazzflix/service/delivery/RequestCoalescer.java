@@ -0,0 +1,414 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight fetching of DASH objects: concurrent cache misses on the same key share one MinIO
+ * GET instead of each opening their own.
+ *
+ * The GET runs on its own thread and fills a buffer sized from Content-Length. Every request for
+ * the key, the first one included, streams from that buffer as the bytes arrive, so a slow or
+ * disconnected viewer never holds up the others. The finished object goes into the heap and disk
+ * caches. Waiters fetch on their own if the shared GET does not answer within the header timeout
+ * or fails before its first byte. A missing object is a 404 for all of them. Objects too large for
+ * the heap cache are not coalesced.
+ */
+@Slf4j
+@Service
+public class RequestCoalescer {
+
+    // Waiters are woken every this many bytes rather than on every read
+    private static final int NOTIFY_BYTES = 64 * 1024;
+
+    public record CoalescerStats(long fetches, long collapsed, long failovers, long timeouts, int inFlight) {
+    }
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final SegmentCache segmentCache;
+    private final DiskSegmentStore diskStore;
+    private final DeliveryProperties.Coalescing settings;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    // Keys found too large to buffer, so the next miss does not open a GET just to learn that again
+    private final Cache<String, Boolean> oversized = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+    private final ExecutorService fetchers;
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public RequestCoalescer(MinioClient minioClient,
+                            MinioProperties minioProperties,
+                            SegmentCache segmentCache,
+                            DiskSegmentStore diskStore,
+                            DeliveryProperties deliveryProperties) {
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.segmentCache = segmentCache;
+        this.diskStore = diskStore;
+        this.settings = deliveryProperties.getCoalescing();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "coalesced-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean applies(String objectKey) {
+        return settings.isEnabled() && segmentCache.accepts(objectKey) && oversized.getIfPresent(objectKey) == null;
+    }
+
+    /**
+     * Joins the in-flight GET for the key, starting one if there is none, and waits for its headers.
+     * Null means the caller has to fetch the object on its own (timeout, upstream failure or too large).
+     */
+    public Flight join(String objectKey) throws InterruptedException {
+        Flight flight = share(objectKey);
+
+        try {
+            if (!flight.awaitHeaders(settings.getHeaderTimeoutMillis())) {
+                timeouts.incrementAndGet();
+                failovers.incrementAndGet();
+                log.warn("Shared fetch of {} sent no headers within {} ms, fetching directly", objectKey, settings.getHeaderTimeoutMillis());
+                return null;
+            }
+        } catch (DataNotFoundException e) {
+            throw e;
+        } catch (OversizedException e) {
+            return null;
+        } catch (Exception e) {
+            failovers.incrementAndGet();
+            log.warn("Shared fetch of {} failed, fetching directly: {}", objectKey, e.getMessage());
+            return null;
+        }
+        return flight;
+    }
+
+    /**
+     * The in-flight GET for the key, started if there is none, without waiting for its headers.
+     * Callers that cannot block wait on {@link Flight#headers()} instead.
+     */
+    public Flight share(String objectKey) {
+        Flight flight = flights.get(objectKey);
+        if (flight != null) {
+            collapsed.incrementAndGet();
+            return flight;
+        }
+        return start(objectKey);
+    }
+
+    /**
+     * Starts a shared GET for the key unless one is already running, without waiting for it.
+     */
+    public void prefetch(String objectKey) {
+        if (applies(objectKey) && !flights.containsKey(objectKey)) {
+            start(objectKey);
+        }
+    }
+
+    private Flight start(String objectKey) {
+        boolean[] started = {false};
+        Flight flight = flights.computeIfAbsent(objectKey, key -> {
+            started[0] = true;
+            return new Flight(key);
+        });
+        if (started[0]) {
+            fetches.incrementAndGet();
+            fetchers.execute(() -> fetch(flight));
+        } else {
+            collapsed.incrementAndGet();
+        }
+        return flight;
+    }
+
+    private void fetch(Flight flight) {
+        String objectKey = flight.objectKey;
+        try (GetObjectResponse response = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build())) {
+            long size = Long.parseLong(response.headers().get("Content-Length"));
+            if (!segmentCache.admits(objectKey, size)) {
+                oversized.put(objectKey, Boolean.TRUE);
+                flight.fail(new OversizedException());
+                return;
+            }
+            String etag = response.headers().get("ETag");
+            Date lastModified = response.headers().getDate("Last-Modified");
+            byte[] data = flight.begin((int) size,
+                    etag != null ? etag.replace("\"", "") : "",
+                    lastModified != null ? lastModified.getTime() : 0);
+
+            int filled = 0;
+            while (filled < data.length) {
+                int read = response.read(data, filled, data.length - filled);
+                if (read < 0) {
+                    throw new EOFException("Object " + objectKey + " ended after " + filled + " of " + data.length + " bytes");
+                }
+                filled += read;
+                flight.advance(filled);
+            }
+
+            CachedObject object = flight.complete();
+            segmentCache.put(objectKey, object);
+            diskStore.putAsync(objectKey, object);
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                flight.fail(new DataNotFoundException("Object not found: " + objectKey));
+            } else {
+                flight.fail(e);
+            }
+        } catch (Exception e) {
+            flight.fail(e);
+        } finally {
+            flights.remove(objectKey, flight);
+        }
+    }
+
+    public CoalescerStats stats() {
+        return new CoalescerStats(fetches.get(), collapsed.get(), failovers.get(), timeouts.get(), flights.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchers.shutdownNow();
+    }
+
+    private static final class OversizedException extends RuntimeException {
+        private OversizedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * One shared GET. The fetcher publishes its progress under the flight's monitor, which also
+     * makes the bytes written to data before it visible to the waiters. Waiters that cannot block
+     * register callbacks instead, which run on the fetcher thread.
+     */
+    public final class Flight {
+        private final String objectKey;
+        private final CompletableFuture<Void> headers = new CompletableFuture<>();
+        private final List<Runnable> callbacks = new ArrayList<>();
+        private byte[] data;
+        private String etag;
+        private long lastModifiedMillis;
+        private int available;
+        private int notified;
+        private boolean done;
+        private Exception failure;
+
+        private Flight(String objectKey) {
+            this.objectKey = objectKey;
+        }
+
+        public synchronized long size() {
+            return data.length;
+        }
+
+        public synchronized String etag() {
+            return etag;
+        }
+
+        public synchronized long lastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        /**
+         * Completes once size, ETag and Last-Modified are known, or exceptionally if the GET
+         * failed before that. Each caller gets its own copy, so it may time it out.
+         */
+        public CompletableFuture<Void> headers() {
+            return headers.copy();
+        }
+
+        private byte[] begin(int size, String etag, long lastModifiedMillis) {
+            byte[] buffer;
+            synchronized (this) {
+                this.data = new byte[size];
+                this.etag = etag;
+                this.lastModifiedMillis = lastModifiedMillis;
+                notifyAll();
+                buffer = data;
+            }
+            headers.complete(null);
+            return buffer;
+        }
+
+        private void advance(int filled) {
+            List<Runnable> ready = null;
+            synchronized (this) {
+                available = filled;
+                if (available - notified >= NOTIFY_BYTES || available == data.length) {
+                    notified = available;
+                    notifyAll();
+                    ready = takeCallbacks();
+                }
+            }
+            run(ready);
+        }
+
+        private CachedObject complete() {
+            CachedObject object;
+            List<Runnable> ready;
+            synchronized (this) {
+                done = true;
+                notifyAll();
+                // A zero-length object never advances, so its waiters are only released here
+                ready = takeCallbacks();
+                object = new CachedObject(data, etag, lastModifiedMillis);
+            }
+            run(ready);
+            return object;
+        }
+
+        private void fail(Exception e) {
+            List<Runnable> ready;
+            synchronized (this) {
+                failure = e;
+                done = true;
+                notifyAll();
+                ready = takeCallbacks();
+            }
+            headers.completeExceptionally(e);
+            run(ready);
+        }
+
+        private List<Runnable> takeCallbacks() {
+            if (callbacks.isEmpty()) {
+                return null;
+            }
+            List<Runnable> ready = new ArrayList<>(callbacks);
+            callbacks.clear();
+            return ready;
+        }
+
+        private void run(List<Runnable> ready) {
+            if (ready == null) {
+                return;
+            }
+            for (Runnable callback : ready) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    log.warn("Callback on shared fetch of {} failed: {}", objectKey, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Bytes of the object received so far, without waiting. Throws if the GET failed before
+         * getting past position.
+         */
+        synchronized int available(long position) throws IOException {
+            if (available <= position && failure != null) {
+                throw new IOException("Shared fetch of " + objectKey + " failed", failure);
+            }
+            return available;
+        }
+
+        /**
+         * Runs the callback once bytes beyond position have arrived or the GET has ended. Returns
+         * false, without registering it, if that is already the case.
+         */
+        synchronized boolean whenBeyond(long position, Runnable callback) {
+            if (available > position || done) {
+                return false;
+            }
+            callbacks.add(callback);
+            return true;
+        }
+
+        /**
+         * The buffer being filled; only [0, available) is meaningful.
+         */
+        synchronized byte[] data() {
+            return data;
+        }
+
+        private synchronized boolean awaitHeaders(long timeoutMillis) throws Exception {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (data == null && failure == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (data == null) {
+                throw failure;
+            }
+            return true;
+        }
+
+        /**
+         * Blocks until bytes beyond position are available and returns how many there are in total.
+         */
+        private synchronized int awaitBeyond(long position) throws IOException, InterruptedException {
+            long stallNanos = TimeUnit.MILLISECONDS.toNanos(settings.getStallTimeoutMillis());
+            long deadline = System.nanoTime() + stallNanos;
+            while (available <= position) {
+                if (failure != null) {
+                    throw new IOException("Shared fetch of " + objectKey + " failed", failure);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts.incrementAndGet();
+                    throw new IOException("Shared fetch of " + objectKey + " stalled at " + available + " bytes");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return available;
+        }
+
+        /**
+         * Writes [offset, offset + length) of the object to out as the shared GET delivers it.
+         */
+        public void copyTo(OutputStream out, long offset, long length) throws IOException, InterruptedException {
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                int upTo = (int) Math.min(awaitBeyond(position), end);
+                try {
+                    out.write(data, (int) position, upTo - (int) position);
+                } catch (IOException e) {
+                    log.debug("Client disconnected while streaming {}: {}", objectKey, e.getMessage());
+                    return;
+                }
+                position = upTo;
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.jazz.jazzflix.service.delivery;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes one response body with servlet non-blocking I/O. Bytes are taken from the source only
+ * while the connection accepts them, so a slow client holds no thread, and with an upstream
+ * source its TCP window throttles the upstream read instead of filling memory.
+ *
+ * Sources that have nothing yet (a shared fetch still downloading, a GET still connecting or reading)
+ * ask to be resumed; the resume runs on a container thread through {@link AsyncContext#start}.
+ */
+@Slf4j
+final class ResponsePump implements WriteListener, AsyncListener {
+
+    interface Source extends Closeable {
+        /**
+         * Writes at most max bytes and returns how many, 0 if none are available yet.
+         */
+        long writeTo(ServletOutputStream out, long max) throws IOException;
+
+        /**
+         * Runs resume once more bytes are available. False, without registering it, if they already are.
+         */
+        default boolean whenAvailable(Runnable resume) {
+            return false;
+        }
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private final AsyncContext context;
+    private final HttpServletResponse response;
+    private final String objectKey;
+    private final int chunkBytes;
+    private final Runnable onFinish;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private ServletOutputStream out;
+    private Source source;
+    private long remaining;
+
+    private ResponsePump(AsyncContext context, HttpServletResponse response, String objectKey, int chunkBytes, Runnable onFinish) {
+        this.context = context;
+        this.response = response;
+        this.objectKey = objectKey;
+        this.chunkBytes = chunkBytes;
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * Puts the request in async mode. onFinish runs exactly once, when the response is done.
+     */
+    static ResponsePump start(HttpServletRequest request, HttpServletResponse response, String objectKey,
+                              long timeoutMillis, int chunkBytes, Runnable onFinish) {
+        AsyncContext context = request.startAsync(request, response);
+        context.setTimeout(timeoutMillis);
+        ResponsePump pump = new ResponsePump(context, response, objectKey, chunkBytes, onFinish);
+        context.addListener(pump);
+        return pump;
+    }
+
+    /**
+     * Runs the task on a container thread.
+     */
+    void dispatch(Runnable task) {
+        if (finished.get()) {
+            return;
+        }
+        try {
+            context.start(task);
+        } catch (IllegalStateException e) {
+            // The response timed out or failed in the meantime
+            complete();
+        }
+    }
+
+    /**
+     * Sends length bytes of the source once the status and headers are set. Call at most once.
+     */
+    void send(Source source, long length) throws IOException {
+        this.source = source;
+        this.remaining = length;
+        this.out = response.getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        if (finished.get()) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                if (remaining == 0) {
+                    // Complete only once the connection took everything, completing with writes pending can reorder the tail
+                    complete();
+                    return;
+                }
+                long written = source.writeTo(out, Math.min(chunkBytes, remaining));
+                if (written == 0) {
+                    if (source.whenAvailable(() -> dispatch(this::onWritePossible))) {
+                        return;
+                    }
+                    continue;
+                }
+                remaining -= written;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.debug("Client disconnected while streaming {}: {}", objectKey, t.getMessage());
+        complete();
+    }
+
+    /**
+     * Ends the response as it is.
+     */
+    void complete() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the source of {}: {}", objectKey, e.getMessage());
+            }
+        }
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container after a timeout or error
+            release();
+        }
+    }
+
+    /**
+     * Ends the response with 404 or 502 if nothing was sent yet, or cuts it short otherwise.
+     */
+    void fail(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (!response.isCommitted() && !finished.get()) {
+            response.reset();
+            response.setStatus(cause instanceof DataNotFoundException
+                    ? HttpServletResponse.SC_NOT_FOUND
+                    : HttpServletResponse.SC_BAD_GATEWAY);
+        }
+        if (cause instanceof DataNotFoundException) {
+            log.debug("Object not found: {}", objectKey);
+        } else {
+            log.warn("Failed to stream {}: {}", objectKey, cause.toString());
+        }
+        complete();
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) {
+            onFinish.run();
+        }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        finished.set(true);
+        release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        log.debug("Streaming {} timed out", objectKey);
+        complete();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * An in-memory object, written straight from its array.
+     */
+    static final class BytesSource implements Source {
+        private final byte[] data;
+        private int position;
+
+        BytesSource(byte[] data, long offset) {
+            this.data = data;
+            this.position = (int) offset;
+        }
+
+        @Override
+        public long writeTo(ServletOutputStream out, long max) throws IOException {
+            int length = (int) Math.min(max, data.length - position);
+            out.write(data, position, length);
+            position += length;
+            return length;
+        }
+    }
+
+    /**
+     * An object still being downloaded by a shared fetch, written from its buffer as it fills.
+     */
+    static final class FlightSource implements Source {
+        private final RequestCoalescer.Flight flight;
+        private long position;
+
+        FlightSource(RequestCoalescer.Flight flight, long offset) {
+            this.flight = flight;
+            this.position = offset;
+        }
+
+        @Override
+        public long writeTo(ServletOutputStream out, long max) throws IOException {
+            int available = flight.available(position);
+            if (available <= position) {
+                return 0;
+            }
+            int length = (int) Math.min(max, available - position);
+            out.write(flight.data(), (int) position, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public boolean whenAvailable(Runnable resume) {
+            return flight.whenBeyond(position, resume);
+        }
+    }
+
+    /**
+     * A stream that may still be opening, e.g. a GET on the async MinIO client. Its reads block, so
+     * they run on the reader pool, one pooled buffer ahead of the connection; only bytes already
+     * read are written, and the pump is resumed once the next buffer is filled.
+     */
+    static final class StreamSource implements Source {
+        private final CompletableFuture<? extends InputStream> input;
+        private final BufferPool bufferPool;
+        private final Executor readers;
+        // Owned by the reader while reading, by the pump otherwise; [start, end) is not written yet
+        private byte[] buffer;
+        private int start;
+        private int end;
+        private boolean reading;
+        private boolean closed;
+        private IOException failure;
+        private Runnable resume;
+
+        StreamSource(CompletableFuture<? extends InputStream> input, BufferPool bufferPool, Executor readers) {
+            this.input = input;
+            this.bufferPool = bufferPool;
+            this.readers = readers;
+        }
+
+        @Override
+        public synchronized long writeTo(ServletOutputStream out, long max) throws IOException {
+            if (reading) {
+                return 0;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (start == end) {
+                read();
+                return 0;
+            }
+            int length = (int) Math.min(max, end - start);
+            out.write(buffer, start, length);
+            start += length;
+            if (start == end) {
+                // The next chunk is read while the connection drains this one
+                read();
+            }
+            return length;
+        }
+
+        @Override
+        public synchronized boolean whenAvailable(Runnable resume) {
+            if (!reading) {
+                return false;
+            }
+            this.resume = resume;
+            return true;
+        }
+
+        private void read() {
+            bufferPool.release(buffer);
+            buffer = null;
+            start = 0;
+            end = 0;
+            reading = true;
+            input.whenCompleteAsync(this::fill, readers);
+        }
+
+        private void fill(InputStream in, Throwable error) {
+            byte[] target = null;
+            int read = 0;
+            IOException failed = null;
+            if (error != null) {
+                failed = new IOException("Failed to open the upstream stream", unwrap(error));
+            } else {
+                target = bufferPool.acquire();
+                try {
+                    read = in.read(target);
+                    if (read < 0) {
+                        failed = new EOFException("Upstream stream ended early");
+                    }
+                } catch (IOException e) {
+                    failed = e;
+                }
+            }
+
+            Runnable callback;
+            synchronized (this) {
+                reading = false;
+                if (closed || failed != null) {
+                    bufferPool.release(target);
+                    failure = failed;
+                } else {
+                    buffer = target;
+                    end = read;
+                }
+                callback = resume;
+                resume = null;
+            }
+            if (callback != null) {
+                callback.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                if (!reading) {
+                    bufferPool.release(buffer);
+                    buffer = null;
+                }
+            }
+            // Closing aborts an upstream read that is cut short
+            input.thenAccept(in -> {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close upstream stream: {}", e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.service.transcoding.DashObjectKeys;
+import org.jazz.jazzflix.service.transcoding.RenditionCompletedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Size-bounded in-memory cache of DASH objects in front of MinIO, so the init segments, manifests
+ * and first segments every viewer of a title fetches are served without a MinIO round trip.
+ *
+ * Two Caffeine caches (W-TinyLFU eviction, weighted by bytes) with their own budgets: init
+ * segments and manifests, and media segments. Manifests expire after a short TTL since they are
+ * rewritten while a rendition encodes. When a rendition completes its stale manifests are dropped
+ * and the init segments and first segments of each representation are loaded in the background.
+ */
+@Slf4j
+@Service
+public class SegmentCache {
+
+    // chunk-$RepresentationID$-$Number$.m4s, see DashCommands
+    private static final Pattern SEGMENT_NAME = Pattern.compile("chunk-[^-/]+-(\\d+)\\.m4s");
+
+    public record CachedObject(byte[] data, String etag, long lastModifiedMillis) {
+    }
+
+    public record CacheTierStats(long budgetBytes,
+                                 long usedBytes,
+                                 long entries,
+                                 long hits,
+                                 long misses,
+                                 double hitRatio,
+                                 long evictions) {
+    }
+
+    public record SegmentCacheStats(boolean enabled, CacheTierStats initAndManifests, CacheTierStats segments) {
+    }
+
+    public interface Loader {
+        CachedObject load() throws Exception;
+    }
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final DeliveryProperties.Cache settings;
+    private final Cache<String, CachedObject> initAndManifests;
+    private final Cache<String, CachedObject> segments;
+    private final ExecutorService prewarmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-cache-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SegmentCache(MinioClient minioClient,
+                        MinioProperties minioProperties,
+                        DeliveryProperties deliveryProperties) {
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.settings = deliveryProperties.getCache();
+        long manifestTtlNanos = TimeUnit.SECONDS.toNanos(settings.getManifestTtlSeconds());
+        this.initAndManifests = Caffeine.newBuilder()
+                .maximumWeight(settings.getInitBudgetBytes())
+                .weigher(SegmentCache::weigh)
+                .expireAfter(new Expiry<String, CachedObject>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedObject value, long currentTime) {
+                        return isManifest(key) ? manifestTtlNanos : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedObject value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedObject value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.segments = Caffeine.newBuilder()
+                .maximumWeight(settings.getSegmentBudgetBytes())
+                .weigher(SegmentCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Whether an object of this key and size is kept in memory at all.
+     */
+    public boolean admits(String objectKey, long size) {
+        return accepts(objectKey) && size <= settings.getMaxObjectBytes();
+    }
+
+    /**
+     * Whether objects under this key are cached at all, before their size is known.
+     */
+    public boolean accepts(String objectKey) {
+        return settings.isEnabled() && objectKey.contains("/dash/");
+    }
+
+    public CachedObject getIfPresent(String objectKey) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        return tier(objectKey).getIfPresent(objectKey);
+    }
+
+    /**
+     * Returns the cached object, loading it on a miss. Concurrent misses on the same key share one load.
+     */
+    public CachedObject get(String objectKey, Loader loader) throws Exception {
+        try {
+            return tier(objectKey).get(objectKey, key -> {
+                try {
+                    return loader.load();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new LoadException(e);
+                }
+            });
+        } catch (LoadException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Reads a whole object from MinIO into memory, callers check {@link #admits} first.
+     */
+    public CachedObject fetch(String objectKey) throws Exception {
+        try (GetObjectResponse response = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build())) {
+            byte[] data = response.readAllBytes();
+            String etag = response.headers().get("ETag");
+            Date lastModified = response.headers().getDate("Last-Modified");
+            return new CachedObject(data,
+                    etag != null ? etag.replace("\"", "") : "",
+                    lastModified != null ? lastModified.getTime() : 0);
+        }
+    }
+
+    /**
+     * Like getIfPresent, without counting towards the hit ratio.
+     */
+    public CachedObject peek(String objectKey) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        return tier(objectKey).policy().getIfPresentQuietly(objectKey);
+    }
+
+    public void put(String objectKey, CachedObject object) {
+        tier(objectKey).put(objectKey, object);
+    }
+
+    public void invalidate(String objectKey) {
+        tier(objectKey).invalidate(objectKey);
+    }
+
+    @EventListener
+    public void onRenditionCompleted(RenditionCompletedEvent event) {
+        // The cached manifests are the dynamic ones written while the rendition was encoding, and a
+        // re-transcoded rendition rewrites its init and media segments under the same keys
+        String prefix = event.manifestKey().substring(0, event.manifestKey().lastIndexOf('/') + 1);
+        invalidateRendition(initAndManifests, prefix);
+        invalidateRendition(segments, prefix);
+        invalidate(DashObjectKeys.masterManifestKey(event.videoId()));
+        if (settings.isEnabled() && settings.getPrewarmSegments() > 0) {
+            prewarmer.execute(() -> prewarm(event));
+        }
+    }
+
+    private static void invalidateRendition(Cache<String, CachedObject> tier, String prefix) {
+        tier.asMap().keySet().removeIf(key -> key.startsWith(prefix) && key.indexOf('/', prefix.length()) < 0);
+    }
+
+    private void prewarm(RenditionCompletedEvent event) {
+        String prefix = event.manifestKey().substring(0, event.manifestKey().lastIndexOf('/') + 1);
+        int loaded = 0;
+        try {
+            Iterable<Result<Item>> items = minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(minioProperties.getBucket())
+                    .prefix(prefix)
+                    .recursive(false)
+                    .build());
+            for (Result<Item> result : items) {
+                Item item = result.get();
+                String key = item.objectName();
+                if (item.isDir() || !admits(key, item.size()) || !isPrewarmed(key.substring(prefix.length()))) {
+                    continue;
+                }
+                if (getIfPresent(key) == null) {
+                    get(key, () -> fetch(key));
+                    loaded++;
+                }
+            }
+            log.info("Pre-warmed {} objects of video {} rendition {}", loaded, event.videoId(), event.quality());
+        } catch (Exception e) {
+            log.warn("Failed to pre-warm video {} rendition {}: {}", event.videoId(), event.quality(), e.getMessage());
+        }
+    }
+
+    private boolean isPrewarmed(String fileName) {
+        if (fileName.startsWith("init-")) {
+            return true;
+        }
+        Matcher matcher = SEGMENT_NAME.matcher(fileName);
+        return matcher.matches() && Long.parseLong(matcher.group(1)) <= settings.getPrewarmSegments();
+    }
+
+    public SegmentCacheStats stats() {
+        return new SegmentCacheStats(settings.isEnabled(),
+                tierStats(initAndManifests, settings.getInitBudgetBytes()),
+                tierStats(segments, settings.getSegmentBudgetBytes()));
+    }
+
+    private static CacheTierStats tierStats(Cache<String, CachedObject> cache, long budgetBytes) {
+        CacheStats stats = cache.stats();
+        long usedBytes = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new CacheTierStats(budgetBytes, usedBytes, cache.estimatedSize(),
+                stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    private Cache<String, CachedObject> tier(String objectKey) {
+        String fileName = objectKey.substring(objectKey.lastIndexOf('/') + 1);
+        return isManifest(objectKey) || fileName.startsWith("init-") ? initAndManifests : segments;
+    }
+
+    private static boolean isManifest(String objectKey) {
+        return objectKey.endsWith(".mpd");
+    }
+
+    private static int weigh(String key, CachedObject value) {
+        return value.data().length + key.length();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prewarmer.shutdownNow();
+    }
+
+    private static final class LoadException extends RuntimeException {
+        private LoadException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches the next segments of active playback streams into the segment cache ahead of demand.
+ *
+ * A request for {@code chunk-R-N.m4s} (see DashCommands) moves the playhead of its stream, keyed by
+ * viewer, video, directory and representation, and queues N+1..N+k unless they are already cached.
+ * Queued prefetches go out through {@link RequestCoalescer} within a global bandwidth budget; what
+ * does not fit waits for the next tick. A stream's queue is dropped when it seeks backwards, goes
+ * idle, or falls two segments behind another stream of the same viewer and video, which is what a
+ * representation switch looks like (audio and video streams advance together).
+ */
+@Slf4j
+@Service
+public class SegmentPrefetcher {
+
+    private static final Pattern SEGMENT_KEY = Pattern.compile("(videos/[^/]+/)(.*/)?chunk-([^-/]+)-(\\d+)\\.m4s");
+    private static final long DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+    private static final long TICK_MILLIS = 250;
+
+    public record PrefetchStats(boolean enabled,
+                                long viewers,
+                                long prefetched,
+                                long deferred,
+                                long cancelled,
+                                long availableBudgetBytes) {
+    }
+
+    private final SegmentCache segmentCache;
+    private final DiskSegmentStore diskStore;
+    private final RequestCoalescer coalescer;
+    private final DeliveryProperties.Prefetch settings;
+    private final Bucket budget;
+    // Viewer and video -> its playback streams
+    private final Cache<String, Viewer> viewers;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public SegmentPrefetcher(SegmentCache segmentCache,
+                             DiskSegmentStore diskStore,
+                             RequestCoalescer coalescer,
+                             DeliveryProperties deliveryProperties) {
+        this.segmentCache = segmentCache;
+        this.diskStore = diskStore;
+        this.coalescer = coalescer;
+        this.settings = deliveryProperties.getPrefetch();
+        long bytesPerSecond = Math.max(1, settings.getBandwidthBytesPerSecond());
+        this.budget = Bucket.builder()
+                .addLimit(Bandwidth.classic(bytesPerSecond, Refill.greedy(bytesPerSecond, Duration.ofSeconds(1))))
+                .build();
+        this.viewers = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(settings.getIdleTimeoutSeconds()))
+                .<String, Viewer>removalListener((key, viewer, cause) -> {
+                    if (viewer != null) {
+                        cancelled.addAndGet(viewer.cancelAll());
+                    }
+                })
+                .build();
+        if (settings.isEnabled()) {
+            ticker.scheduleWithFixedDelay(this::drainAll, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void onSegmentRequested(String objectKey, HttpServletRequest request) {
+        if (!settings.isEnabled() || settings.getSegmentsAhead() <= 0) {
+            return;
+        }
+        Matcher matcher = SEGMENT_KEY.matcher(objectKey);
+        if (!matcher.matches()) {
+            return;
+        }
+        String video = matcher.group(1);
+        String directory = objectKey.substring(0, objectKey.lastIndexOf('/') + 1);
+        String representation = matcher.group(3);
+        long number = Long.parseLong(matcher.group(4));
+
+        Viewer viewer = viewers.get(viewerId(request) + "|" + video, id -> new Viewer());
+        PlaybackStream stream = viewer.advance(directory, representation, number);
+        CachedObject current = segmentCache.peek(objectKey);
+        if (current != null) {
+            stream.segmentBytes = current.data().length;
+        }
+        for (int ahead = 1; ahead <= settings.getSegmentsAhead(); ahead++) {
+            String next = directory + "chunk-" + representation + "-" + (number + ahead) + ".m4s";
+            if (!stream.pending.contains(next) && !isCached(next)) {
+                stream.pending.add(next);
+            }
+        }
+        viewer.drain();
+    }
+
+    private boolean isCached(String objectKey) {
+        return segmentCache.peek(objectKey) != null || diskStore.contains(objectKey);
+    }
+
+    private void drainAll() {
+        try {
+            for (Viewer viewer : viewers.asMap().values()) {
+                viewer.drain();
+            }
+        } catch (Exception e) {
+            log.warn("Segment prefetch tick failed: {}", e.getMessage());
+        }
+    }
+
+    public PrefetchStats stats() {
+        return new PrefetchStats(settings.isEnabled(), viewers.estimatedSize(), prefetched.get(), deferred.get(),
+                cancelled.get(), budget.getAvailableTokens());
+    }
+
+    private static String viewerId(HttpServletRequest request) {
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        String address = forwardedFor != null ? forwardedFor.split(",")[0].trim() : request.getRemoteAddr();
+        String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
+        return address + "|" + (userAgent != null ? userAgent.hashCode() : 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private static final class PlaybackStream {
+        private final Deque<String> pending = new ArrayDeque<>();
+        private long playhead;
+        private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+    }
+
+    private final class Viewer {
+        // Directory + representation -> stream
+        private final Map<String, PlaybackStream> streams = new HashMap<>();
+
+        private synchronized PlaybackStream advance(String directory, String representation, long number) {
+            PlaybackStream stream = streams.computeIfAbsent(directory + representation, key -> new PlaybackStream());
+            if (number < stream.playhead) {
+                // Seeked backwards, what was queued is no longer ahead of the player
+                cancelled.addAndGet(stream.pending.size());
+                stream.pending.clear();
+            }
+            stream.playhead = number;
+            stream.pending.removeIf(key -> segmentNumber(key) <= number);
+
+            Iterator<PlaybackStream> others = streams.values().iterator();
+            while (others.hasNext()) {
+                PlaybackStream other = others.next();
+                if (other != stream && other.playhead + 2 <= number) {
+                    // Switched away from: the other streams of this video moved on without it
+                    cancelled.addAndGet(other.pending.size());
+                    others.remove();
+                }
+            }
+            return stream;
+        }
+
+        private synchronized void drain() {
+            for (PlaybackStream stream : streams.values()) {
+                while (!stream.pending.isEmpty()) {
+                    String next = stream.pending.peek();
+                    if (isCached(next)) {
+                        stream.pending.poll();
+                        continue;
+                    }
+                    if (!budget.tryConsume(stream.segmentBytes)) {
+                        deferred.incrementAndGet();
+                        return;
+                    }
+                    stream.pending.poll();
+                    coalescer.prefetch(next);
+                    prefetched.incrementAndGet();
+                }
+            }
+        }
+
+        private synchronized int cancelAll() {
+            int count = 0;
+            for (PlaybackStream stream : streams.values()) {
+                count += stream.pending.size();
+                stream.pending.clear();
+            }
+            streams.clear();
+            return count;
+        }
+
+        private long segmentNumber(String objectKey) {
+            Matcher matcher = SEGMENT_KEY.matcher(objectKey);
+            return matcher.matches() ? Long.parseLong(matcher.group(4)) : Long.MAX_VALUE;
+        }
+    }
+}
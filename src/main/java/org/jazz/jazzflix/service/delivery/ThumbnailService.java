@@ -0,0 +1,253 @@
+package org.jazz.jazzflix.service.delivery;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.delivery.DeliveryProperties;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.entity.video.TblVideoAssest;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
+import org.jazz.jazzflix.service.delivery.SegmentCache.CachedObject;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves video thumbnails resized to a few width buckets, so a catalog tile gets a few KB instead
+ * of the full-resolution frame extracted at upload.
+ *
+ * A requested width is rounded up to the nearest bucket. A variant is read from MinIO next to the
+ * original ({@code name-w320.jpg}), or generated from the original and written there on the first
+ * request for it. Variants are kept in a byte-bounded cache, and concurrent misses on the same one
+ * share one load or resize. The video id to object key lookup is cached too.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    public record ThumbnailStats(boolean enabled,
+                                 List<Integer> widths,
+                                 long lookups,
+                                 double lookupHitRatio,
+                                 long variants,
+                                 long usedBytes,
+                                 double variantHitRatio,
+                                 long generated) {
+    }
+
+    private final TblVideoAssestRepository videoAssestRepository;
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final SegmentCache segmentCache;
+    private final ObjectStreamer objectStreamer;
+    private final DeliveryProperties.Thumbnail settings;
+    private final List<Integer> widths;
+    // Video id -> thumbnail object key, empty when the processed video has none
+    private final Cache<UUID, Optional<String>> objectKeys;
+    // Variant object key -> bytes
+    private final Cache<String, CachedObject> variants;
+    private final AtomicLong generated = new AtomicLong();
+
+    public ThumbnailService(TblVideoAssestRepository videoAssestRepository,
+                            MinioClient minioClient,
+                            MinioProperties minioProperties,
+                            SegmentCache segmentCache,
+                            ObjectStreamer objectStreamer,
+                            DeliveryProperties deliveryProperties) {
+        this.videoAssestRepository = videoAssestRepository;
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.segmentCache = segmentCache;
+        this.objectStreamer = objectStreamer;
+        this.settings = deliveryProperties.getThumbnail();
+        this.widths = settings.getWidths().stream().filter(width -> width > 0).sorted().distinct().toList();
+        this.objectKeys = Caffeine.newBuilder()
+                .maximumSize(settings.getLookupCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(settings.getLookupTtlSeconds()))
+                .recordStats()
+                .build();
+        this.variants = Caffeine.newBuilder()
+                .maximumWeight(settings.getBudgetBytes())
+                .<String, CachedObject>weigher((key, value) -> value.data().length + key.length())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Writes the thumbnail of the video, resized when a width is given, or the original otherwise.
+     */
+    public void serve(UUID videoId, Integer width,
+                      HttpServletRequest request, HttpServletResponse response) throws Exception {
+        String originalKey = objectKey(videoId);
+        if (width == null || !settings.isEnabled() || widths.isEmpty()) {
+            objectStreamer.stream(originalKey, MediaType.IMAGE_JPEG_VALUE, request, response);
+            return;
+        }
+
+        int bucket = bucket(width);
+        String variantKey = variantKey(originalKey, bucket);
+        CachedObject variant = variant(originalKey, variantKey, bucket);
+        objectStreamer.write(variantKey, MediaType.IMAGE_JPEG_VALUE, variant.data().length, variant.etag(),
+                variant.lastModifiedMillis(), request, response,
+                (offset, length) -> response.getOutputStream().write(variant.data(), (int) offset, (int) length));
+    }
+
+    private String objectKey(UUID videoId) {
+        Optional<String> objectKey = objectKeys.get(videoId, id -> {
+            TblVideoAssest video = videoAssestRepository.findById(id)
+                    .orElseThrow(() -> new DataNotFoundException("Video not found with ID: " + id));
+            if (video.getThumbnailObjectKey() == null && !"PROCESSED".equals(video.getStatus())) {
+                // Still in the post-upload pipeline, the thumbnail may yet come; not cached
+                return null;
+            }
+            return Optional.ofNullable(video.getThumbnailObjectKey());
+        });
+        if (objectKey == null) {
+            throw new DataNotFoundException("Video " + videoId + " has no thumbnail yet");
+        }
+        return objectKey.orElseThrow(() -> new DataNotFoundException("Video " + videoId + " has no thumbnail"));
+    }
+
+    private int bucket(int width) {
+        for (int bucket : widths) {
+            if (bucket >= width) {
+                return bucket;
+            }
+        }
+        return widths.get(widths.size() - 1);
+    }
+
+    private static String variantKey(String originalKey, int width) {
+        int dot = originalKey.lastIndexOf('.');
+        String base = dot > originalKey.lastIndexOf('/') ? originalKey.substring(0, dot) : originalKey;
+        return base + "-w" + width + ".jpg";
+    }
+
+    private CachedObject variant(String originalKey, String variantKey, int width) throws Exception {
+        try {
+            return variants.get(variantKey, key -> {
+                try {
+                    return loadOrGenerate(originalKey, variantKey, width);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new LoadException(e);
+                }
+            });
+        } catch (LoadException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private CachedObject loadOrGenerate(String originalKey, String variantKey, int width) throws Exception {
+        try {
+            return segmentCache.fetch(variantKey);
+        } catch (ErrorResponseException e) {
+            if (!isNoSuchKey(e)) {
+                throw e;
+            }
+        }
+
+        CachedObject original;
+        try {
+            original = segmentCache.fetch(originalKey);
+        } catch (ErrorResponseException e) {
+            if (isNoSuchKey(e)) {
+                throw new DataNotFoundException("Thumbnail not found: " + originalKey);
+            }
+            throw e;
+        }
+        byte[] resized = resize(original.data(), width);
+        ObjectWriteResponse written = minioClient.putObject(PutObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(variantKey)
+                .stream(new ByteArrayInputStream(resized), resized.length, -1)
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .build());
+        generated.incrementAndGet();
+        log.info("Generated thumbnail variant {} ({} bytes from {})", variantKey, resized.length, original.data().length);
+        String etag = written.etag() != null ? written.etag().replace("\"", "") : "";
+        return new CachedObject(resized, etag, System.currentTimeMillis());
+    }
+
+    /**
+     * Scales the image down to the width, keeping its aspect ratio. Narrower images are re-encoded
+     * at their own size, never scaled up.
+     */
+    private byte[] resize(byte[] image, int width) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        if (source == null) {
+            throw new IOException("Thumbnail is not a readable image");
+        }
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(settings.getJpegQuality());
+            writer.write(null, new IIOImage(target, null, null), params);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isNoSuchKey(ErrorResponseException e) {
+        String code = e.errorResponse().code();
+        return "NoSuchKey".equals(code) || "NoSuchObject".equals(code);
+    }
+
+    public ThumbnailStats stats() {
+        CacheStats lookupStats = objectKeys.stats();
+        CacheStats variantStats = variants.stats();
+        long usedBytes = variants.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new ThumbnailStats(settings.isEnabled(), widths, objectKeys.estimatedSize(), lookupStats.hitRate(),
+                variants.estimatedSize(), usedBytes, variantStats.hitRate(), generated.get());
+    }
+
+    private static final class LoadException extends RuntimeException {
+        private LoadException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.jazz.jazzflix.dto.video.ChunkPlan;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.service.VideoQualityPersistenceService;
+import org.jazz.jazzflix.service.VideoTranscodingService;
+import org.jazz.jazzflix.service.VideoTranscodingService.VideoQuality;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Split / encode / stitch pipeline for long sources.
+ *
+ * <ol>
+ *     <li>PLAN: probe the source, cut it at keyframes into time ranges and publish one CHUNK job
+ *     per range and rendition plus one AUDIO job.</li>
+ *     <li>CHUNK: encode one range of one rendition (video only) into its own parts/ prefix.</li>
+ *     <li>The job that finishes the last chunk of a rendition stitches the parts into one
+ *     continuous timeline and marks the rendition COMPLETED.</li>
+ * </ol>
+ * Workers read the source through a presigned URL, so a chunk job only fetches the byte ranges it encodes.
+ */
+@Slf4j
+@Service
+public class ChunkedTranscodingService {
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final TranscodingProperties transcodingProperties;
+    private final FFmpegRunner ffmpegRunner;
+    private final DashOutputUploader dashOutputUploader;
+    private final DashManifestAssembler manifestAssembler;
+    private final VideoTranscodingService transcodingService;
+    private final VideoQualityPersistenceService qualityPersistenceService;
+    private final TranscodingJobPublisher jobPublisher;
+    private final TranscodeInputResolver inputResolver;
+    private final ObjectMapper objectMapper;
+
+    public ChunkedTranscodingService(MinioClient minioClient,
+                                     MinioProperties minioProperties,
+                                     TranscodingProperties transcodingProperties,
+                                     FFmpegRunner ffmpegRunner,
+                                     DashOutputUploader dashOutputUploader,
+                                     DashManifestAssembler manifestAssembler,
+                                     VideoTranscodingService transcodingService,
+                                     VideoQualityPersistenceService qualityPersistenceService,
+                                     TranscodingJobPublisher jobPublisher,
+                                     TranscodeInputResolver inputResolver,
+                                     ObjectMapper objectMapper) {
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.transcodingProperties = transcodingProperties;
+        this.ffmpegRunner = ffmpegRunner;
+        this.dashOutputUploader = dashOutputUploader;
+        this.manifestAssembler = manifestAssembler;
+        this.transcodingService = transcodingService;
+        this.qualityPersistenceService = qualityPersistenceService;
+        this.jobPublisher = jobPublisher;
+        this.inputResolver = inputResolver;
+        this.objectMapper = objectMapper;
+    }
+
+    public void handlePlan(VideoTranscodingEvent event) throws Exception {
+        log.info("Planning chunked transcoding for video {}", event.getVideoId());
+        try {
+            plan(event);
+        } catch (Exception e) {
+            log.error("Failed to plan chunked transcoding for video {}", event.getVideoId(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * The plan job used up its retries, none of the renditions will be encoded.
+     */
+    public void planFailed(VideoTranscodingEvent event) {
+        for (VideoQuality quality : VideoQuality.ladder()) {
+            qualityPersistenceService.markStatus(event.getVideoId(), quality.name, "FAILED");
+        }
+    }
+
+    public void handleChunk(VideoTranscodingEvent event) throws Exception {
+        log.info("Starting chunk {}/{} of video {} quality {} ({}s - {}s)", event.getChunkIndex() + 1, event.getChunkCount(),
+                event.getVideoId(), event.getQuality(), event.getStartSeconds(), event.getEndSeconds());
+        try {
+            // Chunks never write the rendition status themselves, see deriveChunkedStatus
+            qualityPersistenceService.deriveChunkedStatus(event.getVideoId(), event.getQuality());
+            transcodeChunk(event);
+        } catch (Exception e) {
+            log.error("Failed to transcode chunk {} of video {} quality {}", event.getChunkIndex(), event.getVideoId(), event.getQuality(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * A chunk job used up its retries (its ledger row is DEAD), so its rendition cannot be stitched
+     * until the chunk is replayed. The master manifest goes out without the rendition if it was the
+     * last one outstanding.
+     */
+    public void chunkFailed(VideoTranscodingEvent event) {
+        qualityPersistenceService.deriveChunkedStatus(event.getVideoId(), event.getQuality());
+        try {
+            manifestAssembler.assembleIfComplete(event.getVideoId());
+        } catch (Exception e) {
+            log.warn("Failed to assemble the DASH manifest of video {} without quality {}: {}",
+                    event.getVideoId(), event.getQuality(), e.getMessage());
+        }
+    }
+
+    public void handleAudio(VideoTranscodingEvent event) throws Exception {
+        log.info("Starting audio transcoding for chunked video {}", event.getVideoId());
+        try {
+            transcodeAudio(event);
+        } catch (Exception e) {
+            log.error("Failed to transcode audio for video {}", event.getVideoId(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * The audio job used up its retries (its ledger row is DEAD). The renditions have no sound of their
+     * own, so the assembler reports the video as failed instead of waiting for the audio track.
+     */
+    public void audioFailed(VideoTranscodingEvent event) {
+        try {
+            manifestAssembler.assembleIfComplete(event.getVideoId());
+        } catch (Exception e) {
+            log.warn("Failed to check the DASH manifest of video {} after its audio job failed: {}",
+                    event.getVideoId(), e.getMessage());
+        }
+    }
+
+    private void plan(VideoTranscodingEvent event) throws Exception {
+        UUID videoId = event.getVideoId();
+        TranscodingProperties.Chunked chunked = transcodingProperties.getChunked();
+        String sourceUrl = inputResolver.presignedUrl(event.getOriginalObjectKey());
+
+        double duration = probeDuration(sourceUrl, videoId);
+        List<String> qualities = VideoQuality.ladder().stream().map(q -> q.name).toList();
+
+        if (duration < chunked.getMinDurationSeconds()) {
+            log.info("Video {} is {}s long, below the chunking threshold, publishing per-quality jobs", videoId, duration);
+            for (String quality : qualities) {
+                VideoTranscodingEvent qualityEvent = new VideoTranscodingEvent(videoId, event.getOriginalObjectKey(), event.getContentType(), quality);
+                qualityEvent.setSourceSizeBytes(event.getSourceSizeBytes());
+                jobPublisher.publish(qualityEvent);
+            }
+            return;
+        }
+
+        List<Double> boundaries = chooseBoundaries(probeKeyframes(sourceUrl, videoId), duration, chunked.getChunkDurationSeconds());
+        ChunkPlan plan = new ChunkPlan(videoId, duration, boundaries, qualities);
+        writePlan(plan);
+        log.info("Split video {} ({}s) into {} chunks", videoId, duration, plan.chunkCount());
+
+        VideoTranscodingEvent audioEvent = new VideoTranscodingEvent(videoId, event.getOriginalObjectKey(), event.getContentType(),
+                null, VideoTranscodingEvent.JobType.AUDIO);
+        audioEvent.setSourceSizeBytes(event.getSourceSizeBytes());
+        jobPublisher.publish(audioEvent);
+
+        for (String quality : qualities) {
+            for (int i = 0; i < plan.chunkCount(); i++) {
+                VideoTranscodingEvent chunkEvent = new VideoTranscodingEvent(videoId, event.getOriginalObjectKey(), event.getContentType(),
+                        quality, VideoTranscodingEvent.JobType.CHUNK);
+                chunkEvent.setSourceSizeBytes(event.getSourceSizeBytes());
+                chunkEvent.setChunkIndex(i);
+                chunkEvent.setChunkCount(plan.chunkCount());
+                chunkEvent.setStartSeconds(boundaries.get(i));
+                chunkEvent.setEndSeconds(boundaries.get(i + 1));
+                jobPublisher.publish(chunkEvent);
+            }
+        }
+    }
+
+    /**
+     * Picks the first keyframe at or after every chunk-length step, skipping cuts that would leave
+     * a tail shorter than half a chunk.
+     */
+    static List<Double> chooseBoundaries(List<Double> keyframes, double duration, int chunkSeconds) {
+        List<Double> boundaries = new ArrayList<>();
+        boundaries.add(0.0);
+        double target = chunkSeconds;
+        for (double keyframe : keyframes) {
+            if (keyframe < target) {
+                continue;
+            }
+            if (duration - keyframe < chunkSeconds / 2.0) {
+                break;
+            }
+            boundaries.add(keyframe);
+            target = keyframe + chunkSeconds;
+        }
+        boundaries.add(duration);
+        return boundaries;
+    }
+
+    private double probeDuration(String sourceUrl, UUID videoId) throws Exception {
+        List<String> output = ffmpegRunner.capture(Arrays.asList(
+            "ffprobe", "-v", "error",
+            "-show_entries", "format=duration",
+            "-of", "default=noprint_wrappers=1:nokey=1",
+            sourceUrl
+        ), "probe-duration-" + videoId, 5);
+        for (String line : output) {
+            if (!line.isBlank() && !"N/A".equals(line.trim())) {
+                return Double.parseDouble(line.trim());
+            }
+        }
+        throw new IllegalStateException("ffprobe returned no duration for video " + videoId);
+    }
+
+    private List<Double> probeKeyframes(String sourceUrl, UUID videoId) throws Exception {
+        // Packet flags come from the demuxer, so no frame has to be decoded to find the keyframes
+        List<String> output = ffmpegRunner.capture(Arrays.asList(
+            "ffprobe", "-v", "error",
+            "-select_streams", "v:0",
+            "-show_entries", "packet=pts_time,flags",
+            "-of", "csv=p=0",
+            sourceUrl
+        ), "probe-keyframes-" + videoId, 30);
+
+        List<Double> keyframes = new ArrayList<>();
+        for (String line : output) {
+            String[] fields = line.trim().split(",");
+            if (fields.length < 2 || !fields[1].startsWith("K") || "N/A".equals(fields[0])) {
+                continue;
+            }
+            keyframes.add(Double.parseDouble(fields[0]));
+        }
+        keyframes.sort(Comparator.naturalOrder());
+        return keyframes;
+    }
+
+    private void writePlan(ChunkPlan plan) throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(plan);
+        putObject(DashObjectKeys.planKey(plan.getVideoId()), json, "application/json");
+    }
+
+    private void transcodeChunk(VideoTranscodingEvent event) throws Exception {
+        UUID videoId = event.getVideoId();
+        String quality = event.getQuality();
+        VideoQuality videoQuality = VideoQuality.valueOf("Q_" + quality.toUpperCase());
+        double start = event.getStartSeconds();
+        double end = event.getEndSeconds();
+        Path tempOutputDir = null;
+
+        try {
+            tempOutputDir = Files.createTempDirectory("dash-chunk-");
+
+            List<String> command = new ArrayList<>(Arrays.asList(
+                "ffmpeg",
+                // Input seek lands exactly on the planned keyframe, so no frames are decoded and thrown away
+                "-ss", seconds(start),
+                "-i", inputResolver.presignedUrl(event.getOriginalObjectKey()),
+                "-t", seconds(end - start),
+                "-map", "0:v:0",
+                "-an",
+                "-c:v", "libx264",
+                "-b:v", videoQuality.bitrate, "-s:v", videoQuality.scale
+            ));
+            command.addAll(DashCommands.keyframeAlignment());
+            // Keep media timestamps on the source timeline so stitched segments line up
+            command.addAll(Arrays.asList("-output_ts_offset", seconds(start)));
+            command.addAll(DashCommands.dashOutput(tempOutputDir, DashCommands.VIDEO_ONLY_SETS));
+
+            ffmpegRunner.run(command, quality + "#" + event.getChunkIndex(), transcodingProperties.getChunked().getChunkTimeoutMinutes());
+
+            dashOutputUploader.upload(DashObjectKeys.partPrefix(videoId, quality, event.getChunkIndex()), tempOutputDir);
+
+            stitchIfComplete(videoId, quality, event.getChunkCount());
+        } finally {
+            deleteDirectory(tempOutputDir);
+        }
+    }
+
+    private void transcodeAudio(VideoTranscodingEvent event) throws Exception {
+        UUID videoId = event.getVideoId();
+        Path tempOutputDir = null;
+
+        try {
+            tempOutputDir = Files.createTempDirectory("dash-audio-");
+
+            List<String> command = new ArrayList<>(Arrays.asList(
+                "ffmpeg",
+                "-i", inputResolver.presignedUrl(event.getOriginalObjectKey()),
+                "-map", "0:a:0",
+                "-vn",
+                "-c:a", "aac",
+                "-b:a", "128k"
+            ));
+            command.addAll(DashCommands.dashOutput(tempOutputDir, DashCommands.AUDIO_ONLY_SETS));
+
+            ffmpegRunner.run(command, DashObjectKeys.AUDIO + "-" + videoId, transcodingProperties.getChunked().getAudioTimeoutMinutes());
+
+            dashOutputUploader.upload(DashObjectKeys.audioPrefix(videoId), tempOutputDir);
+
+            manifestAssembler.assembleIfComplete(videoId);
+        } finally {
+            deleteDirectory(tempOutputDir);
+        }
+    }
+
+    /**
+     * Stitches a rendition once every chunk has uploaded its manifest. A part's manifest is
+     * uploaded after its segments, so its presence means the part is complete.
+     */
+    private void stitchIfComplete(UUID videoId, String quality, int chunkCount) throws Exception {
+        int finishedParts = 0;
+        long partBytes = 0;
+        Iterable<Result<Item>> objects = minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .prefix(DashObjectKeys.partsPrefix(videoId, quality))
+                .recursive(true)
+                .build());
+        for (Result<Item> result : objects) {
+            Item item = result.get();
+            partBytes += item.size();
+            if (item.objectName().endsWith("/" + DashObjectKeys.MANIFEST_FILE)) {
+                finishedParts++;
+            }
+        }
+
+        if (finishedParts < chunkCount) {
+            log.info("Video {} quality {}: {} of {} chunks done", videoId, quality, finishedParts, chunkCount);
+            return;
+        }
+
+        stitch(videoId, quality, chunkCount);
+        transcodingService.markQualityCompleted(videoId, quality, DashObjectKeys.renditionManifestKey(videoId, quality), partBytes);
+        manifestAssembler.assembleIfComplete(videoId);
+    }
+
+    /**
+     * Renumbers every part's segments into one sequence under the rendition prefix (server-side
+     * copies, run in parallel on the DASH upload pool) and writes a rendition manifest whose timeline is the parts' timelines back to back.
+     */
+    private void stitch(UUID videoId, String quality, int chunkCount) throws Exception {
+        String renditionPrefix = DashObjectKeys.renditionPrefix(videoId, quality);
+
+        Document stitched = null;
+        Element stitchedRepresentation = null;
+        Element stitchedTemplate = null;
+        long timescale = 1;
+        long startTime = 0;
+        long nextNumber = 1;
+        List<Long> durations = new ArrayList<>();
+        Map<String, String> copies = new LinkedHashMap<>();
+
+        for (int i = 0; i < chunkCount; i++) {
+            String partPrefix = DashObjectKeys.partPrefix(videoId, quality, i);
+            Document part = MpdDocuments.parse(readObject(partPrefix + DashObjectKeys.MANIFEST_FILE));
+            Element representation = firstVideoRepresentation(part, partPrefix);
+            Element template = MpdDocuments.ownSegmentTemplate(representation);
+            if (template == null) {
+                throw new IllegalStateException("No SegmentTemplate in " + partPrefix + DashObjectKeys.MANIFEST_FILE);
+            }
+
+            String representationId = representation.getAttribute("id");
+            long partTimescale = MpdDocuments.parseLong(template.getAttribute("timescale"), 1);
+            long partStartNumber = MpdDocuments.parseLong(template.getAttribute("startNumber"), 1);
+            List<Long> partDurations = MpdDocuments.segmentDurations(template);
+
+            if (stitched == null) {
+                stitched = part;
+                stitchedRepresentation = representation;
+                stitchedTemplate = template;
+                timescale = partTimescale;
+                startTime = MpdDocuments.firstSegmentTime(template);
+                String initialization = MpdDocuments.resolveTemplate(template.getAttribute("initialization"), representationId, 0);
+                copies.put(partPrefix + initialization, renditionPrefix + initialization);
+            }
+
+            String media = template.getAttribute("media");
+            String stitchedMedia = stitchedTemplate.getAttribute("media");
+            String stitchedId = stitchedRepresentation.getAttribute("id");
+            for (int k = 0; k < partDurations.size(); k++) {
+                String source = partPrefix + MpdDocuments.resolveTemplate(media, representationId, partStartNumber + k);
+                String target = renditionPrefix + MpdDocuments.resolveTemplate(stitchedMedia, stitchedId, nextNumber++);
+                copies.put(source, target);
+                durations.add(partDurations.get(k) * timescale / partTimescale);
+            }
+        }
+
+        // Segments go first, the rendition manifest must not reference a segment that is not there yet
+        dashOutputUploader.copyObjects(copies);
+
+        stitchedTemplate.setAttribute("startNumber", "1");
+        MpdDocuments.writeTimeline(stitchedTemplate, startTime, durations);
+
+        long totalTicks = durations.stream().mapToLong(Long::longValue).sum();
+        String totalDuration = MpdDocuments.formatDuration((double) totalTicks / timescale);
+        Element mpd = stitched.getDocumentElement();
+        mpd.setAttribute("mediaPresentationDuration", totalDuration);
+        for (Element period : MpdDocuments.children(mpd, "Period")) {
+            if (period.hasAttribute("duration")) {
+                period.setAttribute("duration", totalDuration);
+            }
+        }
+
+        putObject(renditionPrefix + DashObjectKeys.MANIFEST_FILE, MpdDocuments.serialize(stitched), "application/dash+xml");
+        log.info("Stitched {} chunks ({} segments) of video {} quality {}", chunkCount, durations.size(), videoId, quality);
+    }
+
+    private Element firstVideoRepresentation(Document document, String partPrefix) {
+        for (Element adaptationSet : MpdDocuments.adaptationSets(document, "video")) {
+            Element representation = MpdDocuments.firstChild(adaptationSet, "Representation");
+            if (representation != null) {
+                return representation;
+            }
+        }
+        throw new IllegalStateException("No video representation in " + partPrefix + DashObjectKeys.MANIFEST_FILE);
+    }
+
+    private byte[] readObject(String objectKey) throws Exception {
+        GetObjectArgs getArgs = GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build();
+        try (InputStream inputStream = minioClient.getObject(getArgs)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private void putObject(String objectKey, byte[] content, String contentType) throws Exception {
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .stream(new ByteArrayInputStream(content), content.length, -1)
+                .contentType(contentType)
+                .build());
+    }
+
+    private String seconds(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private void deleteDirectory(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (Exception e) {
+                    log.warn("Failed to delete temp file: {}", path, e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to delete temp directory {}", directory, e);
+        }
+    }
+}
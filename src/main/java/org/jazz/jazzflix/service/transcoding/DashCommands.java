@@ -0,0 +1,44 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ffmpeg arguments shared by every DASH encode, so renditions and chunks produced by
+ * different jobs segment identically.
+ */
+public final class DashCommands {
+
+    public static final int SEGMENT_SECONDS = 10;
+
+    public static final String VIDEO_AND_AUDIO_SETS = "id=0,streams=v id=1,streams=a";
+    public static final String VIDEO_ONLY_SETS = "id=0,streams=v";
+    public static final String AUDIO_ONLY_SETS = "id=0,streams=a";
+
+    private DashCommands() {
+    }
+
+    /**
+     * Force a keyframe at every segment boundary so representations stay switchable.
+     */
+    public static List<String> keyframeAlignment() {
+        return Arrays.asList(
+            "-sc_threshold", "0",
+            "-force_key_frames", "expr:gte(t,n_forced*" + SEGMENT_SECONDS + ")"
+        );
+    }
+
+    public static List<String> dashOutput(Path outputDir, String adaptationSets) {
+        return Arrays.asList(
+            "-f", "dash",
+            "-seg_duration", String.valueOf(SEGMENT_SECONDS),
+            "-use_template", "1",
+            "-use_timeline", "1",
+            "-init_seg_name", "init-$RepresentationID$.m4s",
+            "-media_seg_name", "chunk-$RepresentationID$-$Number$.m4s",
+            "-adaptation_sets", adaptationSets,
+            outputDir.resolve(DashObjectKeys.MANIFEST_FILE).toString()
+        );
+    }
+}
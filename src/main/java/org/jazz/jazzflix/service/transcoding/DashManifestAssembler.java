@@ -0,0 +1,240 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import io.minio.GetObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.entity.video.TblVideoQuality;
+import org.jazz.jazzflix.repository.video.TblTranscodingJobRepository;
+import org.jazz.jazzflix.repository.video.TblVideoQualityRepository;
+import org.jazz.jazzflix.service.VideoTranscodingService.VideoQuality;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Merges the single-rendition manifests written by per-quality jobs into one multi-bitrate MPD.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashManifestAssembler {
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final TblVideoQualityRepository qualityRepository;
+    private final TblTranscodingJobRepository jobRepository;
+    private final RepresentationCatalog representationCatalog;
+
+    /**
+     * Writes videos/{id}/dash/manifest.mpd from the COMPLETED renditions once no expected rendition
+     * of the video is PENDING or PROCESSING any more. FAILED renditions are left out; when a retry
+     * completes one, its job calls this again and the manifest is rewritten with it.
+     * Safe to call from every finishing job: the output only depends on the completed renditions,
+     * so concurrent callers write the same manifest.
+     *
+     * @return true if the manifest was written
+     */
+    public boolean assembleIfComplete(UUID videoId) throws Exception {
+        Map<String, Integer> ladderOrder = ladderOrder();
+        List<TblVideoQuality> renditions = qualityRepository.findByVideoId(videoId).stream()
+                .filter(q -> ladderOrder.containsKey(q.getQuality()))
+                .sorted(Comparator.comparing(q -> ladderOrder.get(q.getQuality())))
+                .toList();
+
+        if (renditions.isEmpty()) {
+            return false;
+        }
+        long pending = renditions.stream()
+                .filter(q -> "PENDING".equals(q.getStatus()) || "PROCESSING".equals(q.getStatus()))
+                .count();
+        if (pending > 0) {
+            log.info("Manifest for video {} not assembled yet, {} of {} renditions still pending", videoId, pending, renditions.size());
+            return false;
+        }
+        List<TblVideoQuality> completed = renditions.stream()
+                .filter(q -> "COMPLETED".equals(q.getStatus()))
+                .toList();
+        if (completed.isEmpty()) {
+            log.warn("Manifest for video {} not assembled, none of its {} renditions completed", videoId, renditions.size());
+            return false;
+        }
+        if (completed.size() < renditions.size()) {
+            log.warn("Assembling the manifest of video {} from {} of {} renditions, the others failed",
+                    videoId, completed.size(), renditions.size());
+        }
+
+        String masterKey = DashObjectKeys.masterManifestKey(videoId);
+        if (completed.stream().allMatch(q -> masterKey.equals(q.getObjectKey()))) {
+            // Ladder jobs already write a combined manifest
+            return false;
+        }
+
+        // Chunked videos get their audio from a separate job instead of from the renditions
+        byte[] audioManifest = readObjectIfExists(DashObjectKeys.audioManifestKey(videoId));
+        if (audioManifest == null && readObjectIfExists(DashObjectKeys.planKey(videoId)) != null) {
+            boolean audioDead = jobRepository.findByVideoIdAndJobKey(videoId, DashObjectKeys.AUDIO)
+                    .filter(job -> "DEAD".equals(job.getStatus()))
+                    .isPresent();
+            if (audioDead) {
+                log.error("Manifest for video {} not assembled, its audio job failed and has to be replayed from the dead-letter topic", videoId);
+            } else {
+                log.info("Manifest for video {} not assembled yet, audio track still pending", videoId);
+            }
+            return false;
+        }
+
+        Document master = null;
+        Element masterVideoSet = null;
+        // Every per-quality rendition carries the audio track, the highest completed one supplies it
+        Document audioSource = null;
+        String audioPrefix = null;
+        for (TblVideoQuality rendition : completed) {
+            Document document = MpdDocuments.parse(readObject(rendition.getObjectKey()));
+            String pathPrefix = rendition.getQuality().toLowerCase() + "/";
+
+            List<Element> videoSets = MpdDocuments.adaptationSets(document, "video");
+            if (videoSets.isEmpty()) {
+                throw new IllegalStateException("No video adaptation set in " + rendition.getObjectKey());
+            }
+            if (audioSource == null && !MpdDocuments.adaptationSets(document, "audio").isEmpty()) {
+                audioSource = document;
+                audioPrefix = pathPrefix;
+            }
+
+            if (master == null) {
+                master = document;
+                masterVideoSet = videoSets.get(0);
+                for (Element representation : MpdDocuments.children(masterVideoSet, "Representation")) {
+                    MpdDocuments.relocate(representation, pathPrefix);
+                    representation.setAttribute("id", rendition.getQuality());
+                }
+                removeChildren(masterVideoSet, "SegmentTemplate");
+                continue;
+            }
+
+            for (Element representation : MpdDocuments.children(videoSets.get(0), "Representation")) {
+                MpdDocuments.relocate(representation, pathPrefix);
+                representation.setAttribute("id", rendition.getQuality());
+                masterVideoSet.appendChild(master.importNode(representation, true));
+            }
+        }
+
+        if (audioManifest != null) {
+            useAudio(master, masterVideoSet, MpdDocuments.parse(audioManifest), DashObjectKeys.AUDIO + "/");
+        } else if (audioSource != null) {
+            useAudio(master, masterVideoSet, audioSource, audioPrefix);
+        } else {
+            // A master without sound would look fine to players, leave the video unpublished instead
+            log.error("Manifest for video {} not assembled, none of its completed renditions carries audio", videoId);
+            return false;
+        }
+
+        widenVideoSetLimits(masterVideoSet);
+
+        byte[] manifest = MpdDocuments.serialize(master);
+        PutObjectArgs putArgs = PutObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(masterKey)
+                .stream(new ByteArrayInputStream(manifest), manifest.length, -1)
+                .contentType("application/dash+xml")
+                .build();
+        minioClient.putObject(putArgs);
+
+        log.info("Assembled DASH manifest {} from {} renditions", masterKey, completed.size());
+
+        try {
+            representationCatalog.index(videoId, manifest);
+        } catch (Exception e) {
+            // Not fatal, the manifest is indexed from MinIO on its first request
+            log.warn("Failed to index the DASH manifest of video {}: {}", videoId, e.getMessage());
+        }
+        return true;
+    }
+
+    private byte[] readObject(String objectKey) throws Exception {
+        GetObjectArgs getArgs = GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build();
+        try (InputStream inputStream = minioClient.getObject(getArgs)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private byte[] readObjectIfExists(String objectKey) throws Exception {
+        try {
+            return readObject(objectKey);
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Makes the audio adaptation sets of the source, under pathPrefix, the only ones of the master.
+     */
+    private void useAudio(Document master, Element masterVideoSet, Document source, String pathPrefix) {
+        List<Element> audioSets = MpdDocuments.adaptationSets(source, "audio");
+        for (Element audioSet : audioSets) {
+            for (Element representation : MpdDocuments.children(audioSet, "Representation")) {
+                MpdDocuments.relocate(representation, pathPrefix);
+            }
+            removeChildren(audioSet, "SegmentTemplate");
+        }
+        if (source == master) {
+            return;
+        }
+
+        Element period = (Element) masterVideoSet.getParentNode();
+        for (Element existing : MpdDocuments.adaptationSets(master, "audio")) {
+            period.removeChild(existing);
+        }
+        for (Element audioSet : audioSets) {
+            Element imported = (Element) master.importNode(audioSet, true);
+            imported.setAttribute("id", String.valueOf(MpdDocuments.children(period, "AdaptationSet").size()));
+            period.appendChild(imported);
+        }
+    }
+
+    private void widenVideoSetLimits(Element videoSet) {
+        long maxWidth = 0;
+        long maxHeight = 0;
+        for (Element representation : MpdDocuments.children(videoSet, "Representation")) {
+            maxWidth = Math.max(maxWidth, MpdDocuments.parseLong(representation.getAttribute("width"), 0));
+            maxHeight = Math.max(maxHeight, MpdDocuments.parseLong(representation.getAttribute("height"), 0));
+        }
+        if (videoSet.hasAttribute("maxWidth") && maxWidth > 0) {
+            videoSet.setAttribute("maxWidth", String.valueOf(maxWidth));
+        }
+        if (videoSet.hasAttribute("maxHeight") && maxHeight > 0) {
+            videoSet.setAttribute("maxHeight", String.valueOf(maxHeight));
+        }
+    }
+
+    private void removeChildren(Element parent, String localName) {
+        for (Node child : new ArrayList<Node>(MpdDocuments.children(parent, localName))) {
+            parent.removeChild(child);
+        }
+    }
+
+    private static Map<String, Integer> ladderOrder() {
+        List<VideoQuality> ladder = VideoQuality.ladder();
+        return ladder.stream().collect(Collectors.toMap(q -> q.name, ladder::indexOf, (a, b) -> a));
+    }
+}
@@ -0,0 +1,62 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import java.util.UUID;
+
+/**
+ * Object key layout for DASH output in MinIO.
+ *
+ * <pre>
+ * videos/{videoId}/dash/manifest.mpd            multi-bitrate manifest served to players
+ * videos/{videoId}/dash/{quality}/manifest.mpd  single rendition manifest written by its own job
+ * videos/{videoId}/dash/{quality}/init-*.m4s, chunk-*-*.m4s
+ *
+ * chunked transcoding only:
+ * videos/{videoId}/dash/plan.json                  keyframe-aligned split of the source
+ * videos/{videoId}/dash/{quality}/parts/{index}/   DASH output of one chunk before stitching
+ * videos/{videoId}/dash/audio/                     audio track encoded once for all renditions
+ * </pre>
+ */
+public final class DashObjectKeys {
+
+    public static final String MANIFEST_FILE = "manifest.mpd";
+    public static final String AUDIO = "audio";
+
+    private DashObjectKeys() {
+    }
+
+    public static String dashPrefix(UUID videoId) {
+        return "videos/" + videoId + "/dash/";
+    }
+
+    public static String masterManifestKey(UUID videoId) {
+        return dashPrefix(videoId) + MANIFEST_FILE;
+    }
+
+    public static String renditionPrefix(UUID videoId, String quality) {
+        return dashPrefix(videoId) + quality.toLowerCase() + "/";
+    }
+
+    public static String renditionManifestKey(UUID videoId, String quality) {
+        return renditionPrefix(videoId, quality) + MANIFEST_FILE;
+    }
+
+    public static String planKey(UUID videoId) {
+        return dashPrefix(videoId) + "plan.json";
+    }
+
+    public static String partsPrefix(UUID videoId, String quality) {
+        return renditionPrefix(videoId, quality) + "parts/";
+    }
+
+    public static String partPrefix(UUID videoId, String quality, int chunkIndex) {
+        return partsPrefix(videoId, quality) + chunkIndex + "/";
+    }
+
+    public static String audioPrefix(UUID videoId) {
+        return dashPrefix(videoId) + AUDIO + "/";
+    }
+
+    public static String audioManifestKey(UUID videoId) {
+        return audioPrefix(videoId) + MANIFEST_FILE;
+    }
+}
@@ -0,0 +1,242 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Uploads an ffmpeg DASH output directory to MinIO. Segments go up in parallel on a bounded
+ * pool shared by all jobs, each with its own retries. Manifests only go up once every segment
+ * made it, so a visible manifest never references a segment that is not there, and a failed
+ * segment fails the whole upload instead of leaving a hole.
+ */
+@Slf4j
+@Component
+public class DashOutputUploader {
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final TranscodingProperties.Upload uploadProperties;
+    private final ExecutorService uploadExecutor;
+
+    public DashOutputUploader(MinioClient minioClient,
+                              MinioProperties minioProperties,
+                              TranscodingProperties transcodingProperties) {
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.uploadProperties = transcodingProperties.getUpload();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadProperties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "dash-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public UploadReport upload(String basePath, Path outputDir) throws Exception {
+        return upload(basePath, outputDir, Set.of());
+    }
+
+    /**
+     * Uploads every file of the directory except the given (already published) file names.
+     * Throws if any file still fails after its retries.
+     */
+    public UploadReport upload(String basePath, Path outputDir, Set<String> skip) throws Exception {
+        List<Path> segments = new ArrayList<>();
+        List<Path> manifests = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(outputDir)) {
+            walk.filter(Files::isRegularFile)
+                    .filter(path -> !skip.contains(path.getFileName().toString()))
+                    .forEach(path -> (path.getFileName().toString().endsWith(".mpd") ? manifests : segments).add(path));
+        }
+
+        long start = System.nanoTime();
+        long bytes = uploadFiles(basePath, segments).bytes();
+        for (Path manifest : manifests) {
+            uploadFile(basePath + manifest.getFileName(), manifest);
+            bytes += Files.size(manifest);
+        }
+        UploadReport report = new UploadReport(segments.size() + manifests.size(), bytes, System.nanoTime() - start);
+        log.info("Uploaded {} under {}", report, basePath);
+        return report;
+    }
+
+    /**
+     * Uploads the files in parallel and waits for all of them. Throws if any failed after its retries.
+     */
+    public UploadReport uploadFiles(String basePath, List<Path> files) throws Exception {
+        long start = System.nanoTime();
+        List<CompletableFuture<Long>> uploads = new ArrayList<>();
+        for (Path file : files) {
+            uploads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    uploadFile(basePath + file.getFileName(), file);
+                    return Files.size(file);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, uploadExecutor));
+        }
+
+        long bytes = awaitAll(uploads, "DASH files failed to upload under " + basePath);
+        return new UploadReport(files.size(), bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Server-side copies, source key to target key, in parallel on the upload pool. Waits for all
+     * of them and throws if any failed after its retries.
+     */
+    public void copyObjects(Map<String, String> copies) throws Exception {
+        List<CompletableFuture<Long>> tasks = new ArrayList<>();
+        for (Map.Entry<String, String> copy : copies.entrySet()) {
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    copyObject(copy.getKey(), copy.getValue());
+                    return 0L;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, uploadExecutor));
+        }
+        awaitAll(tasks, "DASH objects failed to copy");
+    }
+
+    private long awaitAll(List<CompletableFuture<Long>> tasks, String failureMessage) throws IOException {
+        long bytes = 0;
+        List<Throwable> failures = new ArrayList<>();
+        for (CompletableFuture<Long> task : tasks) {
+            try {
+                bytes += task.join();
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        if (!failures.isEmpty()) {
+            IOException failure = new IOException(failures.size() + " of " + tasks.size() + " " + failureMessage, failures.get(0));
+            failures.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
+        return bytes;
+    }
+
+    public void uploadFile(String objectKey, Path filePath) throws Exception {
+        withRetry(objectKey, () -> {
+            long size = Files.size(filePath);
+            try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
+                PutObjectArgs putArgs = PutObjectArgs.builder()
+                        .bucket(minioProperties.getBucket())
+                        .object(objectKey)
+                        .stream(fis, size, -1)
+                        .contentType(contentType(objectKey))
+                        .build();
+
+                minioClient.putObject(putArgs);
+            }
+        });
+        log.debug("Uploaded DASH file: {}", objectKey);
+    }
+
+    public void uploadBytes(String objectKey, byte[] data) throws Exception {
+        withRetry(objectKey, () -> minioClient.putObject(PutObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .stream(new ByteArrayInputStream(data), data.length, -1)
+                .contentType(contentType(objectKey))
+                .build()));
+        log.debug("Uploaded DASH file: {}", objectKey);
+    }
+
+    public void copyObject(String sourceKey, String targetKey) throws Exception {
+        withRetry(targetKey, () -> minioClient.copyObject(CopyObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(targetKey)
+                .source(CopySource.builder()
+                        .bucket(minioProperties.getBucket())
+                        .object(sourceKey)
+                        .build())
+                .build()));
+        log.debug("Copied DASH file {} to {}", sourceKey, targetKey);
+    }
+
+    private void withRetry(String objectKey, PutAction action) throws Exception {
+        long backoff = uploadProperties.getRetryBackoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return;
+            } catch (Exception e) {
+                if (attempt >= uploadProperties.getMaxAttempts()) {
+                    log.error("Failed to upload DASH file {} after {} attempts", objectKey, attempt, e);
+                    throw e;
+                }
+                log.warn("Upload of {} failed (attempt {}/{}), retrying in {} ms: {}",
+                        objectKey, attempt, uploadProperties.getMaxAttempts(), backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    private interface PutAction {
+        void run() throws Exception;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+        try {
+            if (!uploadExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                uploadExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            uploadExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static String contentType(String fileName) {
+        if (fileName.endsWith(".mpd")) {
+            return "application/dash+xml";
+        } else if (fileName.endsWith(".m4s")) {
+            return "video/iso.segment";
+        }
+        return "application/octet-stream";
+    }
+
+    public record UploadReport(int files, long bytes, long elapsedNanos) {
+
+        public double bytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d files, %.1f MB in %d ms (%.1f MB/s)",
+                    files, bytes / 1_048_576.0, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), bytesPerSecond() / 1_048_576.0);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs ffmpeg / ffprobe processes with output draining and a hard timeout.
+ */
+@Slf4j
+@Component
+public class FFmpegRunner {
+
+    /**
+     * Run a command, logging its combined output line by line.
+     */
+    public void run(List<String> command, String label, long timeoutMinutes) throws Exception {
+        run(command, label, timeoutMinutes, process -> { });
+    }
+
+    /**
+     * Run a command and hand the started process to onStart, e.g. to feed its stdin.
+     */
+    public void run(List<String> command, String label, long timeoutMinutes, Consumer<Process> onStart) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        onStart.accept(process);
+
+        // Consume process output to avoid buffer deadlock
+        Thread outputReader = drain(process, label, null);
+
+        try {
+            // Wait for completion with timeout to prevent indefinite hang
+            waitFor(process, label, timeoutMinutes);
+            log.info("FFmpeg DASH creation for {} completed successfully", label);
+        } finally {
+            close(process, outputReader);
+        }
+    }
+
+    /**
+     * Run a command (typically ffprobe) and return its stdout lines; stderr is only logged.
+     */
+    public List<String> capture(List<String> command, String label, long timeoutMinutes) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        Process process = pb.start();
+
+        List<String> lines = new ArrayList<>();
+        Thread outputReader = drain(process, label, lines);
+        Thread errorReader = new Thread(() -> {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    log.warn("{}: {}", label, line);
+                }
+            } catch (Exception e) {
+                log.warn("Error reading stderr for {}", label, e);
+            }
+        }, "ffprobe-error-reader-" + label);
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        try {
+            waitFor(process, label, timeoutMinutes);
+            outputReader.join(5000);
+            synchronized (lines) {
+                return new ArrayList<>(lines);
+            }
+        } finally {
+            try {
+                errorReader.join(5000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            close(process, outputReader);
+        }
+    }
+
+    private Thread drain(Process process, String label, List<String> sink) {
+        Thread outputReader = new Thread(() -> {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (sink == null) {
+                        log.info("ffmpeg[{}]: {}", label, line);
+                    } else {
+                        synchronized (sink) {
+                            sink.add(line);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Error reading ffmpeg output for {}", label, e);
+            }
+        }, "ffmpeg-output-reader-" + label);
+        outputReader.setDaemon(true);
+        outputReader.start();
+        return outputReader;
+    }
+
+    private void waitFor(Process process, String label, long timeoutMinutes) throws Exception {
+        boolean finished;
+        try {
+            finished = process.waitFor(timeoutMinutes, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            // Shutdown gave up waiting on this job, do not leave ffmpeg running after the JVM
+            process.destroyForcibly();
+            throw e;
+        }
+        if (!finished) {
+            process.destroyForcibly();
+            throw new RuntimeException("FFmpeg timed out for " + label + " and was killed");
+        }
+
+        int exitCode = process.exitValue();
+        if (exitCode != 0) {
+            throw new RuntimeException("FFmpeg failed for " + label + " with exit code: " + exitCode);
+        }
+    }
+
+    private void close(Process process, Thread outputReader) {
+        // Ensure reader thread finishes and process streams are closed
+        try {
+            outputReader.join(5000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            process.getInputStream().close();
+        } catch (Exception ignored) {}
+        try {
+            process.getErrorStream().close();
+        } catch (Exception ignored) {}
+        try {
+            process.getOutputStream().close();
+        } catch (Exception ignored) {}
+    }
+}
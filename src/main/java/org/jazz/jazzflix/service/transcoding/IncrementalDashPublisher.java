@@ -0,0 +1,206 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a DASH output directory to MinIO while ffmpeg is still writing it.
+ *
+ * ffmpeg rewrites the manifest after every finished segment, so a segment listed in the local
+ * SegmentTimeline is closed and safe to upload. Each manifest change uploads the newly closed
+ * segments (and init segments) first and then the manifest itself, which stays type="dynamic"
+ * until ffmpeg writes the final static one on exit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IncrementalDashPublisher {
+
+    private static final long POLL_SECONDS = 2;
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final DashOutputUploader dashOutputUploader;
+
+    /**
+     * Starts watching outputDir. Call {@link Publication#finish()} once ffmpeg exited successfully,
+     * and always close the publication.
+     */
+    public Publication start(String basePath, Path outputDir) throws IOException {
+        Publication publication = new Publication(basePath, outputDir);
+        publication.thread.start();
+        return publication;
+    }
+
+    public class Publication implements AutoCloseable {
+
+        private final String basePath;
+        private final Path outputDir;
+        private final WatchService watchService;
+        private final Thread thread;
+        // Segment file names already in MinIO
+        private final Set<String> published = ConcurrentHashMap.newKeySet();
+        private volatile boolean running = true;
+        private boolean manifestPublished;
+        private boolean finished;
+        private byte[] lastManifest;
+
+        private Publication(String basePath, Path outputDir) throws IOException {
+            this.basePath = basePath;
+            this.outputDir = outputDir;
+            this.watchService = FileSystems.getDefault().newWatchService();
+            outputDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            this.thread = new Thread(this::watch, "dash-publisher-" + outputDir.getFileName());
+            this.thread.setDaemon(true);
+        }
+
+        private void watch() {
+            while (running) {
+                try {
+                    WatchKey key = watchService.poll(POLL_SECONDS, TimeUnit.SECONDS);
+                    if (key == null) {
+                        continue;
+                    }
+                    boolean manifestChanged = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        // OVERFLOW carries no file name, treat it as a manifest change
+                        Object context = event.context();
+                        if (context == null || DashObjectKeys.MANIFEST_FILE.equals(context.toString())) {
+                            manifestChanged = true;
+                        }
+                    }
+                    key.reset();
+                    if (manifestChanged) {
+                        publishClosedSegments();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    // Retried on the next manifest change, finish() picks up anything still missing
+                    log.warn("Incremental DASH publish of {} failed: {}", basePath, e.getMessage());
+                }
+            }
+        }
+
+        private synchronized void publishClosedSegments() throws Exception {
+            Path manifestPath = outputDir.resolve(DashObjectKeys.MANIFEST_FILE);
+            if (!Files.exists(manifestPath)) {
+                return;
+            }
+            byte[] manifest = Files.readAllBytes(manifestPath);
+            if (Arrays.equals(manifest, lastManifest)) {
+                return;
+            }
+            Document document;
+            try {
+                document = MpdDocuments.parse(manifest);
+            } catch (Exception e) {
+                // Caught mid-write, the rename that completes it raises another event
+                return;
+            }
+
+            List<Path> closed = new ArrayList<>();
+            for (String fileName : listedFiles(document)) {
+                Path file = outputDir.resolve(fileName);
+                if (!published.contains(fileName) && Files.exists(file)) {
+                    closed.add(file);
+                }
+            }
+            dashOutputUploader.uploadFiles(basePath, closed);
+            closed.forEach(file -> published.add(file.getFileName().toString()));
+
+            dashOutputUploader.uploadBytes(basePath + DashObjectKeys.MANIFEST_FILE, manifest);
+            lastManifest = manifest;
+            manifestPublished = true;
+        }
+
+        /**
+         * Init and media segment names of every representation the manifest currently lists.
+         */
+        private List<String> listedFiles(Document document) {
+            List<String> files = new ArrayList<>();
+            for (Element representation : MpdDocuments.descendants(document, "Representation")) {
+                Element template = MpdDocuments.ownSegmentTemplate(representation);
+                if (template == null) {
+                    continue;
+                }
+                String representationId = representation.getAttribute("id");
+                String initialization = template.getAttribute("initialization");
+                if (!initialization.isEmpty()) {
+                    files.add(MpdDocuments.resolveTemplate(initialization, representationId, 0));
+                }
+                String media = template.getAttribute("media");
+                long startNumber = MpdDocuments.parseLong(template.getAttribute("startNumber"), 1);
+                int count = MpdDocuments.segmentDurations(template).size();
+                for (long number = startNumber; number < startNumber + count; number++) {
+                    files.add(MpdDocuments.resolveTemplate(media, representationId, number));
+                }
+            }
+            return files;
+        }
+
+        /**
+         * Uploads whatever the watcher has not published yet, then the final static manifest.
+         */
+        public void finish() throws Exception {
+            stop();
+            synchronized (this) {
+                dashOutputUploader.upload(basePath, outputDir, published);
+                finished = true;
+            }
+            log.info("Published {} DASH segments incrementally under {}", published.size(), basePath);
+        }
+
+        private void stop() throws InterruptedException {
+            running = false;
+            thread.join(TimeUnit.SECONDS.toMillis(POLL_SECONDS * 2));
+        }
+
+        @Override
+        public void close() {
+            try {
+                stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Failed to close watch service for {}", outputDir, e);
+            }
+            if (!finished && manifestPublished) {
+                // Do not leave a live manifest behind that will never advance again
+                try {
+                    minioClient.removeObject(RemoveObjectArgs.builder()
+                            .bucket(minioProperties.getBucket())
+                            .object(basePath + DashObjectKeys.MANIFEST_FILE)
+                            .build());
+                } catch (Exception e) {
+                    log.warn("Failed to remove unfinished manifest under {}", basePath, e);
+                }
+            }
+        }
+    }
+}
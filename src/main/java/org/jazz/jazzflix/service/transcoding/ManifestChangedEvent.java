@@ -0,0 +1,9 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import java.util.UUID;
+
+/**
+ * Published once the TBL_VIDEO_REPRESENTATION rows of a video have been replaced and committed.
+ */
+public record ManifestChangedEvent(UUID videoId) {
+}
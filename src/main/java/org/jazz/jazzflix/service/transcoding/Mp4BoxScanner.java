@@ -0,0 +1,79 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the top-level boxes of an ISO BMFF (MP4 / MOV) file to find out whether it can be
+ * read front to back, i.e. whether the moov box comes before the media data.
+ */
+public final class Mp4BoxScanner {
+
+    public enum Layout {
+        // Not an ISO BMFF file, ffmpeg reads it sequentially anyway
+        NOT_MP4,
+        // moov before mdat, or fragmented: readable from a non-seekable stream
+        STREAMABLE,
+        // mdat before moov: the reader has to seek to the end first
+        NEEDS_SEEK,
+        // Ran out of header bytes before reaching moov or mdat
+        UNKNOWN
+    }
+
+    /**
+     * Reads up to length bytes at offset; may return fewer at the end of the data.
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        byte[] read(long offset, int length) throws Exception;
+    }
+
+    private static final int MAX_BOXES = 32;
+
+    private Mp4BoxScanner() {
+    }
+
+    public static Layout scan(RangeReader reader, long totalSize) throws Exception {
+        long offset = 0;
+        for (int i = 0; i < MAX_BOXES && offset + 8 <= totalSize; i++) {
+            byte[] header = reader.read(offset, 16);
+            if (header == null || header.length < 8) {
+                return Layout.UNKNOWN;
+            }
+            long size = readUInt32(header, 0);
+            String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+
+            if (i == 0 && !"ftyp".equals(type)) {
+                return Layout.NOT_MP4;
+            }
+            if ("moov".equals(type) || "moof".equals(type)) {
+                return Layout.STREAMABLE;
+            }
+            if ("mdat".equals(type)) {
+                return Layout.NEEDS_SEEK;
+            }
+
+            if (size == 1) {
+                // 64-bit largesize follows the type
+                if (header.length < 16) {
+                    return Layout.UNKNOWN;
+                }
+                size = (readUInt32(header, 8) << 32) | readUInt32(header, 12);
+            } else if (size == 0) {
+                // Box extends to the end of the file
+                return Layout.UNKNOWN;
+            }
+            if (size < 8) {
+                return Layout.UNKNOWN;
+            }
+            offset += size;
+        }
+        return Layout.UNKNOWN;
+    }
+
+    private static long readUInt32(byte[] bytes, int offset) {
+        return ((long) (bytes[offset] & 0xff) << 24)
+                | ((long) (bytes[offset + 1] & 0xff) << 16)
+                | ((long) (bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,240 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Small DOM helpers for reading and rewriting the MPD files produced by ffmpeg's dash muxer.
+ */
+public final class MpdDocuments {
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\$Number(%0\\d+d)?\\$");
+
+    private MpdDocuments() {
+    }
+
+    public static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new ByteArrayInputStream(xml));
+    }
+
+    public static Document create() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().newDocument();
+    }
+
+    public static byte[] serialize(Document document) throws Exception {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        Transformer transformer = factory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.setOutputProperty(OutputKeys.INDENT, "no");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    public static List<Element> children(Element parent, String localName) {
+        List<Element> result = new ArrayList<>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element element && localName.equals(element.getLocalName())) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    public static Element firstChild(Element parent, String localName) {
+        List<Element> found = children(parent, localName);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public static List<Element> descendants(Document document, String localName) {
+        List<Element> result = new ArrayList<>();
+        NodeList nodes = document.getElementsByTagNameNS("*", localName);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            result.add((Element) nodes.item(i));
+        }
+        return result;
+    }
+
+    /**
+     * Adaptation sets of the first period whose content type (or mime type) matches, e.g. "video" or "audio".
+     */
+    public static List<Element> adaptationSets(Document document, String contentType) {
+        List<Element> result = new ArrayList<>();
+        for (Element adaptationSet : descendants(document, "AdaptationSet")) {
+            String type = adaptationSet.getAttribute("contentType");
+            if (type.isEmpty()) {
+                String mimeType = adaptationSet.getAttribute("mimeType");
+                if (mimeType.isEmpty()) {
+                    Element representation = firstChild(adaptationSet, "Representation");
+                    mimeType = representation != null ? representation.getAttribute("mimeType") : "";
+                }
+                type = mimeType.contains("/") ? mimeType.substring(0, mimeType.indexOf('/')) : mimeType;
+            }
+            if (contentType.equals(type)) {
+                result.add(adaptationSet);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the SegmentTemplate that applies to a representation, moving an adaptation-set level
+     * template down onto the representation so it can be rewritten per representation.
+     */
+    public static Element ownSegmentTemplate(Element representation) {
+        Element template = firstChild(representation, "SegmentTemplate");
+        if (template != null) {
+            return template;
+        }
+        Element adaptationSet = (Element) representation.getParentNode();
+        Element shared = firstChild(adaptationSet, "SegmentTemplate");
+        if (shared == null) {
+            return null;
+        }
+        template = (Element) shared.cloneNode(true);
+        representation.insertBefore(template, representation.getFirstChild());
+        return template;
+    }
+
+    /**
+     * Resolves $RepresentationID$ against the representation's current id and prefixes the
+     * initialization and media paths, so the representation can be renamed and relocated.
+     */
+    public static void relocate(Element representation, String pathPrefix) {
+        Element template = ownSegmentTemplate(representation);
+        if (template == null) {
+            return;
+        }
+        String representationId = representation.getAttribute("id");
+        for (String attribute : new String[]{"initialization", "media"}) {
+            String value = template.getAttribute(attribute);
+            if (!value.isEmpty()) {
+                template.setAttribute(attribute, pathPrefix + value.replace("$RepresentationID$", representationId));
+            }
+        }
+    }
+
+    /**
+     * Resolves a SegmentTemplate media/initialization pattern for one representation and segment number,
+     * including printf-style widths such as $Number%05d$.
+     */
+    public static String resolveTemplate(String pattern, String representationId, long number) {
+        Matcher matcher = NUMBER_PATTERN.matcher(pattern.replace("$RepresentationID$", representationId));
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String format = matcher.group(1) != null ? matcher.group(1) : "%d";
+            matcher.appendReplacement(result, Matcher.quoteReplacement(String.format(Locale.ROOT, format, number)));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Segment durations of a SegmentTemplate's SegmentTimeline with repeat counts expanded.
+     */
+    public static List<Long> segmentDurations(Element template) {
+        List<Long> durations = new ArrayList<>();
+        Element timeline = firstChild(template, "SegmentTimeline");
+        if (timeline == null) {
+            return durations;
+        }
+        for (Element segment : children(timeline, "S")) {
+            long duration = Long.parseLong(segment.getAttribute("d"));
+            long repeat = segment.hasAttribute("r") ? Long.parseLong(segment.getAttribute("r")) : 0;
+            for (long i = 0; i <= repeat; i++) {
+                durations.add(duration);
+            }
+        }
+        return durations;
+    }
+
+    public static long firstSegmentTime(Element template) {
+        Element timeline = firstChild(template, "SegmentTimeline");
+        Element first = timeline != null ? firstChild(timeline, "S") : null;
+        return first != null && first.hasAttribute("t") ? Long.parseLong(first.getAttribute("t")) : 0;
+    }
+
+    /**
+     * Replaces the template's SegmentTimeline with contiguous segments starting at startTime,
+     * folding runs of equal durations into repeat counts.
+     */
+    public static void writeTimeline(Element template, long startTime, List<Long> durations) {
+        for (Element existing : children(template, "SegmentTimeline")) {
+            template.removeChild(existing);
+        }
+        Element timeline = createElement(template, "SegmentTimeline");
+        template.appendChild(timeline);
+
+        int i = 0;
+        while (i < durations.size()) {
+            long duration = durations.get(i);
+            int run = 1;
+            while (i + run < durations.size() && durations.get(i + run) == duration) {
+                run++;
+            }
+            Element segment = createElement(template, "S");
+            if (i == 0) {
+                segment.setAttribute("t", String.valueOf(startTime));
+            }
+            segment.setAttribute("d", String.valueOf(duration));
+            if (run > 1) {
+                segment.setAttribute("r", String.valueOf(run - 1));
+            }
+            timeline.appendChild(segment);
+            i += run;
+        }
+    }
+
+    /**
+     * Creates an element in the same namespace (and with the same prefix) as the given context element.
+     */
+    public static Element createElement(Element context, String localName) {
+        String prefix = context.getPrefix();
+        String qualifiedName = prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+        return context.getOwnerDocument().createElementNS(context.getNamespaceURI(), qualifiedName);
+    }
+
+    /**
+     * ISO 8601 duration as used by MPD attributes such as mediaPresentationDuration.
+     */
+    public static String formatDuration(double seconds) {
+        return String.format(Locale.ROOT, "PT%.3fS", seconds);
+    }
+
+    public static long parseLong(String value, long defaultValue) {
+        try {
+            return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import java.util.UUID;
+
+/**
+ * Published once a rendition's output is in MinIO and its TBL_VIDEO_QUALITY row is COMPLETED.
+ */
+public record RenditionCompletedEvent(UUID videoId, String quality, String manifestKey) {
+}
@@ -0,0 +1,172 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.dto.video.TimelineSegment;
+import org.jazz.jazzflix.entity.video.TblVideoRepresentation;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.service.VideoQualityPersistenceService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps TBL_VIDEO_REPRESENTATION in step with each video's master manifest. The rows are taken
+ * from the manifest the assembler (or a ladder job) wrote, so a video is only listed once its
+ * manifest is complete, and videos from before the table existed are indexed on first request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RepresentationCatalog {
+
+    private static final TypeReference<List<TimelineSegment>> TIMELINE_TYPE = new TypeReference<>() {
+    };
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final VideoQualityPersistenceService persistenceService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Replaces the video's representations with the ones in the given master manifest.
+     */
+    public List<TblVideoRepresentation> index(UUID videoId, byte[] manifest) throws Exception {
+        Document document = MpdDocuments.parse(manifest);
+        List<TblVideoRepresentation> representations = new ArrayList<>();
+        for (String contentType : new String[]{"video", "audio"}) {
+            for (Element adaptationSet : MpdDocuments.adaptationSets(document, contentType)) {
+                for (Element representation : MpdDocuments.children(adaptationSet, "Representation")) {
+                    representations.add(toRow(videoId, contentType, adaptationSet, representation));
+                }
+            }
+        }
+        if (representations.stream().noneMatch(r -> "video".equals(r.getContentType()))) {
+            throw new IllegalStateException("No video representation in the manifest of video " + videoId);
+        }
+
+        List<TblVideoRepresentation> saved = persistenceService.replaceRepresentations(videoId, representations);
+        eventPublisher.publishEvent(new ManifestChangedEvent(videoId));
+        return saved;
+    }
+
+    /**
+     * Indexes the master manifest currently in MinIO. Throws DataNotFoundException if there is none yet.
+     */
+    public List<TblVideoRepresentation> indexFromStorage(UUID videoId) throws Exception {
+        String masterKey = DashObjectKeys.masterManifestKey(videoId);
+        GetObjectArgs getArgs = GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(masterKey)
+                .build();
+        byte[] manifest;
+        try (InputStream inputStream = minioClient.getObject(getArgs)) {
+            manifest = inputStream.readAllBytes();
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                throw new DataNotFoundException("Object not found: " + masterKey);
+            }
+            throw e;
+        }
+        return index(videoId, manifest);
+    }
+
+    @EventListener
+    public void onRenditionCompleted(RenditionCompletedEvent event) {
+        // Ladder jobs write the master manifest themselves, per-quality renditions go through the assembler
+        if (!DashObjectKeys.masterManifestKey(event.videoId()).equals(event.manifestKey())) {
+            return;
+        }
+        try {
+            indexFromStorage(event.videoId());
+        } catch (Exception e) {
+            log.warn("Failed to index the DASH manifest of video {}: {}", event.videoId(), e.getMessage());
+        }
+    }
+
+    public List<TimelineSegment> timeline(TblVideoRepresentation representation) {
+        try {
+            return objectMapper.readValue(representation.getSegmentTimeline(), TIMELINE_TYPE);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable segment timeline of representation " + representation.getId(), e);
+        }
+    }
+
+    private TblVideoRepresentation toRow(UUID videoId, String contentType, Element adaptationSet, Element representation) throws Exception {
+        // Resolves $RepresentationID$, the paths are already relative to the dash root
+        MpdDocuments.relocate(representation, "");
+        Element template = MpdDocuments.ownSegmentTemplate(representation);
+        if (template == null) {
+            throw new IllegalStateException("Representation " + representation.getAttribute("id") + " of video " + videoId
+                    + " has no SegmentTemplate");
+        }
+
+        TblVideoRepresentation row = new TblVideoRepresentation();
+        row.setVideoId(videoId);
+        row.setRepresentationId(representation.getAttribute("id"));
+        row.setContentType(contentType);
+        row.setMimeType(inherited(adaptationSet, representation, "mimeType", contentType + "/mp4"));
+        row.setCodecs(inherited(adaptationSet, representation, "codecs", null));
+        row.setBandwidth(MpdDocuments.parseLong(representation.getAttribute("bandwidth"), 0));
+        row.setWidth(intAttribute(inherited(adaptationSet, representation, "width", null)));
+        row.setHeight(intAttribute(inherited(adaptationSet, representation, "height", null)));
+        row.setFrameRate(inherited(adaptationSet, representation, "frameRate", null));
+        row.setSampleRate(intAttribute(inherited(adaptationSet, representation, "audioSamplingRate", null)));
+        row.setLang(adaptationSet.hasAttribute("lang") ? adaptationSet.getAttribute("lang") : null);
+
+        Element channels = MpdDocuments.firstChild(representation, "AudioChannelConfiguration");
+        if (channels == null) {
+            channels = MpdDocuments.firstChild(adaptationSet, "AudioChannelConfiguration");
+        }
+        row.setAudioChannels(channels != null ? intAttribute(channels.getAttribute("value")) : null);
+
+        row.setTimescale(MpdDocuments.parseLong(template.getAttribute("timescale"), 1));
+        row.setStartNumber(MpdDocuments.parseLong(template.getAttribute("startNumber"), 1));
+        row.setInitialization(template.getAttribute("initialization"));
+        row.setMedia(template.getAttribute("media"));
+
+        List<TimelineSegment> timeline = new ArrayList<>();
+        Element segmentTimeline = MpdDocuments.firstChild(template, "SegmentTimeline");
+        if (segmentTimeline != null) {
+            for (Element segment : MpdDocuments.children(segmentTimeline, "S")) {
+                timeline.add(new TimelineSegment(
+                        segment.hasAttribute("t") ? Long.parseLong(segment.getAttribute("t")) : null,
+                        Long.parseLong(segment.getAttribute("d")),
+                        segment.hasAttribute("r") ? Long.parseLong(segment.getAttribute("r")) : null));
+            }
+        }
+        if (timeline.isEmpty()) {
+            throw new IllegalStateException("Representation " + row.getRepresentationId() + " of video " + videoId
+                    + " has no SegmentTimeline");
+        }
+        row.setSegmentTimeline(objectMapper.writeValueAsString(timeline));
+        return row;
+    }
+
+    private static String inherited(Element adaptationSet, Element representation, String attribute, String defaultValue) {
+        if (representation.hasAttribute(attribute)) {
+            return representation.getAttribute(attribute);
+        }
+        return adaptationSet.hasAttribute(attribute) ? adaptationSet.getAttribute(attribute) : defaultValue;
+    }
+
+    private static Integer intAttribute(String value) {
+        long parsed = MpdDocuments.parseLong(value, -1);
+        return parsed >= 0 ? (int) parsed : null;
+    }
+}
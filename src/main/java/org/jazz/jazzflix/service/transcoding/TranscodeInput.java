@@ -0,0 +1,93 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Source of an ffmpeg transcode: a local file, a presigned URL or a stream piped into stdin.
+ * Close it once ffmpeg has exited to release the temp file or the storage stream.
+ */
+@Slf4j
+public class TranscodeInput implements AutoCloseable {
+
+    private final String ffmpegInput;
+    private final Path tempFile;
+    private final InputStream pipeSource;
+    private Thread feeder;
+
+    private TranscodeInput(String ffmpegInput, Path tempFile, InputStream pipeSource) {
+        this.ffmpegInput = ffmpegInput;
+        this.tempFile = tempFile;
+        this.pipeSource = pipeSource;
+    }
+
+    public static TranscodeInput file(Path tempFile) {
+        return new TranscodeInput(tempFile.toString(), tempFile, null);
+    }
+
+    public static TranscodeInput url(String url) {
+        return new TranscodeInput(url, null, null);
+    }
+
+    public static TranscodeInput pipe(InputStream source) {
+        return new TranscodeInput("pipe:0", null, source);
+    }
+
+    /**
+     * Value for ffmpeg's -i argument.
+     */
+    public String ffmpegInput() {
+        return ffmpegInput;
+    }
+
+    /**
+     * Hook for {@link FFmpegRunner}: starts copying the storage stream into stdin of a piped process.
+     */
+    public Consumer<Process> onStart() {
+        if (pipeSource == null) {
+            return process -> { };
+        }
+        return process -> {
+            feeder = new Thread(() -> {
+                try (OutputStream stdin = process.getOutputStream()) {
+                    pipeSource.transferTo(stdin);
+                } catch (Exception e) {
+                    // ffmpeg closing stdin early (failure or timeout) surfaces as a broken pipe here
+                    log.debug("Stopped feeding ffmpeg stdin: {}", e.getMessage());
+                }
+            }, "ffmpeg-stdin-feeder");
+            feeder.setDaemon(true);
+            feeder.start();
+        };
+    }
+
+    @Override
+    public void close() {
+        if (pipeSource != null) {
+            try {
+                pipeSource.close();
+            } catch (Exception e) {
+                log.debug("Failed to close piped source stream", e);
+            }
+        }
+        if (feeder != null) {
+            try {
+                feeder.join(5000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (tempFile != null) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (Exception e) {
+                log.warn("Failed to delete temp input file: {}", tempFile, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.http.Method;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how ffmpeg reads an original from MinIO, see {@link TranscodingProperties.InputMode}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TranscodeInputResolver {
+
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final TranscodingProperties transcodingProperties;
+
+    public TranscodeInput open(String objectKey) throws Exception {
+        TranscodingProperties.InputMode mode = transcodingProperties.getInputMode();
+
+        if (mode == TranscodingProperties.InputMode.PIPE) {
+            Mp4BoxScanner.Layout layout = inspectLayout(objectKey);
+            if (layout == Mp4BoxScanner.Layout.STREAMABLE || layout == Mp4BoxScanner.Layout.NOT_MP4) {
+                log.info("Piping {} into ffmpeg ({})", objectKey, layout);
+                return TranscodeInput.pipe(minioClient.getObject(GetObjectArgs.builder()
+                        .bucket(minioProperties.getBucket())
+                        .object(objectKey)
+                        .build()));
+            }
+            log.info("Source {} is not streamable ({}), falling back to a temp file", objectKey, layout);
+            return download(objectKey);
+        }
+
+        if (mode == TranscodingProperties.InputMode.PRESIGNED_URL) {
+            return TranscodeInput.url(presignedUrl(objectKey));
+        }
+
+        return download(objectKey);
+    }
+
+    /**
+     * Presigned GET URL for an object; ffmpeg seeks in it with HTTP range requests.
+     */
+    public String presignedUrl(String objectKey) throws Exception {
+        return minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .expiry(transcodingProperties.getSourceUrlExpiryMinutes(), TimeUnit.MINUTES)
+                .build());
+    }
+
+    private Mp4BoxScanner.Layout inspectLayout(String objectKey) throws Exception {
+        long size = minioClient.statObject(StatObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build()).size();
+        return Mp4BoxScanner.scan((offset, length) -> {
+            try (InputStream inputStream = minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(minioProperties.getBucket())
+                    .object(objectKey)
+                    .offset(offset)
+                    .length(Math.min(length, size - offset))
+                    .build())) {
+                return inputStream.readAllBytes();
+            }
+        }, size);
+    }
+
+    private TranscodeInput download(String objectKey) throws Exception {
+        log.info("Downloading original video from MinIO: {}", objectKey);
+        Path tempInputPath = Files.createTempFile("input-", ".mp4");
+        GetObjectArgs getArgs = GetObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .build();
+
+        try (InputStream inputStream = minioClient.getObject(getArgs);
+             FileOutputStream outputStream = new FileOutputStream(tempInputPath.toFile())) {
+            inputStream.transferTo(outputStream);
+        } catch (Exception e) {
+            Files.deleteIfExists(tempInputPath);
+            throw e;
+        }
+        log.info("Downloaded video to temp file: {}", tempInputPath);
+        return TranscodeInput.file(tempInputPath);
+    }
+}
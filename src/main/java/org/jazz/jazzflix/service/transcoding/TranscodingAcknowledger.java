@@ -0,0 +1,80 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Acknowledges transcoding records in offset order per partition, although their jobs finish in
+ * any order. A record is acknowledged once it and every record before it on its partition are
+ * done, so a committed offset never skips a job still queued or running.
+ *
+ * Records of partitions this instance lost are forgotten; they are redelivered to the new owner,
+ * whose ledger claim sees whether the job is still running here.
+ */
+@Slf4j
+@Component
+public class TranscodingAcknowledger implements ConsumerAwareRebalanceListener {
+
+    private final Map<TopicPartition, NavigableMap<Long, Pending>> partitions = new HashMap<>();
+
+    public synchronized void track(ConsumerRecord<?, ?> record, Acknowledgment acknowledgment) {
+        partitions.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), partition -> new TreeMap<>())
+                .put(record.offset(), new Pending(acknowledgment));
+    }
+
+    /**
+     * Marks the record done and acknowledges the records its partition can commit up to now.
+     * Acknowledging from a job thread only queues the commit for the consumer thread.
+     */
+    public synchronized void done(ConsumerRecord<?, ?> record) {
+        NavigableMap<Long, Pending> pending = partitions.get(new TopicPartition(record.topic(), record.partition()));
+        Pending entry = pending == null ? null : pending.get(record.offset());
+        if (entry == null) {
+            // The partition was revoked meanwhile
+            return;
+        }
+        entry.done = true;
+        while (!pending.isEmpty() && pending.firstEntry().getValue().done) {
+            pending.pollFirstEntry().getValue().acknowledgment.acknowledge();
+        }
+    }
+
+    @Override
+    public synchronized void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        forget(revoked);
+    }
+
+    @Override
+    public synchronized void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+        forget(lost);
+    }
+
+    private void forget(Collection<TopicPartition> revoked) {
+        for (TopicPartition partition : revoked) {
+            NavigableMap<Long, Pending> pending = partitions.remove(partition);
+            if (pending != null && !pending.isEmpty()) {
+                log.info("Partition {} revoked with {} transcoding records not yet committed", partition, pending.size());
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final Acknowledgment acknowledgment;
+        private boolean done;
+
+        private Pending(Acknowledgment acknowledgment) {
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.jazz.jazzflix.dto.video.DeadLetterJob;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads and replays the transcoding dead-letter topic. Reads use a throwaway consumer without a
+ * group, so inspecting the DLT never moves any committed offset.
+ */
+@Service
+public class TranscodingDeadLetterService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingDeadLetterService.class);
+
+    public static final String DLT_SUFFIX = "-dlt";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<String, VideoTranscodingEvent> consumerFactory;
+    private final TranscodingJobPublisher jobPublisher;
+    private final String deadLetterTopic;
+
+    public TranscodingDeadLetterService(ConsumerFactory<String, VideoTranscodingEvent> consumerFactory,
+                                        TranscodingJobPublisher jobPublisher,
+                                        @Value("${app.kafka.topics.video-transcoding:video.transcoding}") String videoTranscodingTopic) {
+        this.consumerFactory = consumerFactory;
+        this.jobPublisher = jobPublisher;
+        this.deadLetterTopic = videoTranscodingTopic + DLT_SUFFIX;
+    }
+
+    /**
+     * Oldest parked jobs first, at most limit of them.
+     */
+    public List<DeadLetterJob> list(int limit) {
+        List<DeadLetterJob> jobs = new ArrayList<>();
+        try (Consumer<String, VideoTranscodingEvent> consumer = createConsumer()) {
+            List<TopicPartition> partitions = partitions(consumer);
+            if (partitions.isEmpty()) {
+                return jobs;
+            }
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (jobs.size() < limit && !reachedEnd(consumer, endOffsets)) {
+                ConsumerRecords<String, VideoTranscodingEvent> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, VideoTranscodingEvent> record : records) {
+                    if (jobs.size() >= limit) {
+                        break;
+                    }
+                    jobs.add(toJob(record));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Publishes the parked job at partition/offset to the main topic again, with a fresh set of retries.
+     */
+    public DeadLetterJob replay(int partition, long offset) {
+        DeadLetterJob job = find(partition, offset);
+        jobPublisher.publish(job.getEvent());
+        log.info("Replayed dead-lettered transcoding job {} for video {} from {}-{}@{}",
+                TranscodingJobPublisher.label(job.getEvent()), job.getEvent().getVideoId(), deadLetterTopic, partition, offset);
+        return job;
+    }
+
+    private DeadLetterJob find(int partition, long offset) {
+        TopicPartition topicPartition = new TopicPartition(deadLetterTopic, partition);
+        try (Consumer<String, VideoTranscodingEvent> consumer = createConsumer()) {
+            consumer.assign(List.of(topicPartition));
+            consumer.seek(topicPartition, offset);
+            ConsumerRecords<String, VideoTranscodingEvent> records = consumer.poll(POLL_TIMEOUT);
+            for (ConsumerRecord<String, VideoTranscodingEvent> record : records.records(topicPartition)) {
+                if (record.offset() == offset) {
+                    return toJob(record);
+                }
+            }
+        }
+        throw new DataNotFoundException("No dead-lettered transcoding job at " + deadLetterTopic + "-" + partition + "@" + offset);
+    }
+
+    private Consumer<String, VideoTranscodingEvent> createConsumer() {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "500");
+        return consumerFactory.createConsumer(null, "transcoding-dlt-inspector", null, overrides);
+    }
+
+    private List<TopicPartition> partitions(Consumer<String, VideoTranscodingEvent> consumer) {
+        List<TopicPartition> partitions = new ArrayList<>();
+        List<PartitionInfo> infos = consumer.partitionsFor(deadLetterTopic);
+        if (infos != null) {
+            for (PartitionInfo info : infos) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+        }
+        return partitions;
+    }
+
+    private boolean reachedEnd(Consumer<String, VideoTranscodingEvent> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DeadLetterJob toJob(ConsumerRecord<String, VideoTranscodingEvent> record) {
+        return new DeadLetterJob(
+                record.partition(),
+                record.offset(),
+                record.timestamp(),
+                record.key(),
+                record.value(),
+                header(record, KafkaHeaders.DLT_EXCEPTION_FQCN),
+                header(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+    }
+
+    private static String header(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
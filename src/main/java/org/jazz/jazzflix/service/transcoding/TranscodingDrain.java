@@ -0,0 +1,83 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Graceful shutdown for transcoding. Stops in the highest lifecycle phase, i.e. before the Kafka
+ * listener containers: listeners are paused so no new records are taken, queued jobs are cancelled
+ * back to PENDING and running jobs get the drain timeout to finish and commit their offsets.
+ */
+@Slf4j
+@Component
+public class TranscodingDrain implements SmartLifecycle {
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final TranscodingScheduler scheduler;
+    private final Duration drainTimeout;
+    private volatile boolean running;
+
+    public TranscodingDrain(KafkaListenerEndpointRegistry listenerRegistry,
+                            TranscodingScheduler scheduler,
+                            TranscodingProperties transcodingProperties) {
+        this.listenerRegistry = listenerRegistry;
+        this.scheduler = scheduler;
+        this.drainTimeout = Duration.ofSeconds(transcodingProperties.getScheduler().getDrainTimeoutSeconds());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        drain();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        Thread drainer = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "transcoding-drain");
+        drainer.start();
+    }
+
+    private void drain() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            container.pause();
+        }
+        try {
+            scheduler.drain(drainTimeout);
+            log.info("Transcoding drained");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while draining transcoding jobs");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop before the listener containers, which still have to commit the drained jobs' offsets
+        return Integer.MAX_VALUE;
+    }
+}
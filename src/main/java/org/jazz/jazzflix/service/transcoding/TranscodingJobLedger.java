@@ -0,0 +1,155 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.entity.video.TblTranscodingJob;
+import org.jazz.jazzflix.repository.video.TblTranscodingJobRepository;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency ledger for transcoding jobs, one TBL_TRANSCODING_JOB row per video and job key.
+ *
+ * A worker only runs a job after winning an atomic PENDING/FAILED -> PROCESSING claim, which gives it
+ * a lease that is renewed while the job runs. A crashed worker's lease expires and the job can be
+ * claimed again. Jobs this instance saw completed are remembered in memory, so redeliveries of those
+ * are skipped without a database round trip. Jobs that used up their retries are DEAD until they
+ * are replayed from the dead-letter topic, which claims them like a FAILED job.
+ */
+@Slf4j
+@Service
+public class TranscodingJobLedger {
+
+    private final TblTranscodingJobRepository jobRepository;
+    private final ObjectMapper objectMapper;
+    private final long leaseSeconds;
+    private final String owner;
+    private final Cache<String, Boolean> completedJobs = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofHours(6))
+            .build();
+    // Jobs this instance holds a lease on, renewed until released
+    private final Map<String, VideoTranscodingEvent> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transcoding-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TranscodingJobLedger(TblTranscodingJobRepository jobRepository,
+                                ObjectMapper objectMapper,
+                                TranscodingProperties transcodingProperties) {
+        this.jobRepository = jobRepository;
+        this.objectMapper = objectMapper;
+        this.leaseSeconds = TimeUnit.MINUTES.toSeconds(transcodingProperties.getLedger().getLeaseMinutes());
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        long renewEvery = Math.max(1, leaseSeconds / 3);
+        leaseRenewer.scheduleAtFixedRate(this::renewLeases, renewEvery, renewEvery, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Records a job as PENDING when it is published, so a job lost before any worker saw it is
+     * found by the reconciler. A no-op if the job is already known.
+     */
+    public void register(VideoTranscodingEvent event) throws Exception {
+        jobRepository.insertIfAbsent(UUID.randomUUID(), event.getVideoId(), TranscodingJobPublisher.label(event),
+                objectMapper.writeValueAsString(event));
+    }
+
+    /**
+     * Records the job if it is new and tries to claim it. False means it is already COMPLETED or
+     * another worker holds a live lease on it, and the caller must not run it.
+     */
+    public boolean claim(VideoTranscodingEvent event) throws Exception {
+        String jobKey = TranscodingJobPublisher.label(event);
+        String id = ledgerId(event.getVideoId(), jobKey);
+        if (completedJobs.getIfPresent(id) != null) {
+            log.info("Skipping transcoding job {} for video {}, already completed", jobKey, event.getVideoId());
+            return false;
+        }
+
+        jobRepository.insertIfAbsent(UUID.randomUUID(), event.getVideoId(), jobKey, objectMapper.writeValueAsString(event));
+        if (jobRepository.claim(event.getVideoId(), jobKey, owner, leaseSeconds) == 1) {
+            held.put(id, event);
+            return true;
+        }
+
+        String status = jobRepository.findByVideoIdAndJobKey(event.getVideoId(), jobKey)
+                .map(TblTranscodingJob::getStatus)
+                .orElse("UNKNOWN");
+        if ("COMPLETED".equals(status)) {
+            completedJobs.put(id, Boolean.TRUE);
+        }
+        log.info("Skipping transcoding job {} for video {}, ledger status {}", jobKey, event.getVideoId(), status);
+        return false;
+    }
+
+    public void complete(VideoTranscodingEvent event) {
+        release(event, "COMPLETED");
+        completedJobs.put(ledgerId(event.getVideoId(), TranscodingJobPublisher.label(event)), Boolean.TRUE);
+    }
+
+    public void fail(VideoTranscodingEvent event) {
+        release(event, "FAILED");
+    }
+
+    /**
+     * Records that the job used up its retries. False if it completed or is running again meanwhile,
+     * in which case its outcome is not a failure (yet).
+     */
+    public boolean exhausted(VideoTranscodingEvent event) {
+        return jobRepository.markDead(event.getVideoId(), TranscodingJobPublisher.label(event)) == 1;
+    }
+
+    /**
+     * Hands a claimed job back without it having failed, e.g. when shutdown cancelled it.
+     */
+    public void abandon(VideoTranscodingEvent event) {
+        release(event, "PENDING");
+    }
+
+    private void release(VideoTranscodingEvent event, String status) {
+        String jobKey = TranscodingJobPublisher.label(event);
+        held.remove(ledgerId(event.getVideoId(), jobKey));
+        if (jobRepository.release(event.getVideoId(), jobKey, owner, status) == 0) {
+            // Our lease expired and another worker took the job over, its outcome wins
+            log.warn("Lost the lease on transcoding job {} for video {} before marking it {}", jobKey, event.getVideoId(), status);
+        }
+    }
+
+    private void renewLeases() {
+        for (Map.Entry<String, VideoTranscodingEvent> entry : held.entrySet()) {
+            VideoTranscodingEvent event = entry.getValue();
+            try {
+                if (jobRepository.renewLease(event.getVideoId(), TranscodingJobPublisher.label(event), owner, leaseSeconds) == 0) {
+                    log.warn("Lease on transcoding job {} for video {} could not be renewed", entry.getKey(), event.getVideoId());
+                    held.remove(entry.getKey());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to renew lease on transcoding job {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static String ledgerId(UUID videoId, String jobKey) {
+        return videoId + "/" + jobKey;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes transcoding jobs to the video.transcoding topic.
+ */
+@Component
+public class TranscodingJobPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingJobPublisher.class);
+
+    private final KafkaTemplate<String, VideoTranscodingEvent> transcodingKafkaTemplate;
+    private final TranscodingJobLedger jobLedger;
+    private final String videoTranscodingTopic;
+
+    public TranscodingJobPublisher(KafkaTemplate<String, VideoTranscodingEvent> transcodingKafkaTemplate,
+                                   TranscodingJobLedger jobLedger,
+                                   @Value("${app.kafka.topics.video-transcoding:video.transcoding}") String videoTranscodingTopic) {
+        this.transcodingKafkaTemplate = transcodingKafkaTemplate;
+        this.jobLedger = jobLedger;
+        this.videoTranscodingTopic = videoTranscodingTopic;
+    }
+
+    public void publish(VideoTranscodingEvent transcodingEvent) {
+        String label = label(transcodingEvent);
+        try {
+            jobLedger.register(transcodingEvent);
+        } catch (Exception e) {
+            // The listener registers the job again when it claims it
+            log.warn("Failed to register transcoding job {} for {} in the ledger", label, transcodingEvent.getVideoId(), e);
+        }
+        String key = transcodingEvent.getVideoId() + "-" + label;
+        transcodingKafkaTemplate.send(videoTranscodingTopic, key, transcodingEvent)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("Failed to send transcoding event for {} quality {}", transcodingEvent.getVideoId(), label, throwable);
+                    } else {
+                        log.info("Sent transcoding event for {} quality {} to topic {}", transcodingEvent.getVideoId(), label, videoTranscodingTopic);
+                    }
+                });
+    }
+
+    /**
+     * Short job description used for record keys and logs, e.g. "720p", "ladder" or "720p#3".
+     */
+    public static String label(VideoTranscodingEvent event) {
+        VideoTranscodingEvent.JobType jobType = event.getJobType() == null ? VideoTranscodingEvent.JobType.QUALITY : event.getJobType();
+        return switch (jobType) {
+            case QUALITY -> event.getQuality();
+            case LADDER -> "ladder";
+            case PLAN -> "plan";
+            case AUDIO -> DashObjectKeys.AUDIO;
+            case CHUNK -> event.getQuality() + "#" + event.getChunkIndex();
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.entity.video.TblTranscodingJob;
+import org.jazz.jazzflix.entity.video.TblVideoAssest;
+import org.jazz.jazzflix.entity.video.TblVideoQuality;
+import org.jazz.jazzflix.repository.video.TblTranscodingJobRepository;
+import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
+import org.jazz.jazzflix.repository.video.TblVideoQualityRepository;
+import org.jazz.jazzflix.service.VideoTranscodingService;
+import org.jazz.jazzflix.service.VideoTranscodingService.VideoQuality;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Re-enqueues transcoding work that a crash or redeploy left behind, once on startup and then
+ * periodically:
+ * <ul>
+ *     <li>ledger jobs whose lease expired, i.e. the worker running them died,</li>
+ *     <li>ledger jobs still PENDING long after they were published, i.e. the record was lost,</li>
+ *     <li>renditions of processed videos that are not finished and that no ledger job covers, e.g.
+ *     uploaded before the ledger existed, or whose rows or jobs a crash lost before publishing.</li>
+ * </ul>
+ * Every job is requeued with a compare-and-set on the ledger row, so several instances running
+ * the reconciler at once publish each job only once.
+ */
+@Slf4j
+@Component
+public class TranscodingReconciler {
+
+    private final TblTranscodingJobRepository jobRepository;
+    private final TblVideoQualityRepository qualityRepository;
+    private final TblVideoAssestRepository videoAssestRepository;
+    private final TranscodingJobPublisher jobPublisher;
+    private final VideoTranscodingService transcodingService;
+    private final TranscodingProperties transcodingProperties;
+    private final ObjectMapper objectMapper;
+
+    public TranscodingReconciler(TblTranscodingJobRepository jobRepository,
+                                 TblVideoQualityRepository qualityRepository,
+                                 TblVideoAssestRepository videoAssestRepository,
+                                 TranscodingJobPublisher jobPublisher,
+                                 VideoTranscodingService transcodingService,
+                                 TranscodingProperties transcodingProperties,
+                                 ObjectMapper objectMapper) {
+        this.jobRepository = jobRepository;
+        this.qualityRepository = qualityRepository;
+        this.videoAssestRepository = videoAssestRepository;
+        this.jobPublisher = jobPublisher;
+        this.transcodingService = transcodingService;
+        this.transcodingProperties = transcodingProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${app.transcoding.reconciler.interval-ms:300000}",
+            initialDelayString = "${app.transcoding.reconciler.interval-ms:300000}")
+    public void reconcilePeriodically() {
+        reconcile();
+    }
+
+    public synchronized void reconcile() {
+        TranscodingProperties.Reconciler settings = transcodingProperties.getReconciler();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        try {
+            int requeued = requeueStaleJobs(settings);
+            int orphaned = requeueOrphanedVideos(settings);
+            if (requeued > 0 || orphaned > 0) {
+                log.info("Transcoding reconciler re-enqueued {} stale jobs and {} orphaned videos", requeued, orphaned);
+            }
+        } catch (Exception e) {
+            log.error("Transcoding reconciliation failed", e);
+        }
+    }
+
+    private int requeueStaleJobs(TranscodingProperties.Reconciler settings) {
+        int requeued = 0;
+        for (TblTranscodingJob job : jobRepository.findStale(settings.getStaleMinutes(), settings.getBatchSize())) {
+            if (jobRepository.requeue(job.getId(), settings.getStaleMinutes()) == 0) {
+                // Claimed or requeued by someone else in the meantime
+                continue;
+            }
+            try {
+                VideoTranscodingEvent event = objectMapper.readValue(job.getPayload(), VideoTranscodingEvent.class);
+                log.info("Re-enqueueing transcoding job {} for video {} (attempts so far: {})",
+                        job.getJobKey(), job.getVideoId(), job.getAttempts());
+                jobPublisher.publish(event);
+                requeued++;
+            } catch (Exception e) {
+                log.error("Failed to re-enqueue transcoding job {} for video {}", job.getJobKey(), job.getVideoId(), e);
+            }
+        }
+        return requeued;
+    }
+
+    private int requeueOrphanedVideos(TranscodingProperties.Reconciler settings) {
+        List<String> expected = VideoQuality.ladder().stream()
+                .map(quality -> quality.name)
+                .toList();
+        int requeued = 0;
+        for (UUID videoId : qualityRepository.findOrphanedVideoIds(expected, settings.getStaleMinutes(), settings.getBatchSize())) {
+            Optional<TblVideoAssest> asset = videoAssestRepository.findById(videoId);
+            if (asset.isEmpty()) {
+                continue;
+            }
+            Set<String> completed = qualityRepository.findByVideoId(videoId).stream()
+                    .filter(quality -> "COMPLETED".equals(quality.getStatus()))
+                    .map(TblVideoQuality::getQuality)
+                    .collect(Collectors.toSet());
+            List<String> jobKeys = jobRepository.findByVideoId(videoId).stream()
+                    .map(TblTranscodingJob::getJobKey)
+                    .toList();
+            // Renditions still missing whose jobs never reached the ledger; rows are created for
+            // videos that lost them, so the manifest assembler waits for every rendition again
+            List<String> orphaned = expected.stream()
+                    .filter(quality -> !completed.contains(quality))
+                    .filter(quality -> jobKeys.stream().noneMatch(key -> covers(key, quality)))
+                    .toList();
+            if (orphaned.isEmpty()) {
+                continue;
+            }
+
+            log.info("Re-enqueueing orphaned transcodes {} for video {}", orphaned, videoId);
+            transcodingService.registerPendingQualities(videoId, orphaned);
+            if (transcodingProperties.getMode() == TranscodingProperties.Mode.LADDER) {
+                jobPublisher.publish(transcodingEvent(asset.get(), null, VideoTranscodingEvent.JobType.LADDER));
+            } else if (transcodingProperties.getChunked().isEnabled()) {
+                jobPublisher.publish(transcodingEvent(asset.get(), null, VideoTranscodingEvent.JobType.PLAN));
+            } else {
+                for (String quality : orphaned) {
+                    jobPublisher.publish(transcodingEvent(asset.get(), quality, VideoTranscodingEvent.JobType.QUALITY));
+                }
+            }
+            requeued++;
+        }
+        return requeued;
+    }
+
+    // Same rule as TblVideoQualityRepository.findOrphanedVideoIds
+    private static boolean covers(String jobKey, String quality) {
+        return jobKey.equals(quality) || jobKey.startsWith(quality + "#") || jobKey.equals("ladder") || jobKey.equals("plan");
+    }
+
+    private static VideoTranscodingEvent transcodingEvent(TblVideoAssest asset, String quality, VideoTranscodingEvent.JobType jobType) {
+        VideoTranscodingEvent event = new VideoTranscodingEvent(asset.getId(), asset.getObjectKey(), asset.getContentType(), quality, jobType);
+        event.setSourceSizeBytes(asset.getSizeBytes());
+        return event;
+    }
+}
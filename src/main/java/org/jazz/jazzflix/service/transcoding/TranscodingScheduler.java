@@ -0,0 +1,311 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.service.VideoTranscodingService.VideoQuality;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transcoding jobs within a CPU budget instead of starting one ffmpeg per Kafka record.
+ *
+ * Every job costs weight units (see {@link VideoQuality#weight}, a ladder costs its whole ladder)
+ * and the budget defaults to the number of cores. Waiting jobs are started in this order:
+ * <ol>
+ *     <li>the first job of a video, so a new upload gets a playable rendition quickly,</li>
+ *     <li>the video served least recently, so one long upload's chunk jobs cannot starve other uploads,</li>
+ *     <li>the smaller source,</li>
+ *     <li>arrival order.</li>
+ * </ol>
+ * A job that does not fit the free budget blocks the queue until it does, so heavy renditions are
+ * never starved by a stream of light ones.
+ *
+ * Lanes only exist while a video has jobs queued or running, but a video's jobs often arrive one
+ * at a time. What the order needs to remember about a video is kept apart from its lane, for a
+ * while after its last job started.
+ */
+@Slf4j
+@Component
+public class TranscodingScheduler {
+
+    public interface Job {
+        void run() throws Exception;
+    }
+
+    private static final Comparator<Task> TASK_ORDER = Comparator
+            .comparingLong((Task task) -> task.sourceSizeBytes)
+            .thenComparingLong(task -> task.sequence);
+
+    private static final Comparator<Lane> LANE_ORDER = Comparator
+            .comparingInt((Lane lane) -> lane.history.started == 0 ? 0 : 1)
+            .thenComparingLong(lane -> lane.history.lastServed)
+            .thenComparing(lane -> lane.queue.peek(), TASK_ORDER);
+
+    private final int budget;
+    private final ExecutorService workers;
+    // Fairness lanes, one per video
+    private final Map<String, Lane> lanes = new HashMap<>();
+    // Per-video history, outliving the lanes; only touched while holding the scheduler's lock
+    private final Cache<String, History> histories;
+
+    private boolean accepting = true;
+    private int queued;
+    private int used;
+    private int running;
+    private long sequence;
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public TranscodingScheduler(TranscodingProperties transcodingProperties) {
+        TranscodingProperties.Scheduler settings = transcodingProperties.getScheduler();
+        int configured = settings.getBudget();
+        this.budget = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.histories = Caffeine.newBuilder()
+                .maximumSize(settings.getHistorySize())
+                .expireAfterWrite(Duration.ofMinutes(settings.getHistoryTtlMinutes()))
+                .build();
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "transcode-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Transcoding scheduler budget: {} units", budget);
+    }
+
+    /**
+     * Queues a job for a transcoding event. The future completes once the job ran.
+     */
+    public CompletableFuture<Void> submit(VideoTranscodingEvent event, Job job) {
+        Long sourceSize = event.getSourceSizeBytes();
+        return submit(String.valueOf(event.getVideoId()), TranscodingJobPublisher.label(event), weight(event),
+                sourceSize != null ? sourceSize : Long.MAX_VALUE, job);
+    }
+
+    public synchronized CompletableFuture<Void> submit(String fairnessKey, String label, int weight, long sourceSizeBytes, Job job) {
+        if (!accepting) {
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.cancel(false);
+            return rejected;
+        }
+        Task task = new Task(label, Math.max(1, Math.min(weight, budget)), sourceSizeBytes, sequence++, System.nanoTime(), job);
+        lanes.computeIfAbsent(fairnessKey, key -> new Lane(key, histories.get(key, ignored -> new History()))).queue.add(task);
+        queued++;
+        submitted++;
+        dispatch();
+        return task.future;
+    }
+
+    public static int weight(VideoTranscodingEvent event) {
+        VideoTranscodingEvent.JobType jobType = event.getJobType() == null ? VideoTranscodingEvent.JobType.QUALITY : event.getJobType();
+        return switch (jobType) {
+            case LADDER -> VideoQuality.ladder().stream().mapToInt(quality -> quality.weight).sum();
+            case QUALITY, CHUNK -> VideoQuality.valueOf("Q_" + event.getQuality().toUpperCase()).weight;
+            default -> 1;
+        };
+    }
+
+    private void dispatch() {
+        while (true) {
+            Lane next = null;
+            for (Lane lane : lanes.values()) {
+                if (!lane.queue.isEmpty() && (next == null || LANE_ORDER.compare(lane, next) < 0)) {
+                    next = lane;
+                }
+            }
+            if (next == null || next.queue.peek().weight > budget - used) {
+                return;
+            }
+
+            Task task = next.queue.poll();
+            Lane lane = next;
+            queued--;
+            used += task.weight;
+            running++;
+            lane.running++;
+            lane.history.started++;
+            lane.history.lastServed = sequence++;
+            // Restarts the expiry, and brings the history back if it was evicted meanwhile
+            histories.put(lane.key, lane.history);
+            long waited = System.nanoTime() - task.queuedAt;
+            totalWaitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+            log.info("Starting transcoding job {} for video {} after {} ms in queue ({}/{} units in use)",
+                    task.label, lane.key, TimeUnit.NANOSECONDS.toMillis(waited), used, budget);
+
+            workers.execute(() -> run(lane, task));
+        }
+    }
+
+    private void run(Lane lane, Task task) {
+        Throwable failure = null;
+        try {
+            task.job.run();
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        synchronized (this) {
+            used -= task.weight;
+            running--;
+            lane.running--;
+            if (failure == null) {
+                completed++;
+            } else {
+                failed++;
+            }
+            if (lane.queue.isEmpty() && lane.running == 0) {
+                lanes.remove(lane.key);
+            }
+            dispatch();
+            notifyAll();
+        }
+
+        if (failure == null) {
+            task.future.complete(null);
+        } else {
+            task.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Jobs waiting for budget.
+     */
+    public synchronized int queued() {
+        return queued;
+    }
+
+    public synchronized boolean isAccepting() {
+        return accepting;
+    }
+
+    public synchronized SchedulerStats stats() {
+        int queued = 0;
+        long oldestQueuedAt = Long.MAX_VALUE;
+        for (Lane lane : lanes.values()) {
+            queued += lane.queue.size();
+            for (Task task : lane.queue) {
+                oldestQueuedAt = Math.min(oldestQueuedAt, task.queuedAt);
+            }
+        }
+        long started = completed + failed + running;
+        return new SchedulerStats(
+                budget,
+                used,
+                running,
+                queued,
+                lanes.size(),
+                submitted,
+                completed,
+                failed,
+                started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / started),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+                queued == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestQueuedAt));
+    }
+
+    /**
+     * Stops taking work for shutdown: queued jobs are cancelled (their records get redelivered
+     * elsewhere) and running jobs get up to timeout to finish before their threads are interrupted,
+     * which kills their ffmpeg processes.
+     */
+    public void drain(Duration timeout) throws InterruptedException {
+        synchronized (this) {
+            accepting = false;
+            int cancelled = 0;
+            for (Lane lane : lanes.values()) {
+                Task task;
+                while ((task = lane.queue.poll()) != null) {
+                    task.future.cancel(false);
+                    queued--;
+                    cancelled++;
+                }
+            }
+            lanes.values().removeIf(lane -> lane.running == 0);
+            log.info("Draining transcoding scheduler: cancelled {} queued jobs, waiting for {} running", cancelled, running);
+
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (running > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (running > 0) {
+                log.warn("{} transcoding jobs still running after {}, interrupting them", running, timeout);
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public record SchedulerStats(int budget,
+                                 int budgetInUse,
+                                 int running,
+                                 int queued,
+                                 int videos,
+                                 long submitted,
+                                 long completed,
+                                 long failed,
+                                 long averageWaitMillis,
+                                 long maxWaitMillis,
+                                 long oldestQueuedMillis) {
+    }
+
+    private static final class Lane {
+        private final String key;
+        private final History history;
+        private final PriorityQueue<Task> queue = new PriorityQueue<>(TASK_ORDER);
+        private int running;
+
+        private Lane(String key, History history) {
+            this.key = key;
+            this.history = history;
+        }
+    }
+
+    private static final class History {
+        private int started;
+        private long lastServed = -1;
+    }
+
+    private static final class Task {
+        private final String label;
+        private final int weight;
+        private final long sourceSizeBytes;
+        private final long sequence;
+        private final long queuedAt;
+        private final Job job;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Task(String label, int weight, long sourceSizeBytes, long sequence, long queuedAt, Job job) {
+            this.label = label;
+            this.weight = weight;
+            this.sourceSizeBytes = sourceSizeBytes;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+            this.job = job;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.jazz.jazzflix.service.video;
+
+import org.jazz.jazzflix.service.ProgressMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes a stream through unchanged while counting it and keeping a copy of its first bytes, so
+ * an upload can be stored in one pass and still be probed afterwards from memory. Reading past
+ * maxBytes fails with {@link LimitExceededException}, so a body of unknown length cannot be stored
+ * beyond the size limit.
+ */
+class HeadCaptureInputStream extends FilterInputStream {
+
+    private final int headLimit;
+    private final ByteArrayOutputStream head;
+    private final ProgressMultipartFile.ProgressCallback callback;
+    private final long maxBytes;
+    private long count;
+    private boolean limitExceeded;
+
+    HeadCaptureInputStream(InputStream in, int headLimit, ProgressMultipartFile.ProgressCallback callback) {
+        this(in, headLimit, Long.MAX_VALUE, callback);
+    }
+
+    HeadCaptureInputStream(InputStream in, int headLimit, long maxBytes, ProgressMultipartFile.ProgressCallback callback) {
+        super(in);
+        this.headLimit = headLimit;
+        this.maxBytes = maxBytes;
+        this.head = new ByteArrayOutputStream(Math.min(headLimit, 1024 * 1024));
+        this.callback = callback;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int data = in.read();
+        if (data != -1) {
+            if (head.size() < headLimit) {
+                head.write(data);
+            }
+            advance(1);
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead = in.read(b, off, len);
+        if (bytesRead > 0) {
+            int captured = Math.min(bytesRead, headLimit - head.size());
+            if (captured > 0) {
+                head.write(b, off, captured);
+            }
+            advance(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would leave a hole in the head
+        byte[] discard = new byte[(int) Math.min(n, 8192)];
+        int bytesRead = read(discard, 0, discard.length);
+        return Math.max(bytesRead, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void advance(int bytes) throws IOException {
+        count += bytes;
+        if (count > maxBytes) {
+            limitExceeded = true;
+            throw new LimitExceededException(maxBytes);
+        }
+        if (callback != null) {
+            callback.onProgress(count);
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Whether the stream was read past maxBytes, even if a caller wrapped the exception.
+     */
+    boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    /**
+     * The first bytes read, at most headLimit.
+     */
+    byte[] head() {
+        return head.toByteArray();
+    }
+
+    static final class LimitExceededException extends IOException {
+        LimitExceededException(long maxBytes) {
+            super("Stream exceeds the maximum size of " + maxBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.jazz.jazzflix.service.video;
+
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InvalidResponseException;
+import io.minio.errors.ServerException;
+import io.minio.messages.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioMultipartClient;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.upload.UploadProperties;
+import org.jazz.jazzflix.exception.VideoStorageException;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores an original in MinIO as a multipart upload with several parts in flight, so a large
+ * upload is bound by the network or disk rather than by one part's round trip after another.
+ *
+ * Parts are read into buffers from a pool shared by all uploads on the node. Reading waits for a
+ * free buffer, so memory stays at bufferPoolSize parts however many uploads run. A failed part is
+ * retried with backoff; once one fails for good the upload is aborted, leaving no parts behind.
+ * A body that fits in one part is stored with a single PUT.
+ */
+@Slf4j
+@Component
+public class ParallelMultipartUploader {
+
+    // S3 limits for multipart uploads
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final MinioMultipartClient multipartClient;
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final UploadProperties.Parallel settings;
+    private final int partSize;
+    private final PartBuffers buffers;
+
+    public ParallelMultipartUploader(MinioMultipartClient multipartClient,
+                                     MinioClient minioClient,
+                                     MinioProperties minioProperties,
+                                     UploadProperties uploadProperties) {
+        this.multipartClient = multipartClient;
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.settings = uploadProperties.getParallel();
+        this.partSize = Math.max(settings.getPartSizeBytes(), MIN_PART_SIZE);
+        this.buffers = new PartBuffers(partSize, Math.max(1, settings.getBufferPoolSize()));
+    }
+
+    /**
+     * Stores the body under objectKey and returns how many bytes it had. size is the body's
+     * length, or -1 when unknown.
+     */
+    public long upload(String objectKey, String contentType, InputStream body, long size) throws Exception {
+        if (!settings.isEnabled() || size > (long) partSize * MAX_PARTS) {
+            // The SDK picks a part size that fits the parts limit
+            CountingInputStream counted = new CountingInputStream(body);
+            putObject(objectKey, contentType, counted, size, size < 0 ? partSize : -1);
+            return counted.count;
+        }
+
+        byte[] first = buffers.acquire();
+        String uploadId;
+        try {
+            int length = body.readNBytes(first, 0, partSize);
+            if (length < partSize) {
+                putObject(objectKey, contentType, new ByteArrayInputStream(first, 0, length), length, -1);
+                buffers.release(first);
+                return length;
+            }
+            uploadId = multipartClient.startUpload(minioProperties.getBucket(), objectKey, contentType);
+        } catch (Exception e) {
+            buffers.release(first);
+            throw e;
+        }
+
+        Upload upload = new Upload(objectKey, uploadId);
+        try {
+            long total = upload.sendAll(first, body);
+            List<Part> parts = upload.await();
+            multipartClient.completeUpload(minioProperties.getBucket(), objectKey, uploadId, parts);
+            log.info("Stored {} ({} bytes in {} parts, up to {} in flight)", objectKey, total, parts.size(),
+                    settings.getMaxInFlightParts());
+            return total;
+        } catch (Exception e) {
+            upload.abort();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        }
+    }
+
+    private void putObject(String objectKey, String contentType, InputStream in, long size, long partSize) throws Exception {
+        PutObjectArgs.Builder builder = PutObjectArgs.builder()
+                .bucket(minioProperties.getBucket())
+                .object(objectKey)
+                .stream(in, size, partSize);
+        if (contentType != null) {
+            builder.contentType(contentType);
+        }
+        minioClient.putObject(builder.build());
+    }
+
+    /**
+     * One multipart upload in progress. Each part holds an in-flight slot and a pooled buffer from
+     * before it is read until it is stored or has failed for good.
+     */
+    private final class Upload {
+        private final String objectKey;
+        private final String uploadId;
+        private final int maxInFlight = Math.max(1, settings.getMaxInFlightParts());
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final Map<Integer, Part> stored = new ConcurrentHashMap<>();
+        private volatile Throwable failure;
+
+        private Upload(String objectKey, String uploadId) {
+            this.objectKey = objectKey;
+            this.uploadId = uploadId;
+        }
+
+        /**
+         * Sends the first part, then reads and sends the rest of the body. Returns its length.
+         */
+        private long sendAll(byte[] first, InputStream body) throws Exception {
+            inFlight.acquire();
+            send(1, first, partSize, 1);
+            long total = partSize;
+
+            for (int partNumber = 2; ; partNumber++) {
+                throwIfFailed();
+                inFlight.acquire();
+                byte[] buffer;
+                int length;
+                try {
+                    buffer = buffers.acquire();
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                try {
+                    length = body.readNBytes(buffer, 0, partSize);
+                } catch (IOException e) {
+                    finish(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    finish(buffer);
+                    return total;
+                }
+                if (partNumber > MAX_PARTS) {
+                    finish(buffer);
+                    throw new VideoStorageException("Video exceeds " + MAX_PARTS + " parts of " + partSize + " bytes");
+                }
+                send(partNumber, buffer, length, 1);
+                total += length;
+                if (length < partSize) {
+                    return total;
+                }
+            }
+        }
+
+        private void send(int partNumber, byte[] buffer, int length, int attempt) {
+            CompletableFuture<Part> future;
+            try {
+                future = multipartClient.uploadPart(minioProperties.getBucket(), objectKey, uploadId, partNumber, buffer, length);
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((part, error) -> {
+                if (error == null) {
+                    stored.put(partNumber, part);
+                    finish(buffer);
+                    return;
+                }
+                Throwable cause = unwrap(error);
+                if (failure == null && attempt < settings.getMaxAttempts() && isRetryable(cause)) {
+                    long delay = settings.getRetryBackoffMs() << (attempt - 1);
+                    log.debug("Part {} of {} failed ({}), retrying in {} ms", partNumber, objectKey, cause.toString(), delay);
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                            .execute(() -> send(partNumber, buffer, length, attempt + 1));
+                    return;
+                }
+                if (failure == null) {
+                    failure = cause;
+                    log.warn("Part {} of {} failed after {} attempts: {}", partNumber, objectKey, attempt, cause.toString());
+                }
+                finish(buffer);
+            });
+        }
+
+        private void finish(byte[] buffer) {
+            buffers.release(buffer);
+            inFlight.release();
+        }
+
+        private void throwIfFailed() throws Exception {
+            Throwable error = failure;
+            if (error instanceof Exception e) {
+                throw e;
+            }
+            if (error != null) {
+                throw new VideoStorageException("Failed to upload a part of " + objectKey, error);
+            }
+        }
+
+        /**
+         * Waits for the parts in flight and returns all of them in order.
+         */
+        private List<Part> await() throws Exception {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+            throwIfFailed();
+            List<Part> parts = new ArrayList<>(stored.values());
+            parts.sort((a, b) -> Integer.compare(a.partNumber(), b.partNumber()));
+            return parts;
+        }
+
+        private void abort() {
+            // Parts still in flight could otherwise be stored after the abort
+            inFlight.acquireUninterruptibly(maxInFlight);
+            inFlight.release(maxInFlight);
+            try {
+                multipartClient.abortUpload(minioProperties.getBucket(), objectKey, uploadId);
+                log.info("Aborted multipart upload of {}", objectKey);
+            } catch (Exception e) {
+                // Left to the bucket's lifecycle rule for incomplete uploads
+                log.warn("Failed to abort multipart upload of {}: {}", objectKey, e.getMessage());
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    // Connection failures, 5xx answers and non-S3 answers (e.g. a proxy's error page) are worth
+    // another attempt, other S3 errors are not
+    private static boolean isRetryable(Throwable cause) {
+        if (cause instanceof ErrorResponseException e) {
+            return e.response() == null || e.response().code() >= 500;
+        }
+        return cause instanceof IOException || cause instanceof ServerException || cause instanceof InvalidResponseException;
+    }
+
+    /**
+     * At most capacity buffers, allocated as first needed and reused after. Acquiring waits while
+     * all are in use.
+     */
+    private static final class PartBuffers {
+        private final int bufferSize;
+        private final Semaphore available;
+        private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+        private PartBuffers(int bufferSize, int capacity) {
+            this.bufferSize = bufferSize;
+            this.available = new Semaphore(capacity);
+        }
+
+        private byte[] acquire() throws InterruptedException {
+            available.acquire();
+            byte[] buffer = free.poll();
+            return buffer != null ? buffer : new byte[bufferSize];
+        }
+
+        private void release(byte[] buffer) {
+            free.offer(buffer);
+            available.release();
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package org.jazz.jazzflix.service.video;
+
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.jazz.jazzflix.config.upload.UploadProperties;
+import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
+import org.jazz.jazzflix.dto.video.VideoUploadEvent;
+import org.jazz.jazzflix.entity.video.TblVideoAssest;
+import org.jazz.jazzflix.exception.VideoStorageException;
+import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
+import org.jazz.jazzflix.service.ProgressService;
+import org.jazz.jazzflix.service.VideoTranscodingService;
+import org.jazz.jazzflix.service.transcoding.Mp4BoxScanner;
+import org.jazz.jazzflix.service.transcoding.TranscodeInputResolver;
+import org.jazz.jazzflix.service.transcoding.TranscodingJobPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ws.schild.jave.Encoder;
+import ws.schild.jave.MultimediaObject;
+import ws.schild.jave.encode.EncodingAttributes;
+import ws.schild.jave.encode.VideoAttributes;
+import ws.schild.jave.info.MultimediaInfo;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The work after an original is stored, done in the background so an upload request ends once
+ * the bytes are in MinIO and the video row exists as UPLOADED. Three stages, each with its own
+ * threads and bounded queue:
+ * <ol>
+ *     <li>probe: picks an input ffmpeg can read (the captured head of the upload if it decodes on
+ *     its own, else the original through range requests) and reads the stream info,</li>
+ *     <li>thumbnail: extracts one frame and stores it,</li>
+ *     <li>fan-out: registers the renditions, publishes the transcoding jobs and the upload event,
+ *     and marks the video PROCESSED.</li>
+ * </ol>
+ * A full queue holds back the stage feeding it, up to the upload requests. A video without a
+ * usable thumbnail goes on without one. Progress is reported under the upload id.
+ *
+ * Nothing here is durable: videos a crash or redeploy left UPLOADED are picked up again by a
+ * periodic sweep, and the fan-out claims the video with a conditional update so it runs once.
+ */
+@Slf4j
+@Component
+public class PostUploadPipeline {
+
+    private static final List<String> QUALITIES = Arrays.asList("1080p", "720p", "480p", "360p");
+
+    private final TblVideoAssestRepository videoAssestRepository;
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final TranscodeInputResolver inputResolver;
+    private final VideoTranscodingService transcodingService;
+    private final TranscodingProperties transcodingProperties;
+    private final TranscodingJobPublisher jobPublisher;
+    private final KafkaTemplate<String, VideoUploadEvent> kafkaTemplate;
+    private final String videoUploadTopic;
+    private final ProgressService progressService;
+    private final UploadProperties.Pipeline settings;
+    private final Stage probeStage;
+    private final Stage thumbnailStage;
+    private final Stage fanOutStage;
+    // Videos queued or running on this node, so the sweep does not queue them twice
+    private final Set<UUID> inProgress = ConcurrentHashMap.newKeySet();
+
+    public PostUploadPipeline(TblVideoAssestRepository videoAssestRepository,
+                              MinioClient minioClient,
+                              MinioProperties minioProperties,
+                              TranscodeInputResolver inputResolver,
+                              VideoTranscodingService transcodingService,
+                              TranscodingProperties transcodingProperties,
+                              TranscodingJobPublisher jobPublisher,
+                              KafkaTemplate<String, VideoUploadEvent> kafkaTemplate,
+                              @Value("${app.kafka.topics.video-upload:video.uploaded}") String videoUploadTopic,
+                              ProgressService progressService,
+                              UploadProperties uploadProperties) {
+        this.videoAssestRepository = videoAssestRepository;
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.inputResolver = inputResolver;
+        this.transcodingService = transcodingService;
+        this.transcodingProperties = transcodingProperties;
+        this.jobPublisher = jobPublisher;
+        this.kafkaTemplate = kafkaTemplate;
+        this.videoUploadTopic = videoUploadTopic;
+        this.progressService = progressService;
+        this.settings = uploadProperties.getPipeline();
+        this.probeStage = new Stage("upload-probe", settings.getProbeThreads(), settings.getProbeQueueCapacity());
+        this.thumbnailStage = new Stage("upload-thumbnail", settings.getThumbnailThreads(), settings.getThumbnailQueueCapacity());
+        this.fanOutStage = new Stage("upload-fan-out", settings.getFanOutThreads(), settings.getFanOutQueueCapacity());
+    }
+
+    /**
+     * Queues a stored video, waiting while the probe queue is full. head is the upload's first
+     * bytes when they were captured, or null. False if the video is already queued here or the
+     * pipeline is shutting down; the sweep picks it up then.
+     */
+    public boolean submit(String uploadId, UUID videoId, byte[] head) {
+        if (!inProgress.add(videoId)) {
+            return false;
+        }
+        Job job = new Job(uploadId, videoId);
+        if (head != null && head.length > 0) {
+            try {
+                job.head = Files.createTempFile("video-head-", ".tmp");
+                Files.write(job.head, head);
+            } catch (IOException e) {
+                log.warn("Failed to spool the head of video {}, probing it from storage", videoId, e);
+                deleteHead(job);
+            }
+        }
+        progressService.updateStatus(uploadId, "QUEUED", "Video stored, waiting for processing...");
+        return handOff(probeStage, job, () -> probe(job));
+    }
+
+    private void probe(Job job) {
+        progressService.updateStatus(job.uploadId, "PROBING", "Probing video...");
+        try {
+            job.asset = videoAssestRepository.findById(job.videoId).orElse(null);
+            if (job.asset == null) {
+                log.warn("Video {} was removed before it was processed", job.videoId);
+                progressService.failProgress(job.uploadId, "Video was removed before it was processed");
+                release(job);
+                return;
+            }
+            try {
+                probeSource(job);
+            } catch (Exception e) {
+                log.warn("Failed to probe video {}, continuing without thumbnail", job.asset.getObjectKey(), e);
+            }
+        } catch (RuntimeException e) {
+            fail(job, e);
+            return;
+        }
+
+        if (job.info != null) {
+            handOff(thumbnailStage, job, () -> thumbnail(job));
+        } else {
+            deleteHead(job);
+            handOff(fanOutStage, job, () -> fanOut(job));
+        }
+    }
+
+    private void probeSource(Job job) throws Exception {
+        String objectKey = job.asset.getObjectKey();
+        if (job.head != null && isSelfContained(job.head)) {
+            try {
+                MultimediaObject source = new MultimediaObject(job.head.toFile());
+                MultimediaInfo info = source.getInfo();
+                if (info.getVideo() != null) {
+                    job.source = source;
+                    job.info = info;
+                    job.fromHead = true;
+                    return;
+                }
+            } catch (Exception e) {
+                log.info("Video stream not found in the first {} bytes of {}, reading it from storage",
+                        Files.size(job.head), objectKey);
+            }
+        }
+
+        MultimediaObject source = storedSource(objectKey);
+        MultimediaInfo info = source.getInfo();
+        if (info.getVideo() == null) {
+            throw new VideoStorageException("No video stream found in file");
+        }
+        job.source = source;
+        job.info = info;
+    }
+
+    private MultimediaObject storedSource(String objectKey) throws Exception {
+        return new MultimediaObject(URI.create(inputResolver.presignedUrl(objectKey)).toURL());
+    }
+
+    // A head with moov up front, or of a sequential container, decodes without the rest of the file
+    private static boolean isSelfContained(Path head) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(head.toFile(), "r")) {
+            long size = file.length();
+            Mp4BoxScanner.Layout layout = Mp4BoxScanner.scan((offset, length) -> {
+                if (offset >= size) {
+                    return new byte[0];
+                }
+                byte[] bytes = new byte[(int) Math.min(length, size - offset)];
+                file.seek(offset);
+                file.readFully(bytes);
+                return bytes;
+            }, size);
+            return layout == Mp4BoxScanner.Layout.STREAMABLE || layout == Mp4BoxScanner.Layout.NOT_MP4;
+        }
+    }
+
+    private void thumbnail(Job job) {
+        progressService.updateStatus(job.uploadId, "THUMBNAIL", "Extracting video thumbnail...");
+        String objectKey = job.asset.getObjectKey();
+        try {
+            String thumbnailObjectKey;
+            try {
+                thumbnailObjectKey = extractAndUploadThumbnail(job.source, job.info, objectKey);
+            } catch (Exception e) {
+                if (!job.fromHead) {
+                    throw e;
+                }
+                // The frame can lie past the captured head
+                log.info("Thumbnail not found in the head of {}, reading it from storage", objectKey);
+                thumbnailObjectKey = extractAndUploadThumbnail(storedSource(objectKey), job.info, objectKey);
+            }
+            videoAssestRepository.updateThumbnailObjectKey(job.videoId, thumbnailObjectKey);
+            job.asset.setThumbnailObjectKey(thumbnailObjectKey);
+        } catch (Exception e) {
+            log.warn("Failed to extract thumbnail for video {}, continuing without thumbnail", objectKey, e);
+        } finally {
+            deleteHead(job);
+        }
+        handOff(fanOutStage, job, () -> fanOut(job));
+    }
+
+    private String extractAndUploadThumbnail(MultimediaObject source, MultimediaInfo info, String videoObjectKey) throws Exception {
+        Path tempThumbnailPath = Files.createTempFile("thumbnail-", ".jpg");
+        try {
+            // Extract frame at 10% of video duration or 2 seconds, whichever is smaller
+            float captureAtSeconds = Math.min(2.0f, (info.getDuration() / 1000.0f) * 0.1f);
+
+            VideoAttributes videoAttrs = new VideoAttributes();
+            videoAttrs.setCodec("mjpeg");
+            videoAttrs.setSize(info.getVideo().getSize()); // Keep original size
+            videoAttrs.setFrameRate(1);
+
+            EncodingAttributes attrs = new EncodingAttributes();
+            attrs.setOutputFormat("image2");
+            attrs.setDuration(0.001f); // Extract single frame
+            attrs.setOffset(captureAtSeconds);
+            attrs.setVideoAttributes(videoAttrs);
+
+            new Encoder().encode(source, tempThumbnailPath.toFile(), attrs);
+
+            String thumbnailObjectKey = thumbnailKey(videoObjectKey);
+            try (FileInputStream thumbnailStream = new FileInputStream(tempThumbnailPath.toFile())) {
+                minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(minioProperties.getBucket())
+                        .object(thumbnailObjectKey)
+                        .stream(thumbnailStream, Files.size(tempThumbnailPath), -1)
+                        .contentType("image/jpeg")
+                        .build());
+            }
+            log.info("Successfully uploaded thumbnail {} for video {}", thumbnailObjectKey, videoObjectKey);
+            return thumbnailObjectKey;
+        } finally {
+            try {
+                Files.deleteIfExists(tempThumbnailPath);
+            } catch (Exception e) {
+                log.warn("Failed to delete temp thumbnail file: {}", tempThumbnailPath, e);
+            }
+        }
+    }
+
+    private void fanOut(Job job) {
+        progressService.updateStatus(job.uploadId, "TRANSCODING", "Starting video transcoding...");
+        TblVideoAssest asset = job.asset;
+        try {
+            if (videoAssestRepository.transitionStatus(job.videoId, "UPLOADED", "PROCESSED") != 1) {
+                log.info("Video {} was already processed", job.videoId);
+                progressService.completeProgress(job.uploadId, job.videoId.toString());
+                return;
+            }
+            try {
+                publish(asset);
+            } catch (RuntimeException e) {
+                // Left to the sweep
+                videoAssestRepository.transitionStatus(job.videoId, "PROCESSED", "UPLOADED");
+                throw e;
+            }
+            progressService.completeProgress(job.uploadId, job.videoId.toString());
+        } catch (RuntimeException e) {
+            log.error("Failed to start transcoding of video {}", job.videoId, e);
+            progressService.failProgress(job.uploadId, "Failed to start transcoding: " + e.getMessage());
+        } finally {
+            release(job);
+        }
+    }
+
+    private void publish(TblVideoAssest asset) {
+        transcodingService.registerPendingQualities(asset.getId(), QUALITIES);
+
+        if (transcodingProperties.getMode() == TranscodingProperties.Mode.LADDER) {
+            // One job decodes the original once and produces every rendition
+            jobPublisher.publish(transcodingEvent(asset, null, VideoTranscodingEvent.JobType.LADDER));
+        } else if (transcodingProperties.getChunked().isEnabled()) {
+            // The planner probes the source and either splits it into chunk jobs or falls back to per-quality jobs
+            jobPublisher.publish(transcodingEvent(asset, null, VideoTranscodingEvent.JobType.PLAN));
+        } else {
+            // Send transcoding tasks to Kafka for each quality
+            for (String quality : QUALITIES) {
+                jobPublisher.publish(transcodingEvent(asset, quality, VideoTranscodingEvent.JobType.QUALITY));
+            }
+        }
+
+        OffsetDateTime uploadedAt = OffsetDateTime.ofInstant(asset.getCreatedAt().toInstant(), ZoneOffset.UTC);
+        VideoUploadEvent event = new VideoUploadEvent(
+                asset.getId(),
+                asset.getObjectKey(),
+                asset.getBucket(),
+                asset.getSizeBytes(),
+                asset.getContentType(),
+                uploadedAt
+        );
+        kafkaTemplate.send(videoUploadTopic, asset.getId().toString(), event)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("Failed to publish video upload event for {}", asset.getId(), throwable);
+                    } else {
+                        log.info("Published video upload event for {} to topic {}", asset.getId(), videoUploadTopic);
+                    }
+                });
+    }
+
+    /**
+     * thumbnails/ plus the video key with its extension, if any, replaced by .jpg. Keys of
+     * streamed uploads without a file name have no extension.
+     */
+    static String thumbnailKey(String videoObjectKey) {
+        int dot = videoObjectKey.lastIndexOf('.');
+        String stem = dot > videoObjectKey.lastIndexOf('/') ? videoObjectKey.substring(0, dot) : videoObjectKey;
+        return "thumbnails/" + stem + ".jpg";
+    }
+
+    private static VideoTranscodingEvent transcodingEvent(TblVideoAssest asset, String quality, VideoTranscodingEvent.JobType jobType) {
+        VideoTranscodingEvent event = new VideoTranscodingEvent(asset.getId(), asset.getObjectKey(), asset.getContentType(), quality, jobType);
+        // Lets the transcoding scheduler run small uploads ahead of big ones
+        event.setSourceSizeBytes(asset.getSizeBytes());
+        return event;
+    }
+
+    @Scheduled(fixedDelayString = "${app.upload.pipeline.recovery-interval-ms:300000}",
+            initialDelayString = "${app.upload.pipeline.recovery-interval-ms:300000}")
+    public void resumeUnprocessed() {
+        try {
+            int resumed = 0;
+            for (TblVideoAssest asset : videoAssestRepository.findUnprocessed(settings.getRecoveryAfterMinutes(), 100)) {
+                // Never wait here, the scheduler thread is shared
+                if (!probeStage.hasRoom()) {
+                    break;
+                }
+                if (submit(asset.getId().toString(), asset.getId(), null)) {
+                    resumed++;
+                }
+            }
+            if (resumed > 0) {
+                log.info("Resumed processing of {} videos left UPLOADED", resumed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to resume unprocessed videos", e);
+        }
+    }
+
+    private boolean handOff(Stage stage, Job job, Runnable task) {
+        if (stage.submit(task)) {
+            return true;
+        }
+        log.warn("Post-upload pipeline is shutting down, video {} is left to the sweep", job.videoId);
+        release(job);
+        return false;
+    }
+
+    private void fail(Job job, RuntimeException e) {
+        log.error("Failed to process video {}", job.videoId, e);
+        progressService.failProgress(job.uploadId, "Failed to process video: " + e.getMessage());
+        release(job);
+    }
+
+    private void release(Job job) {
+        deleteHead(job);
+        inProgress.remove(job.videoId);
+    }
+
+    private static void deleteHead(Job job) {
+        if (job.head == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(job.head);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp video head file: {}", job.head, e);
+        }
+        job.head = null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeStage.shutdown();
+        thumbnailStage.shutdown();
+        fanOutStage.shutdown();
+    }
+
+    /**
+     * One video on its way through the stages, handed from one stage to the next.
+     */
+    private static final class Job {
+        private final String uploadId;
+        private final UUID videoId;
+        private Path head;
+        private TblVideoAssest asset;
+        private MultimediaObject source;
+        private MultimediaInfo info;
+        private boolean fromHead;
+
+        private Job(String uploadId, UUID videoId) {
+            this.uploadId = uploadId;
+            this.videoId = videoId;
+        }
+    }
+
+    /**
+     * Fixed threads over a bounded queue. Submitting waits while the queue is full.
+     */
+    private static final class Stage {
+        private final ThreadPoolExecutor executor;
+
+        private Stage(String name, int threads, int queueCapacity) {
+            AtomicInteger threadCount = new AtomicInteger();
+            int size = Math.max(1, threads);
+            this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (task, pool) -> {
+                        if (pool.isShutdown()) {
+                            throw new RejectedExecutionException(name + " is shut down");
+                        }
+                        try {
+                            pool.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while queueing for " + name, e);
+                        }
+                    });
+        }
+
+        private boolean submit(Runnable task) {
+            try {
+                executor.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        private boolean hasRoom() {
+            return executor.getQueue().remainingCapacity() > 0;
+        }
+
+        private void shutdown() {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
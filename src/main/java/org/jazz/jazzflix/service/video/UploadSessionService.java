@@ -0,0 +1,567 @@
+package org.jazz.jazzflix.service.video;
+
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.jazz.jazzflix.config.storage.MinioMultipartClient;
+import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.upload.UploadProperties;
+import org.jazz.jazzflix.dto.VideoUploadResponse;
+import org.jazz.jazzflix.dto.video.DirectUploadTicket;
+import org.jazz.jazzflix.dto.video.UploadSessionRequest;
+import org.jazz.jazzflix.dto.video.UploadSessionStatus;
+import org.jazz.jazzflix.dto.video.UploadedPart;
+import org.jazz.jazzflix.entity.video.TblUploadSession;
+import org.jazz.jazzflix.entity.video.TblVideoAssest;
+import org.jazz.jazzflix.exception.DataAlreadyExistsException;
+import org.jazz.jazzflix.exception.DataNotFoundException;
+import org.jazz.jazzflix.exception.InvalidDataException;
+import org.jazz.jazzflix.exception.VideoStorageException;
+import org.jazz.jazzflix.repository.video.TblUploadSessionRepository;
+import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable uploads. A session is one MinIO multipart upload with a fixed part size; clients PUT
+ * parts by number or offset, in any order and in parallel, and may resend a part after a dropped
+ * connection. Each part's body is streamed straight into its multipart part through a presigned
+ * PUT, so nothing is spooled or held whole on the app node. What was received is read back from
+ * MinIO, which keeps sessions resumable across restarts and nodes.
+ *
+ * Finalizing completes the multipart upload and then runs the same steps as a direct upload, see
+ * {@link VideoUploadService#registerStoredUpload}.
+ *
+ * A direct session differs only in who sends the parts: the client gets presigned part URLs and
+ * PUTs the bytes to MinIO itself, so app nodes handle metadata only. Its video row is created up
+ * front, AWAITING_UPLOAD, and finalizing checks the parts against the ETags the client got back.
+ *
+ * Finalizing holds a lease on the session. If the node dies mid-way, the next complete call or
+ * the periodic sweep takes over once the lease has run out.
+ */
+@Slf4j
+@Service
+public class UploadSessionService {
+
+    // S3 limits for multipart uploads
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final TblUploadSessionRepository sessionRepository;
+    private final MinioMultipartClient multipartClient;
+    private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final VideoUploadService videoUploadService;
+    private final TblVideoAssestRepository videoAssestRepository;
+    private final UploadProperties.Session settings;
+    private final UploadProperties.Direct directSettings;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public UploadSessionService(TblUploadSessionRepository sessionRepository,
+                                MinioMultipartClient multipartClient,
+                                MinioClient minioClient,
+                                MinioProperties minioProperties,
+                                VideoUploadService videoUploadService,
+                                TblVideoAssestRepository videoAssestRepository,
+                                UploadProperties uploadProperties) {
+        this.sessionRepository = sessionRepository;
+        this.multipartClient = multipartClient;
+        this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.videoUploadService = videoUploadService;
+        this.videoAssestRepository = videoAssestRepository;
+        this.settings = uploadProperties.getSession();
+        this.directSettings = uploadProperties.getDirect();
+    }
+
+    public UploadSessionStatus create(UploadSessionRequest request) {
+        return toStatus(open(request, false), List.of());
+    }
+
+    /**
+     * Opens a session whose parts the client PUTs to MinIO itself, with the first batch of part URLs.
+     */
+    public DirectUploadTicket createDirect(UploadSessionRequest request) {
+        TblUploadSession session = open(request, true);
+        return new DirectUploadTicket(session.getId(), session.getVideoId(), session.getSizeBytes(),
+                session.getPartSizeBytes(), session.partCount(), directSettings.getPartUrlExpirySeconds(),
+                partUrls(session, 1, directSettings.getPartUrlBatchSize()));
+    }
+
+    private TblUploadSession open(UploadSessionRequest request, boolean direct) {
+        String fileName = Optional.ofNullable(request.getFileName())
+                .filter(name -> !name.isBlank())
+                .orElse("video-" + System.currentTimeMillis());
+        long size = request.getSizeBytes();
+        if (size <= 0) {
+            throw new InvalidDataException("Video file must not be empty");
+        }
+        if (size > settings.getMaxSizeBytes()) {
+            throw new InvalidDataException("Video file exceeds the maximum size of " + settings.getMaxSizeBytes() + " bytes");
+        }
+
+        long partSize = request.getPartSizeBytes() != null ? request.getPartSizeBytes() : settings.getPartSizeBytes();
+        partSize = Math.max(Math.max(partSize, MIN_PART_SIZE), (size + MAX_PARTS - 1) / MAX_PARTS);
+
+        String objectKey = VideoUploadServiceImpl.buildObjectKey(fileName);
+        String uploadId;
+        try {
+            uploadId = multipartClient.startUpload(minioProperties.getBucket(), objectKey, request.getContentType());
+        } catch (Exception e) {
+            throw new VideoStorageException("Failed to start multipart upload in MinIO", e);
+        }
+
+        UUID videoId = null;
+        if (direct) {
+            TblVideoAssest asset = new TblVideoAssest();
+            asset.setOriginalFileName(fileName);
+            asset.setObjectKey(objectKey);
+            asset.setContentType(request.getContentType());
+            asset.setSizeBytes(size);
+            asset.setStatus("AWAITING_UPLOAD");
+            asset.setBucket(minioProperties.getBucket());
+            try {
+                videoId = videoAssestRepository.save(asset).getId();
+            } catch (RuntimeException e) {
+                abortUpload(objectKey, uploadId);
+                throw e;
+            }
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        TblUploadSession session = new TblUploadSession(UUID.randomUUID(), objectKey, fileName, request.getContentType(),
+                size, partSize, uploadId, "OPEN", videoId, now, now);
+        sessionRepository.save(session);
+        log.info("Opened {}upload session {} for {} ({} bytes in {} parts)", direct ? "direct " : "", session.getId(),
+                fileName, size, session.partCount());
+        return session;
+    }
+
+    /**
+     * Presigned URLs for count parts from the 1-based firstPart on, for a client that uploads to
+     * MinIO itself. Fetching them again gives fresh ones, e.g. once they expired.
+     */
+    public List<DirectUploadTicket.PartUrl> partUrls(UUID sessionId, int firstPart, Integer count) {
+        TblUploadSession session = openSession(sessionId);
+        if (firstPart < 1 || firstPart > session.partCount()) {
+            throw new InvalidDataException("Part number must be between 1 and " + session.partCount());
+        }
+        int batch = count != null && count > 0
+                ? Math.min(count, directSettings.getPartUrlBatchSize())
+                : directSettings.getPartUrlBatchSize();
+        List<DirectUploadTicket.PartUrl> urls = partUrls(session, firstPart, batch);
+        // Direct uploads that keep fetching URLs do not expire
+        sessionRepository.touch(sessionId);
+        return urls;
+    }
+
+    private List<DirectUploadTicket.PartUrl> partUrls(TblUploadSession session, int firstPart, int count) {
+        int lastPart = (int) Math.min((long) firstPart + count - 1, session.partCount());
+        List<DirectUploadTicket.PartUrl> urls = new ArrayList<>(Math.max(0, lastPart - firstPart + 1));
+        try {
+            for (int partNumber = firstPart; partNumber <= lastPart; partNumber++) {
+                String url = multipartClient.presignPublicPart(minioProperties.getBucket(), session.getObjectKey(),
+                        session.getMultipartUploadId(), partNumber, directSettings.getPartUrlExpirySeconds());
+                urls.add(new DirectUploadTicket.PartUrl(partNumber, (partNumber - 1) * session.getPartSizeBytes(),
+                        session.partLength(partNumber), url));
+            }
+        } catch (Exception e) {
+            throw new VideoStorageException("Failed to presign the part URLs of upload session " + session.getId(), e);
+        }
+        return urls;
+    }
+
+    /**
+     * Stores one part, partNumber is 1-based. Sending a part again replaces it.
+     */
+    public UploadedPart putPart(UUID sessionId, int partNumber, InputStream body, long contentLength) {
+        TblUploadSession session = openSession(sessionId);
+        if (partNumber < 1 || partNumber > session.partCount()) {
+            throw new InvalidDataException("Part number must be between 1 and " + session.partCount());
+        }
+        long expected = session.partLength(partNumber);
+        if (contentLength != expected) {
+            throw new InvalidDataException("Part " + partNumber + " must be " + expected + " bytes, got " + contentLength);
+        }
+
+        String etag = forward(session, partNumber, body, expected);
+        // Uploads that keep sending parts do not expire
+        sessionRepository.touch(sessionId);
+        return new UploadedPart(partNumber, expected, etag);
+    }
+
+    /**
+     * Stores the part starting at offset, which has to be on a part boundary.
+     */
+    public UploadedPart putPartAt(UUID sessionId, long offset, InputStream body, long contentLength) {
+        TblUploadSession session = openSession(sessionId);
+        if (offset < 0 || offset >= session.getSizeBytes() || offset % session.getPartSizeBytes() != 0) {
+            throw new InvalidDataException("Offset must be a multiple of the part size " + session.getPartSizeBytes()
+                    + " below " + session.getSizeBytes());
+        }
+        return putPart(sessionId, (int) (offset / session.getPartSizeBytes()) + 1, body, contentLength);
+    }
+
+    private String forward(TblUploadSession session, int partNumber, InputStream body, long length) {
+        try {
+            String url = multipartClient.presignPart(minioProperties.getBucket(), session.getObjectKey(),
+                    session.getMultipartUploadId(), partNumber, settings.getPartUrlExpirySeconds());
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> body), length))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new VideoStorageException("MinIO rejected part " + partNumber + " with " + response.statusCode() + ": " + response.body());
+            }
+            return response.headers().firstValue("ETag").map(etag -> etag.replace("\"", "")).orElse("");
+        } catch (IOException e) {
+            throw new VideoStorageException("Failed to store part " + partNumber + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VideoStorageException("Interrupted while storing part " + partNumber, e);
+        } catch (VideoStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new VideoStorageException("Failed to store part " + partNumber, e);
+        }
+    }
+
+    public UploadSessionStatus status(UUID sessionId) {
+        TblUploadSession session = findSession(sessionId);
+        if (!"OPEN".equals(session.getStatus())) {
+            // The multipart upload is gone once completed or aborted
+            return toStatus(session, List.of());
+        }
+        return toStatus(session, uploadedParts(session));
+    }
+
+    /**
+     * Completes the multipart upload once every part is in, then registers the video. Calling it
+     * again after a failure in registration retries only that, and after the finalize lease ran out
+     * it resumes a finalization that never finished.
+     *
+     * reportedParts are the parts as the client saw them stored; a stored part whose ETag differs
+     * from the reported one, e.g. overwritten by a stray retry, fails the completion. They are
+     * optional for parts sent through this service, but required for every part of a direct
+     * session, whose bytes never pass through it.
+     */
+    public VideoUploadResponse complete(UUID sessionId, List<UploadedPart> reportedParts) {
+        TblUploadSession session = findSession(sessionId);
+        long lease = settings.getFinalizeLeaseMinutes();
+
+        if (sessionRepository.transition(sessionId, "OPEN", "COMPLETING") == 1
+                || sessionRepository.reclaim(sessionId, "COMPLETING", lease) == 1) {
+            store(session, reportedParts);
+        }
+
+        if (sessionRepository.transition(sessionId, "STORED", "REGISTERING") != 1
+                && sessionRepository.reclaim(sessionId, "REGISTERING", lease) != 1) {
+            TblUploadSession current = findSession(sessionId);
+            if ("COMPLETED".equals(current.getStatus())) {
+                throw new DataAlreadyExistsException("Upload session " + sessionId + " was already finalized as video " + current.getVideoId());
+            }
+            if ("ABORTED".equals(current.getStatus())) {
+                throw new DataNotFoundException("Upload session " + sessionId + " was aborted");
+            }
+            throw new DataAlreadyExistsException("Upload session " + sessionId + " is already being finalized");
+        }
+
+        return register(session);
+    }
+
+    // Runs with the session COMPLETING
+    private void store(TblUploadSession session, List<UploadedPart> reportedParts) {
+        try {
+            assemble(session, reportedParts);
+        } catch (RuntimeException e) {
+            sessionRepository.transition(session.getId(), "COMPLETING", "OPEN");
+            throw e;
+        }
+        sessionRepository.transition(session.getId(), "COMPLETING", "STORED");
+    }
+
+    // Runs with the session REGISTERING
+    private VideoUploadResponse register(TblUploadSession session) {
+        UUID sessionId = session.getId();
+        try {
+            VideoUploadResponse response = session.getVideoId() != null
+                    ? videoUploadService.registerStoredVideo(sessionId.toString(), session.getVideoId())
+                    : videoUploadService.registerStoredUpload(sessionId.toString(), session.getObjectKey(),
+                            session.getOriginalFileName(), session.getContentType(), session.getSizeBytes());
+            sessionRepository.markCompleted(sessionId, response.getVideo().getUuid());
+            log.info("Upload session {} finalized as video {}", sessionId, response.getVideo().getUuid());
+            return response;
+        } catch (RuntimeException e) {
+            sessionRepository.transition(sessionId, "REGISTERING", "STORED");
+            throw e;
+        }
+    }
+
+    private void assemble(TblUploadSession session, List<UploadedPart> reportedParts) {
+        Map<Integer, Part> received = new HashMap<>();
+        try {
+            for (Part part : multipartClient.listUploadedParts(minioProperties.getBucket(), session.getObjectKey(),
+                    session.getMultipartUploadId())) {
+                received.put(part.partNumber(), part);
+            }
+        } catch (Exception e) {
+            if (isAssembled(session, e)) {
+                log.info("Upload session {} was already assembled by an earlier attempt", session.getId());
+                return;
+            }
+            throw new VideoStorageException("Failed to list the parts of upload session " + session.getId(), e);
+        }
+        Map<Integer, String> reportedEtags = new HashMap<>();
+        if (reportedParts != null) {
+            for (UploadedPart part : reportedParts) {
+                if (part.etag() != null && !part.etag().isBlank()) {
+                    reportedEtags.put(part.partNumber(), unquote(part.etag()));
+                }
+            }
+        }
+
+        List<Part> parts = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        List<Integer> mismatched = new ArrayList<>();
+        List<Integer> unreported = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= session.partCount(); partNumber++) {
+            Part part = received.get(partNumber);
+            String reportedEtag = reportedEtags.get(partNumber);
+            if (part == null || part.partSize() != session.partLength(partNumber)) {
+                missing.add(partNumber);
+            } else if (reportedEtag == null && session.getVideoId() != null) {
+                unreported.add(partNumber);
+            } else if (reportedEtag != null && !reportedEtag.equals(unquote(part.etag()))) {
+                mismatched.add(partNumber);
+            } else {
+                parts.add(new Part(partNumber, part.etag()));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new InvalidDataException("Upload session " + session.getId() + " is missing parts " + abbreviate(missing));
+        }
+        if (!unreported.isEmpty()) {
+            throw new InvalidDataException("Upload session " + session.getId() + " is a direct upload, report the ETags of parts "
+                    + abbreviate(unreported) + " on completion");
+        }
+        if (!mismatched.isEmpty()) {
+            throw new InvalidDataException("Upload session " + session.getId() + " has parts " + abbreviate(mismatched)
+                    + " stored with another ETag than reported, upload them again");
+        }
+
+        try {
+            multipartClient.completeUpload(minioProperties.getBucket(), session.getObjectKey(), session.getMultipartUploadId(), parts);
+        } catch (Exception e) {
+            if (isAssembled(session, e)) {
+                return;
+            }
+            throw new VideoStorageException("Failed to complete multipart upload in MinIO", e);
+        }
+    }
+
+    /**
+     * Whether a multipart call failed because an earlier attempt completed the upload already:
+     * the upload is gone and the object is there, at full size.
+     */
+    private boolean isAssembled(TblUploadSession session, Exception failure) {
+        if (!(failure instanceof ErrorResponseException e) || !"NoSuchUpload".equals(e.errorResponse().code())) {
+            return false;
+        }
+        try {
+            return minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioProperties.getBucket())
+                    .object(session.getObjectKey())
+                    .build()).size() == session.getSizeBytes();
+        } catch (Exception statFailure) {
+            return false;
+        }
+    }
+
+    private static String abbreviate(List<Integer> partNumbers) {
+        return partNumbers.subList(0, Math.min(20, partNumbers.size())) + (partNumbers.size() > 20 ? "..." : "");
+    }
+
+    private static String unquote(String etag) {
+        return etag.replace("\"", "");
+    }
+
+    public void abort(UUID sessionId) {
+        TblUploadSession session = findSession(sessionId);
+        if (sessionRepository.transition(sessionId, "OPEN", "ABORTED") != 1) {
+            throw new InvalidDataException("Upload session " + sessionId + " can no longer be aborted");
+        }
+        abortUpload(session);
+    }
+
+    @Scheduled(fixedDelayString = "${app.upload.session.cleanup-interval-ms:3600000}",
+            initialDelayString = "${app.upload.session.cleanup-interval-ms:3600000}")
+    public void sweep() {
+        abortExpired();
+        resumeStalled();
+    }
+
+    private void abortExpired() {
+        try {
+            int aborted = 0;
+            for (TblUploadSession session : sessionRepository.findExpired(settings.getExpiryHours(), 100)) {
+                if (sessionRepository.transition(session.getId(), "OPEN", "ABORTED") == 1) {
+                    abortUpload(session);
+                    aborted++;
+                }
+            }
+            if (aborted > 0) {
+                log.info("Aborted {} expired upload sessions", aborted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to abort expired upload sessions", e);
+        }
+    }
+
+    /**
+     * Finalizations left behind by a crash or redeploy: a session assembled in MinIO, or stopped
+     * during or after that, is registered; one stopped before is opened again, so its client can
+     * complete it with its ETags or the expiry drops it.
+     */
+    private void resumeStalled() {
+        long lease = settings.getFinalizeLeaseMinutes();
+        try {
+            int resumed = 0;
+            for (TblUploadSession session : sessionRepository.findStalled(lease, 100)) {
+                UUID sessionId = session.getId();
+                if ("COMPLETING".equals(session.getStatus())) {
+                    if (sessionRepository.reclaim(sessionId, "COMPLETING", lease) != 1) {
+                        continue;
+                    }
+                    if (!isAssembled(session)) {
+                        sessionRepository.transition(sessionId, "COMPLETING", "OPEN");
+                        log.info("Reopened upload session {}, its finalization stopped before assembly", sessionId);
+                        continue;
+                    }
+                    sessionRepository.transition(sessionId, "COMPLETING", "STORED");
+                }
+                if (sessionRepository.transition(sessionId, "STORED", "REGISTERING") != 1
+                        && sessionRepository.reclaim(sessionId, "REGISTERING", lease) != 1) {
+                    continue;
+                }
+                try {
+                    register(session);
+                    resumed++;
+                } catch (RuntimeException e) {
+                    log.warn("Failed to register the video of upload session {}: {}", sessionId, e.getMessage());
+                }
+            }
+            if (resumed > 0) {
+                log.info("Finalized {} stalled upload sessions", resumed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to resume stalled upload sessions", e);
+        }
+    }
+
+    private boolean isAssembled(TblUploadSession session) {
+        try {
+            multipartClient.listUploadedParts(minioProperties.getBucket(), session.getObjectKey(), session.getMultipartUploadId());
+            return false;
+        } catch (Exception e) {
+            return isAssembled(session, e);
+        }
+    }
+
+    private void abortUpload(TblUploadSession session) {
+        if (session.getVideoId() != null) {
+            videoAssestRepository.transitionStatus(session.getVideoId(), "AWAITING_UPLOAD", "ABORTED");
+        }
+        abortUpload(session.getObjectKey(), session.getMultipartUploadId());
+    }
+
+    private void abortUpload(String objectKey, String multipartUploadId) {
+        try {
+            multipartClient.abortUpload(minioProperties.getBucket(), objectKey, multipartUploadId);
+        } catch (Exception e) {
+            // Left to the bucket's lifecycle rule for incomplete uploads
+            log.warn("Failed to abort multipart upload of {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    private List<Part> uploadedParts(TblUploadSession session) {
+        try {
+            return multipartClient.listUploadedParts(minioProperties.getBucket(), session.getObjectKey(), session.getMultipartUploadId());
+        } catch (Exception e) {
+            throw new VideoStorageException("Failed to list the parts of upload session " + session.getId(), e);
+        }
+    }
+
+    private TblUploadSession findSession(UUID sessionId) {
+        return sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new DataNotFoundException("Upload session not found: " + sessionId));
+    }
+
+    private TblUploadSession openSession(UUID sessionId) {
+        TblUploadSession session = findSession(sessionId);
+        if (!"OPEN".equals(session.getStatus())) {
+            throw new InvalidDataException("Upload session " + sessionId + " is " + session.getStatus() + " and takes no more parts");
+        }
+        return session;
+    }
+
+    private UploadSessionStatus toStatus(TblUploadSession session, List<Part> parts) {
+        boolean stored = !"OPEN".equals(session.getStatus()) && !"ABORTED".equals(session.getStatus());
+        List<UploadSessionStatus.ReceivedRange> ranges = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        long received = 0;
+
+        if (stored) {
+            received = session.getSizeBytes();
+            ranges.add(new UploadSessionStatus.ReceivedRange(0, session.getSizeBytes() - 1));
+        } else {
+            Map<Integer, Long> sizes = new HashMap<>();
+            for (Part part : parts) {
+                sizes.put(part.partNumber(), part.partSize());
+            }
+            long rangeStart = -1;
+            for (int partNumber = 1; partNumber <= session.partCount(); partNumber++) {
+                long start = (partNumber - 1) * session.getPartSizeBytes();
+                Long size = sizes.get(partNumber);
+                if (size != null && size == session.partLength(partNumber)) {
+                    received += size;
+                    if (rangeStart < 0) {
+                        rangeStart = start;
+                    }
+                } else {
+                    missing.add(partNumber);
+                    if (rangeStart >= 0) {
+                        ranges.add(new UploadSessionStatus.ReceivedRange(rangeStart, start - 1));
+                        rangeStart = -1;
+                    }
+                }
+            }
+            if (rangeStart >= 0) {
+                ranges.add(new UploadSessionStatus.ReceivedRange(rangeStart, session.getSizeBytes() - 1));
+            }
+        }
+
+        return new UploadSessionStatus(session.getId(), session.getStatus(), session.getOriginalFileName(),
+                session.getSizeBytes(), session.getPartSizeBytes(), session.partCount(), received, ranges, missing,
+                session.getVideoId());
+    }
+}
@@ -1,30 +1,218 @@
 package org.jazz.jazzflix.service.video;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.jazz.jazzflix.config.kafka.TranscodingListenerConfig;
 import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
 import org.jazz.jazzflix.service.VideoTranscodingService;
+import org.jazz.jazzflix.service.transcoding.ChunkedTranscodingService;
+import org.jazz.jazzflix.service.transcoding.TranscodingAcknowledger;
+import org.jazz.jazzflix.service.transcoding.TranscodingDeadLetterService;
+import org.jazz.jazzflix.service.transcoding.TranscodingJobLedger;
+import org.jazz.jazzflix.service.transcoding.TranscodingJobPublisher;
+import org.jazz.jazzflix.service.transcoding.TranscodingScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.DestinationTopicResolver;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Consumes video.transcoding. The listener claims each job in the job ledger, so redeliveries and
+ * duplicates of a job never run twice, hands it to the scheduler and returns, so the scheduler
+ * sees every job this instance has taken and orders them by its own rules. Once maxQueuedJobs
+ * wait for budget the listener containers are paused, and resumed when half of them have started.
+ *
+ * Records are acknowledged from the job's completion, in offset order per partition, so an offset
+ * is committed once the job's output is in MinIO. A failed job is forwarded to the retry topics
+ * (video.transcoding-retry-N, exponential delays, the main partition keeps moving) and finally to
+ * video.transcoding-dlt, the same way the retry topic error handler does. Only a job that reaches
+ * the DLT is recorded as failed, in the ledger and on its renditions.
+ */
 @Service
 public class VideoTranscodingConsumer {
 
     private static final Logger log = LoggerFactory.getLogger(VideoTranscodingConsumer.class);
 
+    private static final String LISTENER_ID = "transcoding";
+
     private final VideoTranscodingService transcodingService;
+    private final ChunkedTranscodingService chunkedTranscodingService;
+    private final TranscodingScheduler scheduler;
+    private final TranscodingJobLedger jobLedger;
+    private final TranscodingAcknowledger acknowledger;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    // Registered while the listener is set up, after this bean is created
+    private final ObjectProvider<DestinationTopicResolver> destinationTopicResolver;
+    private final int maxQueuedJobs;
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private volatile DeadLetterPublishingRecoverer retryForwarder;
 
-    public VideoTranscodingConsumer(VideoTranscodingService transcodingService) {
+    public VideoTranscodingConsumer(VideoTranscodingService transcodingService,
+                                    ChunkedTranscodingService chunkedTranscodingService,
+                                    TranscodingScheduler scheduler,
+                                    TranscodingJobLedger jobLedger,
+                                    TranscodingAcknowledger acknowledger,
+                                    KafkaListenerEndpointRegistry listenerRegistry,
+                                    ObjectProvider<DestinationTopicResolver> destinationTopicResolver,
+                                    @Value("${app.kafka.transcoding.max-queued-jobs:32}") int maxQueuedJobs) {
         this.transcodingService = transcodingService;
+        this.chunkedTranscodingService = chunkedTranscodingService;
+        this.scheduler = scheduler;
+        this.jobLedger = jobLedger;
+        this.acknowledger = acknowledger;
+        this.listenerRegistry = listenerRegistry;
+        this.destinationTopicResolver = destinationTopicResolver;
+        this.maxQueuedJobs = Math.max(1, maxQueuedJobs);
     }
 
-    @KafkaListener(topics = "${app.kafka.topics.video-transcoding:video.transcoding}", groupId = "transcoding-group")
-    public void handleTranscoding(VideoTranscodingEvent event) {
-        log.info("Received transcoding event for video {} quality {}", event.getVideoId(), event.getQuality());
+    @RetryableTopic(
+            attempts = "${app.kafka.transcoding.retry.attempts:4}",
+            backoff = @Backoff(
+                    delayExpression = "${app.kafka.transcoding.retry.delay-ms:30000}",
+                    multiplierExpression = "${app.kafka.transcoding.retry.multiplier:4}",
+                    maxDelayExpression = "${app.kafka.transcoding.retry.max-delay-ms:1800000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            listenerContainerFactory = TranscodingListenerConfig.CONTAINER_FACTORY,
+            // Malformed events fail the same way on every attempt
+            exclude = {IllegalArgumentException.class, NullPointerException.class})
+    @KafkaListener(id = LISTENER_ID, topics = "${app.kafka.topics.video-transcoding:video.transcoding}", groupId = "transcoding-group",
+            containerFactory = TranscodingListenerConfig.CONTAINER_FACTORY,
+            concurrency = "${app.kafka.transcoding.concurrency:4}")
+    public void handleTranscoding(ConsumerRecord<String, VideoTranscodingEvent> record, Acknowledgment acknowledgment) {
+        VideoTranscodingEvent event = record.value();
+        acknowledger.track(record, acknowledgment);
+        boolean claimed = false;
         try {
-            transcodingService.transcodeVideoQualityAsync(event.getVideoId(), event.getOriginalObjectKey(), event.getContentType(), event.getQuality());
+            log.info("Received transcoding event for video {} quality {} job type {}", event.getVideoId(), event.getQuality(), event.getJobType());
+            if (!jobLedger.claim(event)) {
+                // Already completed, or another worker holds a live lease on it
+                acknowledger.done(record);
+                return;
+            }
+            claimed = true;
+
+            VideoTranscodingEvent.JobType jobType = event.getJobType() == null ? VideoTranscodingEvent.JobType.QUALITY : event.getJobType();
+            // The scheduler decides when the job runs, within this instance's CPU budget
+            scheduler.submit(event, switch (jobType) {
+                case LADDER -> () -> transcodingService.transcodeVideo(event.getVideoId(), event.getOriginalObjectKey(), event.getContentType());
+                case PLAN -> () -> chunkedTranscodingService.handlePlan(event);
+                case CHUNK -> () -> chunkedTranscodingService.handleChunk(event);
+                case AUDIO -> () -> chunkedTranscodingService.handleAudio(event);
+                default -> () -> transcodingService.transcodeVideoQuality(event.getVideoId(), event.getOriginalObjectKey(), event.getContentType(), event.getQuality());
+            }).whenComplete((result, error) -> finished(record, error));
         } catch (Exception e) {
-            log.error("Failed to process transcoding for video {} quality {}", event.getVideoId(), event.getQuality(), e);
+            if (claimed) {
+                jobLedger.fail(event);
+            }
+            failed(record, e);
+            return;
+        }
+
+        if (scheduler.queued() >= maxQueuedJobs && paused.compareAndSet(false, true)) {
+            log.info("{} transcoding jobs waiting for budget, pausing the transcoding listeners", scheduler.queued());
+            containers(true);
+        }
+    }
+
+    private void finished(ConsumerRecord<String, VideoTranscodingEvent> record, Throwable error) {
+        VideoTranscodingEvent event = record.value();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            jobLedger.complete(event);
+            acknowledger.done(record);
+        } else if (cause instanceof CancellationException || cause instanceof InterruptedException) {
+            // Shutdown cancelled or interrupted the job, it did not fail on its own: hand it back
+            // and leave the record uncommitted, so it is redelivered once the partition moves
+            jobLedger.abandon(event);
+        } else {
+            jobLedger.fail(event);
+            failed(record, cause instanceof Exception exception ? exception : new IllegalStateException(cause));
+        }
+
+        if (paused.get() && scheduler.queued() <= maxQueuedJobs / 2 && scheduler.isAccepting() && paused.compareAndSet(true, false)) {
+            log.info("Resuming the transcoding listeners, {} jobs waiting for budget", scheduler.queued());
+            containers(false);
+        }
+    }
+
+    private void failed(ConsumerRecord<String, VideoTranscodingEvent> record, Exception failure) {
+        VideoTranscodingEvent event = record.value();
+        try {
+            // Routed by the job's own failure, so excluded exceptions go straight to the DLT
+            retryForwarder().accept(record, failure);
+            log.warn("Transcoding job {} for video {} failed, forwarded from {}: {}",
+                    TranscodingJobPublisher.label(event), event.getVideoId(), record.topic(), failure.toString());
+            acknowledger.done(record);
+        } catch (RuntimeException e) {
+            // Left uncommitted, the record is redelivered once the partition moves
+            log.error("Failed to forward failed transcoding job {} for video {} to the retry topics",
+                    TranscodingJobPublisher.label(event), event.getVideoId(), e);
+        }
+    }
+
+    private DeadLetterPublishingRecoverer retryForwarder() {
+        DeadLetterPublishingRecoverer forwarder = retryForwarder;
+        if (forwarder == null) {
+            forwarder = new DeadLetterPublishingRecovererFactory(destinationTopicResolver.getObject()).create(LISTENER_ID);
+            retryForwarder = forwarder;
+        }
+        return forwarder;
+    }
+
+    private void containers(boolean pause) {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            String id = container.getListenerId();
+            if (id == null || !id.startsWith(LISTENER_ID) || id.endsWith(TranscodingDeadLetterService.DLT_SUFFIX)) {
+                continue;
+            }
+            if (pause) {
+                container.pause();
+            } else {
+                container.resume();
+            }
+        }
+    }
+
+    @DltHandler
+    public void handleDeadLetter(VideoTranscodingEvent event,
+                                 @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                 Acknowledgment acknowledgment) {
+        // The record stays in the DLT, see TranscodingAdminController for inspection and replay
+        log.error("Transcoding job {} for video {} exhausted its retries and was parked in {}",
+                TranscodingJobPublisher.label(event), event.getVideoId(), topic);
+        try {
+            // Only now the job's output counts as failed, earlier attempts left it waiting for a retry
+            if (jobLedger.exhausted(event)) {
+                VideoTranscodingEvent.JobType jobType = event.getJobType() == null ? VideoTranscodingEvent.JobType.QUALITY : event.getJobType();
+                switch (jobType) {
+                    case LADDER -> transcodingService.ladderFailed(event.getVideoId());
+                    case PLAN -> chunkedTranscodingService.planFailed(event);
+                    case CHUNK -> chunkedTranscodingService.chunkFailed(event);
+                    case AUDIO -> chunkedTranscodingService.audioFailed(event);
+                    default -> transcodingService.qualityFailed(event.getVideoId(), event.getQuality());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to record the failure of transcoding job {} for video {}",
+                    TranscodingJobPublisher.label(event), event.getVideoId(), e);
         }
+        acknowledgment.acknowledge();
     }
-}
\ No newline at end of file
+}
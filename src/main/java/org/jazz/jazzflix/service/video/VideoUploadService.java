@@ -3,6 +3,28 @@ package org.jazz.jazzflix.service.video;
 import org.jazz.jazzflix.dto.VideoUploadResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.util.UUID;
+
 public interface VideoUploadService {
     VideoUploadResponse handleUpload(MultipartFile file);
+
+    /**
+     * Stores a raw request body as it is read, without spooling it to disk first. sizeBytes is
+     * the Content-Length, or -1 for a chunked body.
+     */
+    VideoUploadResponse handleStreamUpload(InputStream body, long sizeBytes, String fileName, String contentType);
+
+    /**
+     * Runs the steps after storage (thumbnail, metadata, transcoding, upload event) for an original
+     * that is already in the bucket under objectKey, e.g. assembled from a resumable upload.
+     */
+    VideoUploadResponse registerStoredUpload(String uploadId, String objectKey, String originalFileName,
+                                             String contentType, long sizeBytes);
+
+    /**
+     * Same as registerStoredUpload, for a video row created before its original was uploaded,
+     * e.g. by a direct upload.
+     */
+    VideoUploadResponse registerStoredVideo(String uploadId, UUID videoId);
 }
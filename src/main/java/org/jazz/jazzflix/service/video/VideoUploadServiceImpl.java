@@ -1,45 +1,32 @@
 package org.jazz.jazzflix.service.video;
 
 import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
 import org.jazz.jazzflix.config.storage.MinioProperties;
+import org.jazz.jazzflix.config.upload.UploadProperties;
 import org.jazz.jazzflix.dto.VideoUploadResponse;
 import org.jazz.jazzflix.dto.WatchModel;
-import org.jazz.jazzflix.dto.video.VideoUploadEvent;
-import org.jazz.jazzflix.dto.video.VideoTranscodingEvent;
 import org.jazz.jazzflix.entity.video.TblVideoAssest;
+import org.jazz.jazzflix.exception.DataNotFoundException;
 import org.jazz.jazzflix.exception.InvalidDataException;
 import org.jazz.jazzflix.exception.VideoStorageException;
 import org.jazz.jazzflix.repository.video.TblVideoAssestRepository;
 import org.jazz.jazzflix.service.ProgressMultipartFile;
 import org.jazz.jazzflix.service.ProgressService;
-import org.jazz.jazzflix.service.VideoTranscodingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import ws.schild.jave.Encoder;
-import ws.schild.jave.MultimediaObject;
-import ws.schild.jave.encode.EncodingAttributes;
-import ws.schild.jave.encode.VideoAttributes;
-import ws.schild.jave.info.MultimediaInfo;
-import ws.schild.jave.info.VideoInfo;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.util.Arrays;
-import java.util.List;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -51,31 +38,25 @@ public class VideoUploadServiceImpl implements VideoUploadService {
     private final MinioClient minioClient;
     private final MinioProperties minioProperties;
     private final TblVideoAssestRepository tblVideoAssestRepository;
-    private final KafkaTemplate<String, VideoUploadEvent> kafkaTemplate;
-    private final KafkaTemplate<String, VideoTranscodingEvent> transcodingKafkaTemplate;
-    private final String videoUploadTopic;
-    private final String videoTranscodingTopic;
     private final ProgressService progressService;
-    private final VideoTranscodingService transcodingService;
+    private final UploadProperties uploadProperties;
+    private final ParallelMultipartUploader multipartUploader;
+    private final PostUploadPipeline pipeline;
 
     public VideoUploadServiceImpl(MinioClient minioClient,
                                   MinioProperties minioProperties,
                                   TblVideoAssestRepository tblVideoAssestRepository,
-                                  KafkaTemplate<String, VideoUploadEvent> kafkaTemplate,
-                                  KafkaTemplate<String, VideoTranscodingEvent> transcodingKafkaTemplate,
-                                  @Value("${app.kafka.topics.video-upload:video.uploaded}") String videoUploadTopic,
-                                  @Value("${app.kafka.topics.video-transcoding:video.transcoding}") String videoTranscodingTopic,
                                   ProgressService progressService,
-                                  VideoTranscodingService transcodingService) {
+                                  UploadProperties uploadProperties,
+                                  ParallelMultipartUploader multipartUploader,
+                                  PostUploadPipeline pipeline) {
         this.minioClient = minioClient;
         this.minioProperties = minioProperties;
         this.tblVideoAssestRepository = tblVideoAssestRepository;
-        this.kafkaTemplate = kafkaTemplate;
-        this.transcodingKafkaTemplate = transcodingKafkaTemplate;
-        this.videoUploadTopic = videoUploadTopic;
-        this.videoTranscodingTopic = videoTranscodingTopic;
         this.progressService = progressService;
-        this.transcodingService = transcodingService;
+        this.uploadProperties = uploadProperties;
+        this.multipartUploader = multipartUploader;
+        this.pipeline = pipeline;
     }
 
     @Override
@@ -102,84 +83,142 @@ public class VideoUploadServiceImpl implements VideoUploadService {
                 progressService.updateProgress(uploadId, bytesRead);
             });
 
-        uploadToMinio(progressFile, objectKey, uploadId);
+        byte[] head = uploadToMinio(progressFile, objectKey, uploadId);
 
-        // Extract and upload thumbnail
-        progressService.updateStatus(uploadId, "THUMBNAIL", "Extracting video thumbnail...");
+        return register(uploadId, newAsset(objectKey, originalFileName, file.getContentType(), file.getSize()), head);
+    }
+
+    @Override
+    public VideoUploadResponse handleStreamUpload(InputStream body, long sizeBytes, String fileName, String contentType) {
+        String uploadId = UUID.randomUUID().toString();
+        UploadProperties.Stream settings = uploadProperties.getStream();
+
+        if (sizeBytes == 0) {
+            throw new InvalidDataException("Video file must not be empty");
+        }
+        if (sizeBytes > settings.getMaxSizeBytes()) {
+            throw new InvalidDataException("Video file exceeds the maximum size of " + settings.getMaxSizeBytes() + " bytes");
+        }
 
-        String thumbnailObjectKey = null;
+        String originalFileName = Optional.ofNullable(fileName)
+                .filter(name -> !name.isBlank())
+                .orElse("video-" + System.currentTimeMillis());
+        progressService.createProgress(uploadId, originalFileName, Math.max(sizeBytes, 0));
+
+        String objectKey = buildObjectKey(originalFileName);
+
+        // The body is read exactly once: into MinIO, with its head kept aside for the thumbnail.
+        // A chunked body has no declared length, so the limit is enforced on the bytes read and
+        // the uploader aborts the multipart upload when the stream fails.
+        HeadCaptureInputStream capture = new HeadCaptureInputStream(body, settings.getHeadBytes(), settings.getMaxSizeBytes(),
+                bytesRead -> progressService.updateProgress(uploadId, bytesRead));
         try {
-            thumbnailObjectKey = extractAndUploadThumbnail(file, objectKey);
-        } catch (Exception e) {
-            log.warn("Failed to extract thumbnail for video {}, continuing without thumbnail", objectKey, e);
+            progressService.updateStatus(uploadId, "UPLOADING", "Streaming video to storage...");
+
+            multipartUploader.upload(objectKey, contentType, capture, sizeBytes > 0 ? sizeBytes : -1);
+        } catch (IOException ex) {
+            rejectIfTooLarge(capture, objectKey, uploadId);
+            progressService.failProgress(uploadId, "Failed to read video content: " + ex.getMessage());
+            throw new VideoStorageException("Failed to read video content", ex);
+        } catch (Exception ex) {
+            rejectIfTooLarge(capture, objectKey, uploadId);
+            progressService.failProgress(uploadId, "Failed to store video in MinIO: " + ex.getMessage());
+            throw new VideoStorageException("Failed to store video in MinIO", ex);
         }
 
-        // Save metadata to database
-        progressService.updateStatus(uploadId, "PROCESSING", "Saving video metadata...");
+        long storedBytes = capture.getCount();
+        if (storedBytes == 0) {
+            removeQuietly(objectKey);
+            progressService.failProgress(uploadId, "Video file must not be empty");
+            throw new InvalidDataException("Video file must not be empty");
+        }
 
-        TblVideoAssest asset = new TblVideoAssest();
-        asset.setOriginalFileName(originalFileName);
-        asset.setObjectKey(objectKey);
-        asset.setContentType(file.getContentType());
-        asset.setSizeBytes(file.getSize());
-        asset.setStatus("UPLOADED");
-        asset.setBucket(minioProperties.getBucket());
-        asset.setThumbnailObjectKey(thumbnailObjectKey);
+        return register(uploadId, newAsset(objectKey, originalFileName, contentType, storedBytes), capture.head());
+    }
 
-        TblVideoAssest savedAsset = tblVideoAssestRepository.save(asset);
+    @Override
+    public VideoUploadResponse registerStoredUpload(String uploadId, String objectKey, String originalFileName,
+                                                    String contentType, long sizeBytes) {
+        if (progressService.getProgress(uploadId) == null) {
+            progressService.createProgress(uploadId, originalFileName, sizeBytes);
+        }
+        progressService.updateProgress(uploadId, sizeBytes);
+        Optional<TblVideoAssest> registered = tblVideoAssestRepository.findByObjectKey(objectKey);
+        if (registered.isPresent()) {
+            // A finalization taken over after a crash, the first attempt got this far
+            return response(uploadId, registered.get());
+        }
+        return register(uploadId, newAsset(objectKey, originalFileName, contentType, sizeBytes), null);
+    }
+
+    @Override
+    public VideoUploadResponse registerStoredVideo(String uploadId, UUID videoId) {
+        TblVideoAssest asset = tblVideoAssestRepository.findById(videoId)
+                .orElseThrow(() -> new DataNotFoundException("Video not found with ID: " + videoId));
+        if (progressService.getProgress(uploadId) == null) {
+            progressService.createProgress(uploadId, asset.getOriginalFileName(), asset.getSizeBytes());
+        }
+        progressService.updateProgress(uploadId, asset.getSizeBytes());
+        if (!"AWAITING_UPLOAD".equals(asset.getStatus())) {
+            // Registered by an earlier attempt
+            return response(uploadId, asset);
+        }
+        // The recovery sweep measures a video's age from when its bytes were stored
+        asset.setCreatedAt(Timestamp.from(Instant.now()));
+        return register(uploadId, asset, null);
+    }
 
-        // Create original quality record
-        progressService.updateStatus(uploadId, "TRANSCODING", "Starting video transcoding...");
-
-        // Send transcoding tasks to Kafka for each quality
-        List<String> qualities = Arrays.asList("1080p", "720p", "480p", "360p");
-        for (String quality : qualities) {
-            VideoTranscodingEvent transcodingEvent = new VideoTranscodingEvent(savedAsset.getId(), objectKey, file.getContentType(), quality);
-            transcodingKafkaTemplate.send(videoTranscodingTopic, savedAsset.getId().toString() + "-" + quality, transcodingEvent)
-                    .whenComplete((result, throwable) -> {
-                        if (throwable != null) {
-                            log.error("Failed to send transcoding event for {} quality {}", savedAsset.getId(), quality, throwable);
-                        } else {
-                            log.info("Sent transcoding event for {} quality {} to topic {}", savedAsset.getId(), quality, videoTranscodingTopic);
-                        }
-                    });
+    /**
+     * Turns a body read past the size limit into a client error. The aborted upload stored nothing,
+     * the removal only covers an SDK that completed it anyway.
+     */
+    private void rejectIfTooLarge(HeadCaptureInputStream capture, String objectKey, String uploadId) {
+        if (!capture.isLimitExceeded()) {
+            return;
         }
+        removeQuietly(objectKey);
+        String message = "Video file exceeds the maximum size of " + uploadProperties.getStream().getMaxSizeBytes() + " bytes";
+        progressService.failProgress(uploadId, message);
+        throw new InvalidDataException(message);
+    }
 
-        OffsetDateTime uploadedAt = OffsetDateTime.ofInstant(savedAsset.getCreatedAt().toInstant(), ZoneOffset.UTC);
+    private TblVideoAssest newAsset(String objectKey, String originalFileName, String contentType, long sizeBytes) {
+        TblVideoAssest asset = new TblVideoAssest();
+        asset.setOriginalFileName(originalFileName);
+        asset.setObjectKey(objectKey);
+        asset.setContentType(contentType);
+        asset.setSizeBytes(sizeBytes);
+        asset.setBucket(minioProperties.getBucket());
+        return asset;
+    }
 
-        VideoUploadEvent event = new VideoUploadEvent(
-            savedAsset.getId(),
-            savedAsset.getObjectKey(),
-            savedAsset.getBucket(),
-            savedAsset.getSizeBytes(),
-            savedAsset.getContentType(),
-            uploadedAt
-        );
+    /**
+     * Saves the stored original as UPLOADED and hands it to the post-upload pipeline, which probes
+     * it, extracts the thumbnail and starts transcoding in the background. head is the upload's
+     * first bytes when they were captured, or null.
+     */
+    private VideoUploadResponse register(String uploadId, TblVideoAssest asset, byte[] head) {
+        progressService.updateStatus(uploadId, "PROCESSING", "Saving video metadata...");
 
-        kafkaTemplate.send(videoUploadTopic, savedAsset.getId().toString(), event)
-                .whenComplete((result, throwable) -> {
-                    if (throwable != null) {
-                        log.error("Failed to publish video upload event for {}", savedAsset.getId(), throwable);
-                    } else {
-                        log.info("Published video upload event for {} to topic {}", savedAsset.getId(), videoUploadTopic);
-                    }
-                });
+        asset.setStatus("UPLOADED");
+        TblVideoAssest savedAsset = tblVideoAssestRepository.save(asset);
 
-        // Mark upload as completed
-        progressService.completeProgress(uploadId, savedAsset.getId().toString());
+        // Waits only while the pipeline is full
+        pipeline.submit(uploadId, savedAsset.getId(), head);
 
-        String thumbnailUrl = savedAsset.getThumbnailObjectKey() != null
-            ? String.format("/jazz/video/api/thumbnail/%s", savedAsset.getId())
-            : null;
+        return response(uploadId, savedAsset);
+    }
 
+    private VideoUploadResponse response(String uploadId, TblVideoAssest asset) {
+        // The thumbnail may not be there yet, the watch endpoints serve it once it is
         WatchModel watchModel = new WatchModel(
-                savedAsset.getId(),
-                savedAsset.getOriginalFileName(),
+                asset.getId(),
+                asset.getOriginalFileName(),
+                null,
+                asset.getCreatedAt().toLocalDateTime(),
+                asset.getObjectKey(),
+                asset.getContentType(),
                 null,
-                savedAsset.getCreatedAt().toLocalDateTime(),
-                savedAsset.getObjectKey(),
-                savedAsset.getContentType(),
-                thumbnailUrl,
                 null,
                 null,
                 null
@@ -188,22 +227,18 @@ public class VideoUploadServiceImpl implements VideoUploadService {
         return new VideoUploadResponse(watchModel, uploadId);
     }
 
-    private void uploadToMinio(MultipartFile file, String objectKey, String uploadId) {
+    /**
+     * Stores the file and returns its first bytes for the pipeline's probe.
+     */
+    private byte[] uploadToMinio(MultipartFile file, String objectKey, String uploadId) {
         try {
             progressService.updateStatus(uploadId, "UPLOADING", "Uploading video to storage...");
 
-            PutObjectArgs.Builder builder = PutObjectArgs.builder()
-                    .bucket(minioProperties.getBucket())
-                    .object(objectKey)
-                    .stream(file.getInputStream(), file.getSize(), -1);
-
-            if (file.getContentType() != null) {
-                builder.contentType(file.getContentType());
+            try (InputStream in = file.getInputStream()) {
+                HeadCaptureInputStream capture = new HeadCaptureInputStream(in, uploadProperties.getStream().getHeadBytes(), null);
+                multipartUploader.upload(objectKey, file.getContentType(), capture, file.getSize());
+                return capture.head();
             }
-
-            minioClient.putObject(builder.build());
-
-            progressService.updateStatus(uploadId, "PROCESSING", "Video uploaded, processing metadata...");
         } catch (IOException ex) {
             progressService.failProgress(uploadId, "Failed to read video content: " + ex.getMessage());
             throw new VideoStorageException("Failed to read video content", ex);
@@ -213,7 +248,7 @@ public class VideoUploadServiceImpl implements VideoUploadService {
         }
     }
 
-    private String buildObjectKey(String originalFileName) {
+    static String buildObjectKey(String originalFileName) {
         String sanitized = originalFileName.replaceAll("[^a-zA-Z0-9._-]", "_");
         String extension = "";
         int dotIndex = sanitized.lastIndexOf('.');
@@ -223,82 +258,14 @@ public class VideoUploadServiceImpl implements VideoUploadService {
         return UUID.randomUUID() + extension;
     }
 
-    private String extractAndUploadThumbnail(MultipartFile videoFile, String videoObjectKey) throws Exception {
-        Path tempVideoPath = null;
-        Path tempThumbnailPath = null;
-        
+    private void removeQuietly(String objectKey) {
         try {
-            // Save video to temp file for JAVE processing
-            tempVideoPath = Files.createTempFile("video-", ".tmp");
-            videoFile.transferTo(tempVideoPath.toFile());
-            
-            // Get video info
-            MultimediaObject multimediaObject = new MultimediaObject(tempVideoPath.toFile());
-            MultimediaInfo info = multimediaObject.getInfo();
-            VideoInfo videoInfo = info.getVideo();
-            
-            if (videoInfo == null) {
-                throw new VideoStorageException("No video stream found in file");
-            }
-            
-            long durationMillis = info.getDuration();
-            // Extract frame at 10% of video duration or 2 seconds, whichever is smaller
-            float captureAtSeconds = Math.min(2.0f, (durationMillis / 1000.0f) * 0.1f);
-            
-            // Create temp file for thumbnail
-            tempThumbnailPath = Files.createTempFile("thumbnail-", ".jpg");
-            
-            // Set up video encoding attributes for thumbnail extraction
-            VideoAttributes videoAttrs = new VideoAttributes();
-            videoAttrs.setCodec("mjpeg");
-            videoAttrs.setSize(info.getVideo().getSize()); // Keep original size
-            videoAttrs.setFrameRate(1);
-            
-            EncodingAttributes attrs = new EncodingAttributes();
-            attrs.setOutputFormat("image2");
-            attrs.setDuration(0.001f); // Extract single frame
-            attrs.setOffset(captureAtSeconds);
-            attrs.setVideoAttributes(videoAttrs);
-            
-            // Encode/extract the frame
-            Encoder encoder = new Encoder();
-            encoder.encode(multimediaObject, tempThumbnailPath.toFile(), attrs);
-            
-            // Upload thumbnail to MinIO
-            String thumbnailObjectKey = "thumbnails/" + videoObjectKey.replace(videoObjectKey.substring(videoObjectKey.lastIndexOf('.') + 1), "jpg");
-            
-            try (FileInputStream thumbnailStream = new FileInputStream(tempThumbnailPath.toFile())) {
-                long thumbnailSize = Files.size(tempThumbnailPath);
-                
-                PutObjectArgs putArgs = PutObjectArgs.builder()
-                        .bucket(minioProperties.getBucket())
-                        .object(thumbnailObjectKey)
-                        .stream(thumbnailStream, thumbnailSize, -1)
-                        .contentType("image/jpeg")
-                        .build();
-                
-                minioClient.putObject(putArgs);
-                log.info("Successfully uploaded thumbnail {} for video {}", thumbnailObjectKey, videoObjectKey);
-            }
-            
-            return thumbnailObjectKey;
-            
-        } finally {
-            // Clean up temp files
-            if (tempVideoPath != null) {
-                try {
-                    Files.deleteIfExists(tempVideoPath);
-                } catch (Exception e) {
-                    log.warn("Failed to delete temp video file: {}", tempVideoPath, e);
-                }
-            }
-            if (tempThumbnailPath != null) {
-                try {
-                    Files.deleteIfExists(tempThumbnailPath);
-                } catch (Exception e) {
-                    log.warn("Failed to delete temp thumbnail file: {}", tempThumbnailPath, e);
-                }
-            }
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(minioProperties.getBucket())
+                    .object(objectKey)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Failed to remove object {}", objectKey, e);
         }
     }
 }
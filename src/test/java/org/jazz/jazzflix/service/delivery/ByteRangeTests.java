@@ -0,0 +1,52 @@
+package org.jazz.jazzflix.service.delivery;
+
+import org.jazz.jazzflix.service.delivery.ObjectStreamer.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ByteRangeTests {
+
+    private static final long SIZE = 1000;
+
+    @Test
+    void parsesClosedRange() {
+        ByteRange range = ByteRange.parse("bytes=0-99", SIZE);
+        assertEquals(new ByteRange(0, 99), range);
+        assertEquals(100, range.length());
+    }
+
+    @Test
+    void openRangeRunsToTheEnd() {
+        assertEquals(new ByteRange(500, 999), ByteRange.parse("bytes=500-", SIZE));
+    }
+
+    @Test
+    void endBeyondTheObjectIsClamped() {
+        assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=900-5000", SIZE));
+    }
+
+    @Test
+    void suffixRangeTakesTheLastBytes() {
+        assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=-100", SIZE));
+        assertEquals(new ByteRange(0, 999), ByteRange.parse("bytes=-5000", SIZE));
+    }
+
+    @Test
+    void rangesOutsideTheObjectAreUnsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", SIZE));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", SIZE));
+    }
+
+    @Test
+    void unsupportedOrMalformedHeadersAreIgnored() {
+        assertNull(ByteRange.parse("bytes=0-1,5-6", SIZE));
+        assertNull(ByteRange.parse("items=0-99", SIZE));
+        assertNull(ByteRange.parse("bytes=99", SIZE));
+        assertNull(ByteRange.parse("bytes=50-10", SIZE));
+        assertNull(ByteRange.parse("bytes=a-b", SIZE));
+        assertNull(ByteRange.parse("bytes=0-99", 0));
+    }
+}
@@ -0,0 +1,69 @@
+package org.jazz.jazzflix.service.delivery;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalRequestsTests {
+
+    private static final String ETAG = "\"abc\"";
+    // Stored with milliseconds, HTTP dates only carry whole seconds
+    private static final long LAST_MODIFIED = Instant.parse("2024-03-01T10:15:30.250Z").toEpochMilli();
+
+    @Test
+    void ifRangeWithoutHeaderMatches() {
+        assertTrue(ConditionalRequests.ifRangeMatches(null, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifRangeComparesEtagsStrongly() {
+        assertTrue(ConditionalRequests.ifRangeMatches("\"abc\"", ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.ifRangeMatches("\"old\"", ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.ifRangeMatches("W/\"abc\"", ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifRangeDateMustEqualLastModified() {
+        assertTrue(ConditionalRequests.ifRangeMatches(httpDate("2024-03-01T10:15:30Z"), ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.ifRangeMatches(httpDate("2024-03-01T10:15:31Z"), ETAG, LAST_MODIFIED));
+        assertFalse(ConditionalRequests.ifRangeMatches(httpDate("2024-03-01T10:15:30Z"), ETAG, 0));
+        assertFalse(ConditionalRequests.ifRangeMatches("yesterday", ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void matchesAnyUsesWeakComparison() {
+        assertTrue(ConditionalRequests.matchesAny("*", ETAG));
+        assertTrue(ConditionalRequests.matchesAny("\"x\", W/\"abc\"", ETAG));
+        assertFalse(ConditionalRequests.matchesAny("\"x\", \"y\"", ETAG));
+    }
+
+    @Test
+    void ifNoneMatchTakesPrecedenceOverIfModifiedSince() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"old\"");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate("2024-03-02T00:00:00Z"));
+        assertFalse(ConditionalRequests.notModified(request, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifModifiedSinceComparesWholeSeconds() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate("2024-03-01T10:15:30Z"));
+        assertTrue(ConditionalRequests.notModified(request, ETAG, LAST_MODIFIED));
+
+        MockHttpServletRequest earlier = new MockHttpServletRequest();
+        earlier.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate("2024-03-01T10:15:29Z"));
+        assertFalse(ConditionalRequests.notModified(earlier, ETAG, LAST_MODIFIED));
+    }
+
+    private static String httpDate(String instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.parse(instant).atOffset(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,34 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkBoundariesTests {
+
+    @Test
+    void cutsAtKeyframesOnChunkSteps() {
+        List<Double> keyframes = List.of(0.0, 2.0, 4.0, 6.0, 8.0, 10.0, 12.0, 14.0, 16.0, 18.0, 20.0, 22.0, 24.0, 26.0, 28.0);
+        assertEquals(List.of(0.0, 10.0, 20.0, 30.0), ChunkedTranscodingService.chooseBoundaries(keyframes, 30.0, 10));
+    }
+
+    @Test
+    void cutsAtTheFirstKeyframeAfterEachStep() {
+        List<Double> keyframes = List.of(0.0, 3.0, 7.0, 11.0, 15.0, 19.0, 23.0, 27.0);
+        // The next step is counted from the actual cut, 11 + 10 = 21
+        assertEquals(List.of(0.0, 11.0, 23.0, 30.0), ChunkedTranscodingService.chooseBoundaries(keyframes, 30.0, 10));
+    }
+
+    @Test
+    void shortTailIsMergedIntoTheLastChunk() {
+        List<Double> keyframes = List.of(0.0, 5.0, 10.0, 15.0, 20.0);
+        assertEquals(List.of(0.0, 10.0, 24.0), ChunkedTranscodingService.chooseBoundaries(keyframes, 24.0, 10));
+    }
+
+    @Test
+    void withoutKeyframesTheVideoIsOneChunk() {
+        assertEquals(List.of(0.0, 42.0), ChunkedTranscodingService.chooseBoundaries(List.of(), 42.0, 10));
+    }
+}
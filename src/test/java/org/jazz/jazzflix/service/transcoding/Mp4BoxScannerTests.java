@@ -0,0 +1,77 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.jazz.jazzflix.service.transcoding.Mp4BoxScanner.Layout;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Mp4BoxScannerTests {
+
+    @Test
+    void moovBeforeMdatIsStreamable() throws Exception {
+        assertEquals(Layout.STREAMABLE, scan(box("ftyp", 24), box("moov", 64), box("mdat", 128)));
+    }
+
+    @Test
+    void fragmentedFileIsStreamable() throws Exception {
+        assertEquals(Layout.STREAMABLE, scan(box("ftyp", 24), box("free", 16), box("moof", 32)));
+    }
+
+    @Test
+    void mdatBeforeMoovNeedsSeek() throws Exception {
+        assertEquals(Layout.NEEDS_SEEK, scan(box("ftyp", 24), box("free", 8), box("mdat", 128), box("moov", 64)));
+    }
+
+    @Test
+    void largesizeBoxIsSkipped() throws Exception {
+        ByteBuffer wide = ByteBuffer.allocate(24);
+        wide.putInt(1).put("wide".getBytes(StandardCharsets.ISO_8859_1)).putLong(24);
+        assertEquals(Layout.STREAMABLE, scan(box("ftyp", 24), wide.array(), box("moov", 64)));
+    }
+
+    @Test
+    void fileWithoutFtypIsNotMp4() throws Exception {
+        assertEquals(Layout.NOT_MP4, scan(box("RIFF", 64)));
+    }
+
+    @Test
+    void headerEndingBeforeMoovOrMdatIsUnknown() throws Exception {
+        byte[] data = concat(box("ftyp", 24), box("free", 16));
+        // The file goes on, but only its head was read
+        assertEquals(Layout.UNKNOWN, Mp4BoxScanner.scan(reader(data), data.length + 1000));
+        assertEquals(Layout.UNKNOWN, scan(box("ftyp", 24), box("free", 0)));
+    }
+
+    private static Layout scan(byte[]... boxes) throws Exception {
+        byte[] data = concat(boxes);
+        return Mp4BoxScanner.scan(reader(data), data.length);
+    }
+
+    private static Mp4BoxScanner.RangeReader reader(byte[] data) {
+        return (offset, length) -> offset >= data.length
+                ? new byte[0]
+                : Arrays.copyOfRange(data, (int) offset, (int) Math.min(data.length, offset + length));
+    }
+
+    /**
+     * A box with a 32-bit size; a size below 8 is written as is, the box still takes 8 bytes.
+     */
+    private static byte[] box(String type, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(size, 8));
+        buffer.putInt(size).put(type.getBytes(StandardCharsets.ISO_8859_1));
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MpdDocumentsTests {
+
+    private static final String MANIFEST = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <MPD xmlns="urn:mpeg:dash:schema:mpd:2011" type="static">
+              <Period id="0">
+                <AdaptationSet id="0" contentType="video">
+                  <SegmentTemplate timescale="1000" initialization="init-$RepresentationID$.m4s"
+                                   media="chunk-$RepresentationID$-$Number%05d$.m4s" startNumber="1">
+                    <SegmentTimeline>
+                      <S t="2000" d="4000" r="2"/>
+                      <S d="1500"/>
+                    </SegmentTimeline>
+                  </SegmentTemplate>
+                  <Representation id="0" bandwidth="800000"/>
+                  <Representation id="1" bandwidth="2400000"/>
+                </AdaptationSet>
+                <AdaptationSet id="1" mimeType="audio/mp4">
+                  <Representation id="2" bandwidth="128000"/>
+                </AdaptationSet>
+              </Period>
+            </MPD>
+            """;
+
+    @Test
+    void resolvesRepresentationIdAndNumberFormats() {
+        assertEquals("chunk-720p-00042.m4s", MpdDocuments.resolveTemplate("chunk-$RepresentationID$-$Number%05d$.m4s", "720p", 42));
+        assertEquals("seg-7.m4s", MpdDocuments.resolveTemplate("seg-$Number$.m4s", "0", 7));
+        assertEquals("init-0.m4s", MpdDocuments.resolveTemplate("init-$RepresentationID$.m4s", "0", 1));
+    }
+
+    @Test
+    void findsAdaptationSetsByContentOrMimeType() throws Exception {
+        Document document = parse();
+        assertEquals(1, MpdDocuments.adaptationSets(document, "video").size());
+        assertEquals("1", MpdDocuments.adaptationSets(document, "audio").get(0).getAttribute("id"));
+    }
+
+    @Test
+    void expandsRepeatedTimelineSegments() throws Exception {
+        Element template = sharedTemplate(parse());
+        assertEquals(List.of(4000L, 4000L, 4000L, 1500L), MpdDocuments.segmentDurations(template));
+        assertEquals(2000, MpdDocuments.firstSegmentTime(template));
+    }
+
+    @Test
+    void writesTimelineWithRunsFolded() throws Exception {
+        Element template = sharedTemplate(parse());
+        MpdDocuments.writeTimeline(template, 0, List.of(2000L, 2000L, 3000L, 2000L));
+
+        Element timeline = MpdDocuments.firstChild(template, "SegmentTimeline");
+        List<Element> segments = MpdDocuments.children(timeline, "S");
+        assertEquals(3, segments.size());
+        assertEquals("0", segments.get(0).getAttribute("t"));
+        assertEquals("1", segments.get(0).getAttribute("r"));
+        assertFalse(segments.get(1).hasAttribute("t"));
+        assertFalse(segments.get(1).hasAttribute("r"));
+        assertEquals(List.of(2000L, 2000L, 3000L, 2000L), MpdDocuments.segmentDurations(template));
+    }
+
+    @Test
+    void relocateGivesEachRepresentationItsOwnTemplate() throws Exception {
+        Document document = parse();
+        Element videoSet = MpdDocuments.adaptationSets(document, "video").get(0);
+        List<Element> representations = MpdDocuments.children(videoSet, "Representation");
+
+        MpdDocuments.relocate(representations.get(1), "720p/");
+
+        Element moved = MpdDocuments.firstChild(representations.get(1), "SegmentTemplate");
+        assertNotNull(moved);
+        assertEquals("720p/init-1.m4s", moved.getAttribute("initialization"));
+        assertEquals("720p/chunk-1-$Number%05d$.m4s", moved.getAttribute("media"));
+        assertEquals(List.of(4000L, 4000L, 4000L, 1500L), MpdDocuments.segmentDurations(moved));
+        // The sibling keeps using the shared template
+        assertNull(MpdDocuments.firstChild(representations.get(0), "SegmentTemplate"));
+        assertEquals("init-$RepresentationID$.m4s", sharedTemplate(document).getAttribute("initialization"));
+    }
+
+    @Test
+    void formatsAndParsesAttributes() {
+        assertEquals("PT12.500S", MpdDocuments.formatDuration(12.5));
+        assertEquals(7, MpdDocuments.parseLong("7", 1));
+        assertEquals(1, MpdDocuments.parseLong("", 1));
+        assertEquals(1, MpdDocuments.parseLong("x", 1));
+    }
+
+    private static Document parse() throws Exception {
+        return MpdDocuments.parse(MANIFEST.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Element sharedTemplate(Document document) {
+        return MpdDocuments.firstChild(MpdDocuments.adaptationSets(document, "video").get(0), "SegmentTemplate");
+    }
+}
@@ -0,0 +1,101 @@
+package org.jazz.jazzflix.service.transcoding;
+
+import org.jazz.jazzflix.config.transcoding.TranscodingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscodingSchedulerTests {
+
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TranscodingScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void firstJobOfAVideoAndSmallerSourcesGoFirst() throws Exception {
+        scheduler = scheduler(1);
+        block("a");
+        submit("a", "a-second", 1, 100);
+        submit("b", "b-large", 1, 5_000);
+        submit("c", "c-small", 1, 10);
+
+        assertEquals(List.of("a-blocker", "c-small", "b-large", "a-second"), runAll());
+    }
+
+    @Test
+    void videosTakeTurns() throws Exception {
+        scheduler = scheduler(1);
+        block("blocker");
+        submit("a", "a1", 1, 100);
+        submit("a", "a2", 1, 100);
+        submit("a", "a3", 1, 100);
+        submit("b", "b1", 1, 100);
+        submit("b", "b2", 1, 100);
+
+        // The video served least recently is next, however many jobs the other one queued
+        assertEquals(List.of("blocker-blocker", "a1", "b1", "a2", "b2", "a3"), runAll());
+    }
+
+    @Test
+    void heavyJobIsNotOvertakenByLightOnes() throws Exception {
+        scheduler = scheduler(4);
+        block("a");
+        block("b");
+        submit("c", "c-heavy", 4, 10);
+        submit("d", "d-light", 1, 100);
+
+        // Two units are free, the light job would fit but has to wait behind the heavy one
+        assertEquals(2, scheduler.queued());
+        List<String> order = runAll();
+        assertEquals(List.of("c-heavy", "d-light"), order.subList(2, 4));
+    }
+
+    private TranscodingScheduler scheduler(int budget) {
+        TranscodingProperties properties = new TranscodingProperties();
+        properties.getScheduler().setBudget(budget);
+        return new TranscodingScheduler(properties);
+    }
+
+    /**
+     * Starts a job that holds its unit until runAll, so everything submitted afterwards queues.
+     */
+    private void block(String video) throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        futures.add(scheduler.submit(video, video + "-blocker", 1, 1, () -> {
+            started.add(video + "-blocker");
+            running.countDown();
+            release.await();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+    }
+
+    private void submit(String video, String label, int weight, long sourceSizeBytes) {
+        futures.add(scheduler.submit(video, label, weight, sourceSizeBytes, () -> started.add(label)));
+    }
+
+    private List<String> runAll() throws Exception {
+        release.countDown();
+        for (CompletableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        return new ArrayList<>(started);
+    }
+}